@@ -0,0 +1,24 @@
+package dungeons.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the GC profiler, so every result comes with gc.alloc.rate.norm - the bytes
+// allocated per call - next to the time. An optional argument picks benchmarks by regex.
+//
+// javac -cp <jmh jars>:out -processorpath <jmh jars> -d out-bench bench/dungeons/bench/*.java
+// java -cp <jmh jars>:out:out-bench dungeons.bench.BenchmarkRunner Snapshot
+public class BenchmarkRunner {
+    private static final String ALL_BENCHMARKS = BenchmarkRunner.class.getPackageName() + "\\..*Benchmark";
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(args.length > 0 ? args[0] : ALL_BENCHMARKS)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
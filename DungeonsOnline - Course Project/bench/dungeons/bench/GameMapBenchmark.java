@@ -0,0 +1,169 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.entities.monster.Monster;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.persistence.PlayerProfile;
+import dungeons.treasure.Shield;
+import dungeons.treasure.Staff;
+import dungeons.treasure.Sword;
+import dungeons.treasure.Treasure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One command per call, issued by a player standing next to a second player. Commands that use something
+// up (health, mana, treasures) are kept on their real path: the target is healed after every attack and
+// both players are reloaded from their profiles every RESET_PERIOD calls.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameMapBenchmark {
+    private static final int RESET_PERIOD = 5;
+    private static final int TREASURE_LEVEL = 1;
+    private static final int INVENTORY_CAPACITY = 5;
+    private static final int NEIGHBOUR_TREASURES = 4;
+    private static final String MOVES = "wsad";
+    private static final String[] MONSTER_ATTACKS = {"attack monster w", "attack monster s",
+        "attack monster a", "attack monster d"};
+    // Where a monster's attacker stands relative to it, indexed by the direction of the attack.
+    private static final int[][] DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+
+    @Param({"move", "melee", "spell", "monster", "equip", "unequip", "drop", "trade", "respawn"})
+    public String command;
+
+    private GameMap gameMap;
+    private Player player;
+    private Player neighbour;
+    private PlayerProfile playerProfile;
+    private PlayerProfile neighbourProfile;
+    private String[] actions;
+    private Player[] actors;
+    private boolean attacksMonster;
+    private boolean respawns;
+    private int calls;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws PlayerCharAlreadyExistsException {
+        // Players are placed on the first free cells, which are usually next to each other.
+        do {
+            gameMap = new GameMap();
+            player = new Player();
+            neighbour = new Player();
+            gameMap.connectPlayer(player);
+            gameMap.connectPlayer(neighbour);
+        } while (player.getGamePosition().getDistance(neighbour.getGamePosition()) > 1);
+
+        player.setProfileId(player.getId());
+        neighbour.setProfileId(neighbour.getId());
+        giveTreasures(player, INVENTORY_CAPACITY);
+        giveTreasures(neighbour, NEIGHBOUR_TREASURES);
+        player.equipTreasureAtIndex(0);
+        playerProfile = player.toProfile();
+        neighbourProfile = neighbour.toProfile();
+
+        actors = new Player[] {player};
+        int neighbourId = neighbour.getId();
+        actions = switch (command) {
+            case "move" -> movesThere(freeDirection());
+            case "melee" -> new String[] {"attack melee " + neighbourId};
+            case "spell" -> new String[] {"attack spell " + neighbourId};
+            case "monster" -> MONSTER_ATTACKS;
+            case "equip" -> new String[] {"equip 1", "equip 2"};
+            case "unequip" -> new String[] {"unequip"};
+            case "drop" -> new String[] {"drop 0"};
+            case "trade" -> {
+                actors = new Player[] {player, neighbour};
+                yield new String[] {"trade " + neighbourId + " 0", "trade " + player.getId() + " 0"};
+            }
+            case "respawn" -> new String[] {"respawn"};
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        };
+        attacksMonster = actions == MONSTER_ATTACKS;
+        respawns = command.equals("respawn");
+        calls = 0;
+    }
+
+    @Benchmark
+    public void handleAction() {
+        if (calls % RESET_PERIOD == 0) {
+            player.loadProfile(playerProfile);
+            neighbour.loadProfile(neighbourProfile);
+        }
+
+        String action;
+        if (attacksMonster) {
+            action = MONSTER_ATTACKS[standNextToMonster()];
+        } else {
+            action = actions[calls % actions.length];
+        }
+        if (respawns) {
+            player.setCurrHealth(0);
+        }
+        gameMap.handleAction(actors[calls % actors.length], action);
+        neighbour.setCurrHealth(neighbour.getTotalHealth());
+        calls++;
+    }
+
+    // Moves the player onto a free cell next to a monster without drawing it there, like the monster
+    // tests do, and returns the direction of the monster.
+    private int standNextToMonster() {
+        for (Monster monster : gameMap.getMonsters()) {
+            GamePosition monsterPosition = monster.getGamePosition();
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                GamePosition cell = new GamePosition(monsterPosition.x() + DIRECTIONS[direction][0],
+                    monsterPosition.y() + DIRECTIONS[direction][1]);
+                if (gameMap.isValidGamePosition(cell) && gameMap.isEmptySpace(cell.x(), cell.y())) {
+                    player.setPlayerPosition(cell);
+                    return direction;
+                }
+            }
+        }
+        throw new IllegalStateException("No monster has a free cell next to it");
+    }
+
+    // Directions are indexed like DIRECTIONS and MOVES: w, s, a, d.
+    private int freeDirection() {
+        GamePosition position = player.getGamePosition();
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            int x = position.x() - DIRECTIONS[direction][0];
+            int y = position.y() - DIRECTIONS[direction][1];
+            if (gameMap.isValidGamePosition(new GamePosition(x, y)) && gameMap.isEmptySpace(x, y)) {
+                return direction;
+            }
+        }
+        throw new IllegalStateException("The player is boxed in");
+    }
+
+    private static String[] movesThere(int direction) {
+        int back = direction ^ 1;
+        return new String[] {String.valueOf(MOVES.charAt(direction)), String.valueOf(MOVES.charAt(back))};
+    }
+
+    private static void giveTreasures(Player player, int count) {
+        for (int i = 0; i < count; i++) {
+            Treasure treasure = switch (i % 3) {
+                case 0 -> new Sword(TREASURE_LEVEL, null);
+                case 1 -> new Staff(TREASURE_LEVEL, null);
+                default -> new Shield(TREASURE_LEVEL, null);
+            };
+            player.putTreasure(treasure);
+        }
+    }
+}
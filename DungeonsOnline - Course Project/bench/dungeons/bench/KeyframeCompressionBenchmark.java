@@ -0,0 +1,84 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.protocol.SnapshotDecoder;
+import dungeons.protocol.SnapshotEncoder;
+import dungeons.world.DungeonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// What compressed keyframes of whole maps cost: encoding them on the server and decoding them on the
+// client, next to plain ones. The sizes of both are printed once per map, for the bandwidth they save.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyframeCompressionBenchmark {
+    private static final String DEFAULT_MAP = "default";
+    private static final String SIZE_SEPARATOR = "x";
+    private static final long SEED = 42;
+
+    @Param({DEFAULT_MAP, "64x64", "256x256", "1024x1024"})
+    public String mapSize;
+
+    private GameMap gameMap;
+    private SnapshotEncoder snapshotEncoder;
+    private SnapshotDecoder snapshotDecoder;
+    private ByteBuffer keyframe;
+    private ByteBuffer compressedKeyframe;
+
+    @Setup
+    public void setUp() {
+        if (mapSize.equals(DEFAULT_MAP)) {
+            gameMap = new GameMap();
+        } else {
+            String[] size = mapSize.split(SIZE_SEPARATOR);
+            gameMap = new GameMap(DungeonGenerator.generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                SEED));
+        }
+        snapshotEncoder = new SnapshotEncoder(gameMap.getCells());
+        snapshotDecoder = new SnapshotDecoder();
+        snapshotEncoder.nextFrame(gameMap);
+        keyframe = snapshotEncoder.getKeyframe();
+        compressedKeyframe = snapshotEncoder.getCompressedKeyframe();
+        System.out.printf("%n%s: keyframe %d bytes, compressed %d bytes%n", mapSize, keyframe.remaining(),
+            compressedKeyframe.remaining());
+    }
+
+    // A new frame number each call, so the encoder does not hand back the keyframe it already has.
+    @Benchmark
+    public ByteBuffer encodeKeyframe() {
+        snapshotEncoder.nextFrame(gameMap);
+        return snapshotEncoder.getKeyframe();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeCompressedKeyframe() {
+        snapshotEncoder.nextFrame(gameMap);
+        return snapshotEncoder.getCompressedKeyframe();
+    }
+
+    @Benchmark
+    public boolean decodeKeyframe() {
+        return snapshotDecoder.decode(keyframe.duplicate());
+    }
+
+    @Benchmark
+    public boolean decodeCompressedKeyframe() {
+        return snapshotDecoder.decode(compressedKeyframe.duplicate());
+    }
+}
@@ -0,0 +1,56 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.world.DungeonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One monster turn on a generated map. Players are healed before every turn so the monsters keep
+// chasing; after the first iterations most chasers stand next to a player and attack every turn.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonsterBenchmark {
+    private static final int MAP_SIZE = 256;
+    private static final long SEED = 1;
+    private static final int PLAYERS = 16;
+
+    @Param({"5", "100", "500", "5000"})
+    private int monsters;
+
+    private GameMap gameMap;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws PlayerCharAlreadyExistsException {
+        gameMap = new GameMap(DungeonGenerator.generate(MAP_SIZE, MAP_SIZE, SEED), monsters, SEED);
+        for (int i = 0; i < PLAYERS; i++) {
+            gameMap.connectPlayer(new Player());
+        }
+    }
+
+    @Benchmark
+    public GameMap moveMonsters() {
+        for (Player player : gameMap.getPlayers()) {
+            player.setCurrHealth(player.getTotalHealth());
+        }
+        gameMap.moveMonsters();
+        return gameMap;
+    }
+}
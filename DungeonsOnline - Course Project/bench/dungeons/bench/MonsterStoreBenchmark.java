@@ -0,0 +1,102 @@
+package dungeons.bench;
+
+import dungeons.entities.monster.MonsterStore;
+import dungeons.entities.position.GamePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One pass over every monster the way a tick makes it - a step, a hit and a death check - once over
+// the MonsterStore and once over monsters kept as objects in a list, the way they were kept before.
+// The objects get a new GamePosition every step, as the map used to give them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonsterStoreBenchmark {
+    private static final int MAP_SIZE = 1024;
+    private static final int LEVELS = 20;
+    private static final int DAMAGE = 1;
+
+    @Param({"1000", "10000", "100000"})
+    public int monsters;
+
+    private MonsterStore store;
+    private List<ObjectMonster> objects;
+    private int step;
+
+    // A monster as its own object, with the fields Monster had.
+    private static final class ObjectMonster {
+        private GamePosition gamePosition;
+        private final int attack;
+        private final int totalHealth;
+        private int currHealth;
+        private final int defence;
+
+        private ObjectMonster(int level, GamePosition gamePosition) {
+            this.gamePosition = gamePosition;
+            attack = level;
+            totalHealth = level * LEVELS;
+            currHealth = totalHealth;
+            defence = level;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        store = new MonsterStore();
+        objects = new ArrayList<>();
+        for (int i = 0; i < monsters; i++) {
+            int level = i % LEVELS + 1;
+            store.add(level, i % MAP_SIZE, i / MAP_SIZE);
+            objects.add(new ObjectMonster(level, new GamePosition(i % MAP_SIZE, i / MAP_SIZE)));
+        }
+    }
+
+    @Benchmark
+    public int tickStore() {
+        int dx = (step++ & 1) == 0 ? 1 : -1;
+        int dead = 0;
+        for (int slot = 0; slot < store.size(); slot++) {
+            store.setPosition(slot, store.getX(slot) + dx, store.getY(slot));
+            int health = store.getCurrHealth(slot) - Math.max(DAMAGE, store.getAttack(slot) - store.getDefence(slot));
+            if (health <= 0) {
+                dead++;
+                health = store.getTotalHealth(slot);
+            }
+            store.setCurrHealth(slot, health);
+        }
+        return dead;
+    }
+
+    @Benchmark
+    public int tickObjects() {
+        int dx = (step++ & 1) == 0 ? 1 : -1;
+        int dead = 0;
+        for (ObjectMonster monster : objects) {
+            GamePosition position = monster.gamePosition;
+            monster.gamePosition = new GamePosition(position.x() + dx, position.y());
+            int health = monster.currHealth - Math.max(DAMAGE, monster.attack - monster.defence);
+            if (health <= 0) {
+                dead++;
+                health = monster.totalHealth;
+            }
+            monster.currHealth = health;
+        }
+        return dead;
+    }
+}
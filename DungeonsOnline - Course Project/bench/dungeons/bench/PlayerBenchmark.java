@@ -0,0 +1,54 @@
+package dungeons.bench;
+
+import dungeons.entities.player.Player;
+import dungeons.treasure.Shield;
+import dungeons.treasure.Staff;
+import dungeons.treasure.Sword;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Player.toString is appended to every frame for every client.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+    private static final int TREASURE_LEVEL = 3;
+
+    private Player newPlayer;
+    private Player equippedPlayer;
+
+    @Setup
+    public void setUp() {
+        newPlayer = new Player();
+        equippedPlayer = new Player();
+        equippedPlayer.putTreasure(new Sword(TREASURE_LEVEL, null));
+        equippedPlayer.putTreasure(new Staff(TREASURE_LEVEL, null));
+        equippedPlayer.putTreasure(new Shield(TREASURE_LEVEL, null));
+        equippedPlayer.putTreasure(new Sword(TREASURE_LEVEL, null));
+        equippedPlayer.putTreasure(new Staff(TREASURE_LEVEL, null));
+        equippedPlayer.equipTreasureAtIndex(1);
+    }
+
+    @Benchmark
+    public String toStringNewPlayer() {
+        return newPlayer.toString();
+    }
+
+    @Benchmark
+    public String toStringFullInventory() {
+        return equippedPlayer.toString();
+    }
+}
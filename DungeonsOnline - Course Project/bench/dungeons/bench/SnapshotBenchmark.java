@@ -0,0 +1,129 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.server.ClientSession;
+import dungeons.world.DungeonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The per-tick serialization: every player takes a step, then the map changes are encoded once and a
+// frame is built for each client, the way broadcast does it minus the socket writes. "default" is the
+// built-in map; the generated sizes above 128x128 are sent as view windows.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final String DEFAULT_MAP = "default";
+    private static final String SIZE_SEPARATOR = "x";
+    private static final long SEED = 42;
+
+    @Param({DEFAULT_MAP, "64x64", "256x256", "1024x1024"})
+    public String mapSize;
+
+    @Param({"1", "16", "64"})
+    public int players;
+
+    private GameMap gameMap;
+    private List<ClientSession> sessions;
+    private char[] moves;
+    private int tick;
+
+    @Setup
+    public void setUp() throws PlayerCharAlreadyExistsException {
+        if (mapSize.equals(DEFAULT_MAP)) {
+            gameMap = new GameMap();
+        } else {
+            String[] size = mapSize.split(SIZE_SEPARATOR);
+            gameMap = new GameMap(DungeonGenerator.generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                SEED));
+        }
+
+        sessions = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            Player player = new Player();
+            gameMap.connectPlayer(player);
+            ClientSession session = new ClientSession(player);
+            session.setFramePool(gameMap.getFramePool());
+            sessions.add(session);
+        }
+        // Everyone walks back and forth, so each tick dirties the rows the players stand in.
+        moves = new char[] {'d', 'a'};
+        tick = 0;
+        gameMap.nextFrame();
+    }
+
+    @Benchmark
+    public int encodeMapChanges() {
+        movePlayers();
+        return gameMap.nextFrame();
+    }
+
+    @Benchmark
+    public void broadcast(Blackhole blackhole) {
+        movePlayers();
+        int frameNumber = gameMap.nextFrame();
+        for (ClientSession session : sessions) {
+            ByteBuffer frame = gameMap.encodeFrame(session, frameNumber);
+            blackhole.consume(frame);
+            // Given back as a finished write would.
+            session.releaseFrame(frame);
+            session.acknowledgeFrame(frameNumber);
+        }
+    }
+
+    // Every client asks for a keyframe, as after a resync or when everyone joins at once.
+    @Benchmark
+    public void broadcastKeyframes(Blackhole blackhole) {
+        movePlayers();
+        int frameNumber = gameMap.nextFrame();
+        for (ClientSession session : sessions) {
+            session.requestKeyframe();
+            ByteBuffer frame = gameMap.encodeFrame(session, frameNumber);
+            blackhole.consume(frame);
+            session.releaseFrame(frame);
+            session.acknowledgeFrame(frameNumber);
+        }
+    }
+
+    // The same with compressed keyframes, for the CPU they cost the server.
+    @Benchmark
+    public void broadcastCompressedKeyframes(Blackhole blackhole) {
+        movePlayers();
+        int frameNumber = gameMap.nextFrame();
+        for (ClientSession session : sessions) {
+            session.setCompressedKeyframes(true);
+            session.requestKeyframe();
+            ByteBuffer frame = gameMap.encodeFrame(session, frameNumber);
+            blackhole.consume(frame);
+            session.releaseFrame(frame);
+            session.acknowledgeFrame(frameNumber);
+        }
+    }
+
+    private void movePlayers() {
+        char move = moves[tick++ & 1];
+        for (ClientSession session : sessions) {
+            gameMap.movePlayer(session.getPlayer(), move);
+        }
+    }
+}
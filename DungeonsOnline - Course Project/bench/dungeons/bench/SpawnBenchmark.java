@@ -0,0 +1,55 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.world.CellGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Placing a player on a large map whose first cells are all taken, as a busy map fills up. The player
+// is disconnected again in the same call, so every call finds the map as full as the last one did.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+    private static final int MAP_SIZE = 1024;
+    private static final int PERCENT = 100;
+
+    @Param({"0", "50", "99"})
+    public int takenPercent;
+
+    private GameMap gameMap;
+
+    @Setup
+    public void setUp() {
+        CellGrid cells = new CellGrid(MAP_SIZE, MAP_SIZE, '.');
+        long takenCells = (long) MAP_SIZE * MAP_SIZE * takenPercent / PERCENT;
+        for (long cell = 0; cell < takenCells; cell++) {
+            cells.set((int) (cell % MAP_SIZE), (int) (cell / MAP_SIZE), '#');
+        }
+        gameMap = new GameMap(cells);
+    }
+
+    @Benchmark
+    public Player connectPlayer() throws PlayerCharAlreadyExistsException {
+        Player player = new Player();
+        gameMap.connectPlayer(player);
+        gameMap.disconnectPlayer(player);
+        return player;
+    }
+}
@@ -0,0 +1,66 @@
+package dungeons.bench;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.treasure.Treasure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Every call steps onto a treasure, so it covers the pickup, the XP gain and placing a new treasure.
+// The player is put next to a treasure the same way GameMapTest does it, and the picked up treasure is
+// dropped again so the inventory never fills up.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreasurePickupBenchmark {
+    private static final String MOVES = "wsad";
+    // Where the player stands relative to the treasure, indexed like MOVES.
+    private static final int[][] DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+
+    private GameMap gameMap;
+    private Player player;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws PlayerCharAlreadyExistsException {
+        gameMap = new GameMap();
+        player = new Player();
+        gameMap.connectPlayer(player);
+    }
+
+    @Benchmark
+    public GamePosition movePlayerOntoTreasure() {
+        for (Treasure treasure : gameMap.getTreasures()) {
+            GamePosition treasurePosition = treasure.getGamePosition();
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                int x = treasurePosition.x() + DIRECTIONS[direction][0];
+                int y = treasurePosition.y() + DIRECTIONS[direction][1];
+                if (x >= 0 && x < gameMap.getCols() && y >= 0 && y < gameMap.getRows() &&
+                    gameMap.isEmptySpace(x, y)) {
+                    player.setPlayerPosition(new GamePosition(x, y));
+                    gameMap.movePlayer(player, MOVES.charAt(direction));
+                    // The player is left drawn on the treasure's cell, so it is cleared for the next call.
+                    gameMap.setPosition(treasurePosition, '.');
+                    player.removeTreasureAtIndex(0);
+                    return treasurePosition;
+                }
+            }
+        }
+        throw new IllegalStateException("No treasure has a free cell next to it");
+    }
+}
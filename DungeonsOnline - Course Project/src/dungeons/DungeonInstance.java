@@ -0,0 +1,494 @@
+package dungeons;
+
+import dungeons.entities.player.Player;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.metrics.ServerMetrics;
+import dungeons.persistence.ProfileJournal;
+import dungeons.protocol.Command;
+import dungeons.protocol.CommandDecoder;
+import dungeons.replay.ActionLog;
+import dungeons.replay.MatchSettings;
+import dungeons.server.BlockingConnection;
+import dungeons.server.ClientSession;
+import dungeons.server.CommandQueue;
+import dungeons.server.ConnectionListener;
+import dungeons.server.ServerOptions;
+import dungeons.server.TickLoop;
+import dungeons.world.RegionScheduler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class DungeonInstance implements Runnable {
+    private static final String ACTION_LOG_EXTENSION = ".actions";
+
+    private final int id;
+    private final ServerOptions options;
+    private final Selector selector;
+    private final MatchSettings settings;
+    private final GameMap gameMap;
+    private final TickLoop tickLoop;
+    private final CommandQueue commandQueue;
+    private final CommandDecoder commandDecoder;
+    private final Command command;
+    private final Queue<PendingJoin> pendingJoins;
+    private final ProfileJournal profileJournal;
+    private final ServerMetrics metrics;
+    private final Set<ClientSession> sessions;
+    private final boolean threadPerConnection;
+    private final Queue<InboundCommand> inboundCommands;
+    private final Queue<ClientSession> closedConnections;
+    private final ConnectionListener connectionListener;
+    private final int ticksPerMonsterTurn;
+    private RegionScheduler regionScheduler;
+    private int ticksUntilMonsterTurn;
+    private int tickNumber;
+    private ActionLog actionLog;
+
+    // Written by the instance's thread, read by the lobby and the admin endpoint.
+    private volatile int playerCount;
+    private volatile int monsterCount;
+    private volatile int treasureCount;
+
+    private record PendingJoin(SocketChannel channel, ClientSession session) {
+    }
+
+    private record InboundCommand(ClientSession session, byte opcode, int firstOperand, int secondOperand) {
+    }
+
+    // The journal is null when profiles are disabled.
+    public DungeonInstance(int id, ServerOptions options, ProfileJournal profileJournal, ServerMetrics metrics)
+        throws IOException {
+        if (options == null || metrics == null) {
+            throw new IllegalArgumentException("options or metrics was null");
+        }
+        this.id = id;
+        this.options = options;
+        selector = Selector.open();
+        // Every room gets its own layout and random choices, still reproducible from the server seed.
+        settings = new MatchSettings(options.getSeed() + id, options.getMapRows(), options.getMapCols(),
+            options.getMonsters(), options.getTicksPerSecond());
+        gameMap = settings.createMap();
+        tickLoop = settings.isTickMode() ? new TickLoop(options.getTicksPerSecond()) : null;
+        ticksPerMonsterTurn = settings.getTicksPerMonsterTurn();
+        ticksUntilMonsterTurn = ticksPerMonsterTurn;
+        tickNumber = 0;
+        actionLog = options.getRecordDirectory() == null ? null : openActionLog(options.getRecordDirectory());
+        commandQueue = new CommandQueue(options.getMaxActionsPerTick());
+        commandDecoder = new CommandDecoder(options.isTextCommands());
+        command = new Command();
+        pendingJoins = new ConcurrentLinkedQueue<>();
+        this.profileJournal = profileJournal;
+        this.metrics = metrics;
+        sessions = ConcurrentHashMap.newKeySet();
+        threadPerConnection = options.isThreadPerConnection();
+        inboundCommands = new ConcurrentLinkedQueue<>();
+        closedConnections = new ConcurrentLinkedQueue<>();
+        connectionListener = new ConnectionListener() {
+            @Override
+            public void commandReceived(ClientSession session, Command received) {
+                inboundCommands.add(new InboundCommand(session, received.getOpcode(),
+                    received.getFirstOperand(), received.getSecondOperand()));
+                // In tick mode the command waits for the next tick anyway.
+                if (!isTickMode()) {
+                    selector.wakeup();
+                }
+            }
+
+            @Override
+            public void connectionClosed(ClientSession session) {
+                closedConnections.add(session);
+                selector.wakeup();
+            }
+        };
+        playerCount = 0;
+        monsterCount = gameMap.getMonsterCount();
+        treasureCount = gameMap.getTreasureCount();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getMonsterCount() {
+        return monsterCount;
+    }
+
+    public int getTreasureCount() {
+        return treasureCount;
+    }
+
+    public TickLoop getTickLoop() {
+        return tickLoop;
+    }
+
+    // The connected clients. Safe to read from any thread, though their counters may lag behind.
+    public Set<ClientSession> getSessions() {
+        return Collections.unmodifiableSet(sessions);
+    }
+
+    // Called from the lobby thread with a session that already has its player. The channel is registered
+    // with this instance's selector, or handed to its own threads, on the instance's own thread.
+    public void join(SocketChannel channel, ClientSession session) {
+        if (channel == null || session == null || session.getPlayer() == null) {
+            throw new IllegalArgumentException("channel or session was null");
+        }
+        pendingJoins.add(new PendingJoin(channel, session));
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        // Actions applied by regions could not be logged in order, see ServerOptions.
+        if (isTickMode() && options.isRegionSharded() && actionLog == null) {
+            regionScheduler = new RegionScheduler(gameMap, options.getRegionRows(), options.getRegionCols());
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (isTickMode()) {
+                    runTickModeIteration();
+                } else {
+                    int readyChannels = selector.select();
+                    metrics.selectorWokeUp();
+                    acceptPendingJoins();
+                    if (readyChannels > 0) {
+                        iterateThroughKeys();
+                    }
+                    drainConnections();
+                }
+            }
+        } catch (IOException e) {
+            GameServer.logException(e);
+        } finally {
+            if (regionScheduler != null) {
+                regionScheduler.close();
+            }
+            if (actionLog != null) {
+                try {
+                    actionLog.close(tickNumber);
+                } catch (IOException e) {
+                    GameServer.logException(e);
+                }
+            }
+        }
+    }
+
+    private boolean isTickMode() {
+        return tickLoop != null;
+    }
+
+    private void runTickModeIteration() throws IOException {
+        long timeout = tickLoop.millisUntilNextTick();
+        int readyChannels = timeout == 0 ? selector.selectNow() : selector.select(timeout);
+        metrics.selectorWokeUp();
+        acceptPendingJoins();
+        if (readyChannels > 0) {
+            iterateThroughKeys();
+        }
+        drainConnections();
+        if (tickLoop.isTickDue()) {
+            long tickStart = tickLoop.beginTick();
+            runTick();
+            tickLoop.endTick(tickStart);
+            metrics.tickFinished(tickLoop.getLastTickDurationNanos());
+        }
+    }
+
+    private void runTick() {
+        commandQueue.beginTick();
+        if (regionScheduler != null) {
+            regionScheduler.apply(commandQueue);
+        } else {
+            Player player;
+            while ((player = commandQueue.poll(command)) != null) {
+                applyCommand(player);
+            }
+        }
+        // Monsters move at the same pace whatever the tick rate. Without ticks nothing drives them.
+        if (--ticksUntilMonsterTurn == 0) {
+            gameMap.moveMonsters();
+            ticksUntilMonsterTurn = ticksPerMonsterTurn;
+        }
+        broadcast();
+        tickNumber++;
+    }
+
+    private void broadcast() {
+        if (threadPerConnection) {
+            broadcastToConnections();
+        } else {
+            gameMap.broadcast(selector);
+        }
+        saveProgress();
+        flushActionLog();
+        monsterCount = gameMap.getMonsterCount();
+        treasureCount = gameMap.getTreasureCount();
+    }
+
+    // The same frames GameMap.broadcast sends, queued for the writer threads instead of a selector.
+    private void broadcastToConnections() {
+        int frameNumber = gameMap.nextFrame();
+        for (ClientSession session : sessions) {
+            BlockingConnection connection = session.getConnection();
+            if (connection.isBackedUp()) {
+                connection.dropPendingFrames();
+            }
+            ByteBuffer frame = gameMap.encodeFrame(session, frameNumber);
+            if (!session.sendDatagram(frame)) {
+                connection.send(frame);
+            }
+            session.acknowledgeFrame(frameNumber);
+        }
+    }
+
+    // Only queues copies of the changed profiles - the writing happens on the journal thread.
+    private void saveProgress() {
+        if (profileJournal == null) {
+            return;
+        }
+        for (Player player : gameMap.getPlayers()) {
+            profileJournal.saveIfChanged(player);
+        }
+    }
+
+    private void acceptPendingJoins() {
+        PendingJoin pendingJoin;
+        while ((pendingJoin = pendingJoins.poll()) != null) {
+            SocketChannel channel = pendingJoin.channel();
+            ClientSession session = pendingJoin.session();
+            session.setFramePool(gameMap.getFramePool());
+            try {
+                if (threadPerConnection) {
+                    // The player gets its id on the map first, so the connection's threads are named after it.
+                    // Commands they read wait in the queue until the next drain.
+                    BlockingConnection connection =
+                        new BlockingConnection(channel, session, connectionListener, options.isTextCommands());
+                    session.setConnection(connection);
+                    connectPlayer(session.getPlayer());
+                    connection.start();
+                    sessions.add(session);
+                    playerCount++;
+                } else {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+                    connectPlayer(session.getPlayer());
+                    sessions.add(session);
+                    playerCount++;
+                    session.flush(key);
+                    processInput(key);
+                }
+            } catch (IOException e) {
+                // The client left while waiting in the lobby.
+                disconnectPlayer(session.getPlayer());
+                releaseProfile(session.getPlayer());
+            } catch (PlayerCharAlreadyExistsException e) {
+                GameServer.logException(e);
+                closeChannel(channel);
+                releaseProfile(session.getPlayer());
+            }
+            broadcastIfNotTickMode();
+        }
+    }
+
+    // Commands and disconnects passed over by the reader threads of thread-per-connection clients.
+    private void drainConnections() {
+        if (!threadPerConnection) {
+            return;
+        }
+        boolean changed = false;
+        InboundCommand inbound;
+        while ((inbound = inboundCommands.poll()) != null) {
+            // A command can still arrive after an earlier drain has disconnected its player.
+            if (sessions.contains(inbound.session())) {
+                command.set(inbound.opcode(), inbound.firstOperand(), inbound.secondOperand());
+                dispatchCommand(inbound.session());
+                changed = true;
+            }
+        }
+        ClientSession closed;
+        while ((closed = closedConnections.poll()) != null) {
+            System.out.println("Client has closed the connection");
+            disconnectSession(closed);
+            changed = true;
+        }
+        if (changed) {
+            broadcastIfNotTickMode();
+        }
+    }
+
+    private void iterateThroughKeys() {
+        Set<SelectionKey> selectedKeys = selector.selectedKeys();
+        Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+        while (keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+            if (key.isValid() && key.isWritable()) {
+                ((ClientSession) key.attachment()).flush(key);
+            }
+            if (key.isValid() && key.isReadable()) {
+                handleQuery(key);
+                broadcastIfNotTickMode();
+            }
+        }
+    }
+
+    private void broadcastIfNotTickMode() {
+        if (!isTickMode()) {
+            broadcast();
+        }
+    }
+
+    private void handleQuery(SelectionKey key) {
+        SocketChannel sc = (SocketChannel) key.channel();
+        ClientSession session = (ClientSession) key.attachment();
+
+        int r;
+        try {
+            r = sc.read(session.getInputBuffer());
+        } catch (IOException e) {
+            r = -1;
+        }
+        if (r < 0) {
+            System.out.println("Client has closed the connection");
+            disconnectClient(key);
+            return;
+        }
+        processInput(key);
+    }
+
+    private void processInput(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+        ByteBuffer buffer = session.getInputBuffer();
+        buffer.flip();
+        while (commandDecoder.next(buffer, command)) {
+            dispatchCommand(session);
+        }
+        buffer.compact();
+    }
+
+    private void disconnectClient(SelectionKey key) {
+        closeChannel(key.channel());
+        disconnectSession((ClientSession) key.attachment());
+    }
+
+    // Sessions whose join failed were never added and have nothing to undo.
+    private void disconnectSession(ClientSession session) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        Player disconnectedPlayer = session.getPlayer();
+        commandQueue.removePlayer(disconnectedPlayer);
+        disconnectPlayer(disconnectedPlayer);
+        playerCount--;
+        releaseProfile(disconnectedPlayer);
+    }
+
+    private void releaseProfile(Player player) {
+        if (profileJournal != null && player.hasProfile()) {
+            profileJournal.saveIfChanged(player);
+            profileJournal.logout(player.getProfileId());
+        }
+    }
+
+    private void dispatchCommand(ClientSession session) {
+        if (command.getOpcode() == Command.RESYNC) {
+            session.requestKeyframe();
+        } else if (command.isLobbyCommand()) {
+            return;
+        } else if (isTickMode()) {
+            if (commandQueue.add(session.getPlayer(), command)) {
+                metrics.actionProcessed();
+            } else {
+                metrics.actionDropped();
+            }
+        } else {
+            metrics.actionProcessed();
+            applyCommand(session.getPlayer());
+        }
+    }
+
+    private void applyCommand(Player player) {
+        // Players that found no room on the map have no id, and their actions change nothing.
+        if (actionLog != null && player.getId() != Player.NO_ID) {
+            try {
+                actionLog.actionApplied(tickNumber, player, command);
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+        gameMap.handleCommand(player, command.getOpcode(), command.getFirstOperand(), command.getSecondOperand());
+    }
+
+    private void connectPlayer(Player player) throws PlayerCharAlreadyExistsException {
+        gameMap.connectPlayer(player);
+        if (actionLog != null && player.getId() != Player.NO_ID) {
+            try {
+                actionLog.playerJoined(tickNumber, player);
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+    }
+
+    private void disconnectPlayer(Player player) {
+        if (actionLog != null && player.getId() != Player.NO_ID) {
+            try {
+                actionLog.playerLeft(tickNumber, player);
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+        gameMap.disconnectPlayer(player);
+    }
+
+    private ActionLog openActionLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("room-" + id + "-" + settings.seed() + ACTION_LOG_EXTENSION);
+        return new ActionLog(Files.newOutputStream(file), settings);
+    }
+
+    // Flushed with every broadcast, so a server that is killed loses at most the last tick.
+    private void flushActionLog() {
+        if (actionLog != null) {
+            try {
+                actionLog.flush();
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+    }
+
+    // A room that cannot write its log keeps serving its players.
+    private void stopRecording(IOException e) {
+        GameServer.logException(e);
+        try {
+            actionLog.close(tickNumber);
+        } catch (IOException closeException) {
+            GameServer.logException(closeException);
+        }
+        actionLog = null;
+    }
+
+    private static void closeChannel(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            GameServer.logException(e);
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package dungeons;
 
+import dungeons.client.MovementPredictor;
+import dungeons.client.TerminalRenderer;
 import dungeons.exception.UnableToConnectToServerException;
+import dungeons.protocol.BinaryCommandCodec;
+import dungeons.protocol.Command;
+import dungeons.protocol.FrameReader;
+import dungeons.protocol.SnapshotDecoder;
+import dungeons.protocol.SnapshotEncoder;
+import dungeons.protocol.TextCommandParser;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
@@ -9,6 +17,8 @@ import java.io.PrintWriter;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
@@ -21,14 +31,58 @@ public class GameClient {
     private static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
     private static final int BUFFER_SIZE = 2000;
+    private static final String TEXT_COMMANDS_OPTION = "--text-commands";
+    private static final String COMPRESS_OPTION = "--compress";
+    private static final String UDP_OPTION = "--udp";
+    // A resync whose keyframe was lost as a datagram is asked for again after this many failed frames.
+    private static final int RESYNC_RETRY_FRAMES = 20;
 
-    private ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final FrameReader frameReader = new FrameReader(BUFFER_SIZE);
     private ByteBuffer sendBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final SnapshotDecoder snapshotDecoder = new SnapshotDecoder();
+    private final Command command = new Command();
+    private final TerminalRenderer renderer = new TerminalRenderer(System.out);
+    private final StringBuilder statusText = new StringBuilder();
+    private final MovementPredictor movementPredictor = new MovementPredictor();
+    private char[][] displayMap = new char[0][0];
+    private final boolean textCommands;
+    private final boolean compressedKeyframes;
+    private final boolean udpSnapshots;
+    private int framesUntilResync;
 
     private AtomicBoolean running;
 
+    public GameClient() {
+        this(false);
+    }
+
+    public GameClient(boolean textCommands) {
+        this(textCommands, false, false);
+    }
+
+    // Compressed keyframes cost the server and the client some CPU and save bandwidth on large maps.
+    // With UDP snapshots a lost packet costs the frames in it instead of holding up every later one.
+    public GameClient(boolean textCommands, boolean compressedKeyframes, boolean udpSnapshots) {
+        this.textCommands = textCommands;
+        this.compressedKeyframes = compressedKeyframes;
+        this.udpSnapshots = udpSnapshots;
+        framesUntilResync = 0;
+    }
+
     public static void main(String[] args) throws UnableToConnectToServerException {
-        GameClient gameClient = new GameClient();
+        boolean textCommands = false;
+        boolean compressedKeyframes = false;
+        boolean udpSnapshots = false;
+        for (String arg : args) {
+            if (TEXT_COMMANDS_OPTION.equals(arg)) {
+                textCommands = true;
+            } else if (COMPRESS_OPTION.equals(arg)) {
+                compressedKeyframes = true;
+            } else if (UDP_OPTION.equals(arg)) {
+                udpSnapshots = true;
+            }
+        }
+        GameClient gameClient = new GameClient(textCommands, compressedKeyframes, udpSnapshots);
         gameClient.startClient();
     }
 
@@ -36,9 +90,23 @@ public class GameClient {
         running = new AtomicBoolean(true);
 
         try (SocketChannel socketChannel = SocketChannel.open();
+             DatagramChannel datagramChannel = udpSnapshots ? DatagramChannel.open() : null;
              Scanner scanner = new Scanner(System.in)) {
             socketChannel.connect(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
             System.out.println("Connected to the server.");
+            // These have to reach the lobby before the first command joins a room.
+            if (compressedKeyframes) {
+                sendToServer(socketChannel, TextCommandParser.COMPRESS_COMMAND);
+            }
+            if (datagramChannel != null) {
+                datagramChannel.bind(new InetSocketAddress(0));
+                int port = ((InetSocketAddress) datagramChannel.getLocalAddress()).getPort();
+                sendToServer(socketChannel, "udp " + port);
+                Thread datagramThread = createDatagramThread(datagramChannel, socketChannel);
+                // Blocked in receive until the channel is closed on the way out.
+                datagramThread.setDaemon(true);
+                datagramThread.start();
+            }
             Thread sendThread = createSendThread(scanner, socketChannel);
 
             Thread receiveThread = createReceiveThread(scanner, socketChannel);
@@ -66,6 +134,9 @@ public class GameClient {
                 System.out.println();
                 if ("quit".equals(message)) {
                     running.set(false);
+                    if (!textCommands) {
+                        break;
+                    }
                 }
 
                 try {
@@ -97,23 +168,155 @@ public class GameClient {
         });
     }
 
+    private Thread createDatagramThread(DatagramChannel datagramChannel, SocketChannel socketChannel) {
+        return new Thread(() -> {
+            ByteBuffer datagram = ByteBuffer.allocate(FrameReader.MAX_DATAGRAM_BYTES);
+            try {
+                while (running.get()) {
+                    datagram.clear();
+                    datagramChannel.receive(datagram);
+                    datagram.flip();
+                    if (FrameReader.unwrapDatagram(datagram)) {
+                        handleFrame(socketChannel, datagram);
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                // The client is shutting down.
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                    "Unable to receive frames from the server." +
+                        " Try again later or contact administrator by providing the logs in " +
+                        Paths.get(FILE_NAME_FOR_EXCEPTION_LOGS).toAbsolutePath(),
+                    e);
+            }
+        });
+    }
+
     private void sendToServer(SocketChannel socketChannel, String message) throws IOException {
         sendBuffer.clear();
-        sendBuffer.put(message.getBytes());
+        if (textCommands) {
+            // The line end lets the server tell commands apart when several arrive in one read.
+            sendBuffer.put((message + '\n').getBytes());
+        } else if (TextCommandParser.parse(message, command)) {
+            if (command.getOpcode() == Command.MOVE) {
+                predictMove();
+            }
+            BinaryCommandCodec.encode(command, sendBuffer);
+        } else {
+            System.out.println("Unknown command: " + message);
+            return;
+        }
         sendBuffer.flip();
         socketChannel.write(sendBuffer);
     }
 
     private void receiveFromServer(SocketChannel socketChannel) throws IOException {
-        receiveBuffer.clear();
-        socketChannel.read(receiveBuffer);
-        receiveBuffer.flip();
-        char[][] receivedMatrix = fromByteBuffer(receiveBuffer);
-        printMatrix(receivedMatrix, receivedMatrix.length, receivedMatrix[0].length);
-        byte[] remainingBytes = new byte[receiveBuffer.remaining()];
-        receiveBuffer.get(remainingBytes);
-        String playerInformation = new String(remainingBytes, StandardCharsets.UTF_8);
-        System.out.println(playerInformation);
+        if (frameReader.readFrom(socketChannel) < 0) {
+            System.out.println("The server has closed the connection.");
+            running.set(false);
+            return;
+        }
+
+        ByteBuffer frame;
+        while ((frame = frameReader.nextFrame()) != null) {
+            handleFrame(socketChannel, frame);
+        }
+    }
+
+    private void handleFrame(SocketChannel socketChannel, ByteBuffer frame) throws IOException {
+        if (frame.get(frame.position()) == SnapshotEncoder.MESSAGE) {
+            frame.get();
+            printText(frame);
+            return;
+        }
+        // The send thread predicts moves against the same map, and frames come in on two threads with UDP.
+        synchronized (this) {
+            if (snapshotDecoder.isStale(frame)) {
+                return;
+            }
+            if (snapshotDecoder.decode(frame)) {
+                framesUntilResync = 0;
+            } else if (framesUntilResync-- <= 0) {
+                requestResync(socketChannel);
+                framesUntilResync = RESYNC_RETRY_FRAMES;
+            }
+            snapshotDecoder.decodePlayers(frame);
+            snapshotDecoder.decodeInputAck(frame);
+            int ownIndex = snapshotDecoder.indexOfPlayer(snapshotDecoder.getOwnId());
+            if (ownIndex >= 0 && snapshotDecoder.hasMap()) {
+                movementPredictor.reconcile(snapshotDecoder.getAcknowledgedInput(), snapshotDecoder.getPlayerX(ownIndex),
+                    snapshotDecoder.getPlayerY(ownIndex), snapshotDecoder.getMap(), snapshotDecoder.getOriginX(),
+                    snapshotDecoder.getOriginY());
+            }
+            statusText.setLength(0);
+            appendPlayers(snapshotDecoder, statusText);
+            statusText.append('\n').append(StandardCharsets.UTF_8.decode(frame));
+            draw();
+        }
+    }
+
+    // Shows the move at once and sends it with the sequence number the server will acknowledge it with.
+    private synchronized void predictMove() {
+        if (!snapshotDecoder.hasMap()) {
+            return;
+        }
+        int sequence = movementPredictor.predict((char) command.getFirstOperand(), snapshotDecoder.getMap(),
+            snapshotDecoder.getOriginX(), snapshotDecoder.getOriginY());
+        command.set(Command.MOVE, command.getFirstOperand(), sequence);
+        draw();
+    }
+
+    // The received map, with the player moved to where the moves the server has not applied yet take it.
+    private void draw() {
+        if (!snapshotDecoder.hasMap()) {
+            renderer.render(null, 0, 0, statusText);
+            return;
+        }
+        char[][] map = snapshotDecoder.getMap();
+        int rows = snapshotDecoder.getRows();
+        int cols = snapshotDecoder.getCols();
+        int ownIndex = snapshotDecoder.indexOfPlayer(snapshotDecoder.getOwnId());
+        if (ownIndex >= 0 && movementPredictor.isPositionKnown() &&
+            (movementPredictor.getX() != snapshotDecoder.getPlayerX(ownIndex) ||
+                movementPredictor.getY() != snapshotDecoder.getPlayerY(ownIndex))) {
+            if (displayMap.length != rows || displayMap[0].length != cols) {
+                displayMap = new char[rows][cols];
+            }
+            for (int y = 0; y < rows; y++) {
+                System.arraycopy(map[y], 0, displayMap[y], 0, cols);
+            }
+            int originX = snapshotDecoder.getOriginX();
+            int originY = snapshotDecoder.getOriginY();
+            setDisplayCell(snapshotDecoder.getPlayerX(ownIndex) - originX, snapshotDecoder.getPlayerY(ownIndex) - originY,
+                '.');
+            setDisplayCell(movementPredictor.getX() - originX, movementPredictor.getY() - originY, GameMap.PLAYER_CELL);
+            map = displayMap;
+        }
+        renderer.render(map, rows, cols, statusText);
+    }
+
+    private void setDisplayCell(int x, int y, char cell) {
+        if (0 <= y && y < displayMap.length && 0 <= x && x < displayMap[y].length) {
+            displayMap[y][x] = cell;
+        }
+    }
+
+    private static void printText(ByteBuffer frame) {
+        byte[] remainingBytes = new byte[frame.remaining()];
+        frame.get(remainingBytes);
+        System.out.println(new String(remainingBytes, StandardCharsets.UTF_8));
+    }
+
+    private void requestResync(SocketChannel socketChannel) throws IOException {
+        ByteBuffer resyncRequest;
+        if (textCommands) {
+            resyncRequest = ByteBuffer.wrap((TextCommandParser.RESYNC_COMMAND + '\n').getBytes());
+        } else {
+            resyncRequest = ByteBuffer.allocate(BinaryCommandCodec.encodedLength(Command.RESYNC));
+            resyncRequest.put(Command.RESYNC);
+            resyncRequest.flip();
+        }
+        socketChannel.write(resyncRequest);
     }
 
     private static void logException(Exception e) {
@@ -128,26 +331,12 @@ public class GameClient {
         }
     }
 
-    private static char[][] fromByteBuffer(ByteBuffer byteBuffer) {
-        int rows = byteBuffer.getChar();
-        int cols = byteBuffer.getChar();
-        char[][] restoredMatrix = new char[rows][cols];
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                restoredMatrix[i][j] = byteBuffer.getChar();
-            }
-        }
-
-        return restoredMatrix;
-    }
-
-    private static void printMatrix(char[][] a, int rows, int cols) {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                System.out.print(a[i][j]);
-            }
-            System.out.print(System.lineSeparator());
+    // Players are all drawn as the same cell, so their ids are listed for attacking and trading.
+    private static void appendPlayers(SnapshotDecoder decoder, StringBuilder text) {
+        text.append("Players:");
+        for (int i = 0; i < decoder.getPlayerCount(); i++) {
+            text.append(' ').append(decoder.getPlayerId(i))
+                .append(" (").append(decoder.getPlayerX(i)).append(", ").append(decoder.getPlayerY(i)).append(')');
         }
     }
 }
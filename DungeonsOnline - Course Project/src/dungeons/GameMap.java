@@ -2,45 +2,78 @@ package dungeons;
 
 import dungeons.entities.AttackType;
 import dungeons.entities.monster.Monster;
+import dungeons.entities.monster.MonsterStore;
 import dungeons.entities.player.Player;
 import dungeons.entities.position.GamePosition;
 import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.protocol.Command;
+import dungeons.protocol.FramePool;
+import dungeons.protocol.SnapshotEncoder;
+import dungeons.protocol.TextCommandParser;
+import dungeons.protocol.ViewWindow;
+import dungeons.server.ClientSession;
 import dungeons.treasure.Shield;
 import dungeons.treasure.Staff;
 import dungeons.treasure.Sword;
 import dungeons.treasure.Treasure;
+import dungeons.world.CellGrid;
+import dungeons.world.FlowField;
+import dungeons.world.FreeCellChanges;
+import dungeons.world.FreeCellIndex;
+import dungeons.world.IdAllocator;
+import dungeons.world.OccupancyGrid;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
 public class GameMap {
+    // Every player is drawn the same; frames carry their ids separately.
+    public static final char PLAYER_CELL = 'P';
+
     private final int cols;
     private final int rows;
 
     private int treasureCount;
-    private int monsterCount;
 
     private static final int MAX_TREASURE_COUNT = 5;
-    private static final int MAX_MONSTER_COUNT = 5;
+    private static final int DEFAULT_MONSTER_COUNT = 5;
+    private static final int MONSTER_CHASE_DISTANCE = 16;
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
 
     private final List<Player> players;
     private final List<Treasure> treasures;
-    private final List<Monster> monsters;
+    private final MonsterStore monsters;
 
     private final Random random;
+    private final CellGrid cells;
+    private final boolean[] dirtyRows;
+    private final SnapshotEncoder snapshotEncoder;
+    private final FramePool framePool;
+    private final OccupancyGrid occupancyGrid;
+    private final FreeCellIndex freeCells;
+    private final int maxMonsterCount;
+    private final FlowField flowField;
+    private final List<GamePosition> chaseTargets;
+    private final IdAllocator playerIds;
+    private Player[] playersById;
+    private ByteBuffer playersBuffer;
+    private boolean playersUpToDate;
+    private ByteBuffer viewPlayersBuffer;
 
-    private static final String MOVE_KEYS = "wasd";
-    private static final int COUNTING_SYSTEM = 10;
     private static final int TREASURE_TYPES_COUNT = 3;
+    private static final int INITIAL_PLAYER_TABLE_SIZE = 16;
+    private static final int LARGE_MAP_CELLS = 128 * 128;
+    private static final int LARGE_MAP_VIEW_RADIUS = 12;
 
-    private char[][] map = {
+    private static final char[][] DEFAULT_MAP = {
         {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
         {'#', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '#', '.', '.', '.', '#'},
         {'#', '.', '.', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '#', '.', '.', '.', '#'},
@@ -55,55 +88,81 @@ public class GameMap {
     };
 
     public GameMap() {
-        cols = map[0].length;
-        rows = map.length;
-        treasureCount = 0;
-        monsterCount = 0;
-        monsters = new ArrayList<>();
-        treasures = new ArrayList<>();
-        players = new ArrayList<>();
-        random = new Random();
-
-        putTreasure();
-        putMonster();
+        this(defaultCells());
     }
 
     public GameMap(char[][] map) {
-        this.map = map;
-        cols = map[0].length;
-        rows = map.length;
+        this(CellGrid.of(map));
+    }
+
+    public GameMap(CellGrid cells) {
+        this(cells, DEFAULT_MONSTER_COUNT);
+    }
+
+    public GameMap(CellGrid cells, int maxMonsterCount) {
+        this(cells, maxMonsterCount, new Random().nextLong());
+    }
+
+    // Every random choice the map makes comes from the seed, so the same actions in the same order
+    // always play out the same way.
+    public GameMap(CellGrid cells, int maxMonsterCount, long seed) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+        if (maxMonsterCount < 0) {
+            throw new IllegalArgumentException("maxMonsterCount cannot be negative");
+        }
+        this.cells = cells;
+        this.maxMonsterCount = maxMonsterCount;
+        cols = cells.getCols();
+        rows = cells.getRows();
         treasureCount = 0;
-        monsterCount = 0;
-        monsters = new ArrayList<>();
+        monsters = new MonsterStore();
         treasures = new ArrayList<>();
         players = new ArrayList<>();
-        random = new Random();
+        random = new Random(seed);
+        dirtyRows = new boolean[rows];
+        snapshotEncoder = new SnapshotEncoder(cells, !isLargeMap());
+        framePool = new FramePool();
+        occupancyGrid = new OccupancyGrid(cells);
+        freeCells = new FreeCellIndex(cells);
+        playerIds = new IdAllocator();
+        playersById = new Player[INITIAL_PLAYER_TABLE_SIZE];
+        playersBuffer = ByteBuffer.allocate(0);
+        playersUpToDate = false;
+        viewPlayersBuffer = ByteBuffer.allocate(0);
+        flowField = new FlowField(cells);
+        chaseTargets = new ArrayList<>();
 
         putTreasure();
         putMonster();
+    }
 
+    public static CellGrid defaultCells() {
+        return CellGrid.of(DEFAULT_MAP);
     }
 
     public void connectPlayer(Player newPlayer) throws PlayerCharAlreadyExistsException {
         if (newPlayer == null) {
             throw new IllegalArgumentException("newPlayer was null");
         }
-        char newPlayerChar = newPlayer.getPlayerChar();
-
-        if (getPlayerByChar(newPlayerChar) != null) {
-            throw new PlayerCharAlreadyExistsException("Player with this char was already connected");
+        if (newPlayer.getId() != Player.NO_ID) {
+            throw new PlayerCharAlreadyExistsException("Player " + newPlayer.getId() + " was already connected");
         }
 
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-                if (isEmptySpace(x, y)) {
-                    map[y][x] = newPlayerChar;
-                    newPlayer.setPlayerPosition(new GamePosition(x, y));
-                    players.add(newPlayer);
-                    return;
-                }
-            }
+        // A full map leaves the player without a position, so it cannot act.
+        int cell = freeCells.pickRandom(random);
+        if (cell == FreeCellIndex.NO_CELL) {
+            return;
         }
+        int x = cell % cols;
+        int y = cell / cols;
+        setCell(x, y, PLAYER_CELL);
+        occupancyGrid.put(x, y, newPlayer);
+        newPlayer.setPlayerPosition(new GamePosition(x, y));
+        newPlayer.setId(playerIds.allocate());
+        players.add(newPlayer);
+        registerPlayerId(newPlayer);
     }
 
     public void handleAction(Player player, String action) {
@@ -115,28 +174,48 @@ public class GameMap {
             throw new IllegalArgumentException("Action was null");
         }
 
-        String[] parts = action.split(" ");
-        int len = action.length();
+        Command command = new Command();
+        if (TextCommandParser.parse(action, command)) {
+            handleCommand(player, command.getOpcode(), command.getFirstOperand(), command.getSecondOperand());
+        }
+    }
+
+    public void handleCommand(Player player, byte opcode, int firstOperand, int secondOperand) {
+        handleCommand(player, opcode, firstOperand, secondOperand, null);
+    }
 
-        if ("respawn".equals(action)) {
-            respawnPlayer(player);
-        } else if ("unequip".equals(action)) {
-            player.unequipTreasure();
-        } else if (parts[0].equals("drop") && parts.length > 1) {
-            player.removeTreasureAtIndex(Integer.parseInt(parts[1]));
-        } else if (len == 1 && MOVE_KEYS.contains(action)) {
-            movePlayer(player, action.charAt(0));
-        } else if (parts[0].equals("attack") && parts.length > 2) {
-            handleAttack(player, parts);
-        } else if (parts[0].equals("equip") && parts.length > 1) {
-            player.equipTreasureAtIndex(Integer.parseInt(parts[1]));
-        } else if (parts[0].equals("trade") && parts.length > 2) {
-            handleTrade(player, parts);
+    // Region workers keep the free cells they change in freeCellChanges, for the tick thread to apply.
+    public void handleCommand(Player player, byte opcode, int firstOperand, int secondOperand,
+                              FreeCellChanges freeCellChanges) {
+        if (player == null) {
+            throw new IllegalArgumentException("Player was null");
+        }
+        // A player that found no free cell when connecting is not on the map and cannot act.
+        if (player.getGamePosition() == null) {
+            return;
+        }
+
+        // A move is acknowledged whether or not it could be made, so the client drops its prediction of it.
+        if (opcode == Command.MOVE && secondOperand != Command.NO_SEQUENCE) {
+            player.acknowledgeInput(secondOperand);
+        }
+        switch (opcode) {
+            case Command.RESPAWN -> respawnPlayer(player);
+            case Command.UNEQUIP -> player.unequipTreasure();
+            case Command.DROP -> player.removeTreasureAtIndex(firstOperand);
+            case Command.MOVE -> movePlayer(player, (char) firstOperand, freeCellChanges);
+            case Command.ATTACK_MELEE -> playerAttack(player, firstOperand, AttackType.MELEE);
+            case Command.ATTACK_SPELL -> playerAttack(player, firstOperand, AttackType.SPELL);
+            case Command.ATTACK_MONSTER -> monsterAttack(player, (char) firstOperand);
+            case Command.EQUIP -> player.equipTreasureAtIndex(firstOperand);
+            case Command.TRADE -> tradeTreasure(player, firstOperand, secondOperand);
+            default -> {
+            }
         }
     }
 
-    public void tradeTreasure(Player playerTrading, char charOfPlayerToBeTraded, int indexOfTreasureToBeTraded) {
-        Player playerToBeTraded = getPlayerByChar(charOfPlayerToBeTraded);
+    public void tradeTreasure(Player playerTrading, int idOfPlayerToBeTraded, int indexOfTreasureToBeTraded) {
+        Player playerToBeTraded = getPlayerById(idOfPlayerToBeTraded);
         if (playerToBeTraded == null) {
             return;
         }
@@ -148,35 +227,173 @@ public class GameMap {
             throw new IllegalArgumentException("player was null");
         }
         GamePosition gamePosition = player.getGamePosition();
-        map[gamePosition.y()][gamePosition.x()] = '.';
+        if (gamePosition == null) {
+            return;
+        }
+        setCell(gamePosition.x(), gamePosition.y(), '.');
+        occupancyGrid.remove(gamePosition.x(), gamePosition.y(), player);
         players.remove(player);
+        int id = player.getId();
+        if (id != Player.NO_ID && id < playersById.length && playersById[id] == player) {
+            playersById[id] = null;
+            playerIds.release(id);
+            player.setId(Player.NO_ID);
+        }
     }
 
-    public void broadcast(Selector selector) throws IOException {
+    public void broadcast(Selector selector) {
         if (selector == null) {
             throw new IllegalArgumentException("selector was null");
         }
 
+        int frameNumber = nextFrame();
+
         Set<SelectionKey> keys = selector.keys();
-        ByteBuffer mapInformation = mapToByteBuffer();
         for (SelectionKey key : keys) {
-            if (key.isValid() && key.channel() instanceof SocketChannel channel) {
+            if (key.isValid() && key.channel() instanceof SocketChannel &&
+                key.attachment() instanceof ClientSession session) {
 
-                Player currPlayer = (Player) key.attachment();
-                byte[] bytes = currPlayer.toString().getBytes();
-                ByteBuffer dataToSend =
-                    ByteBuffer.allocate(mapInformation.capacity() + bytes.length);
+                if (session.isBackedUp()) {
+                    session.dropPendingFrames();
+                }
+                ByteBuffer frame = encodeFrame(session, frameNumber);
+                if (!session.sendDatagram(frame)) {
+                    session.send(key, frame);
+                }
+                session.acknowledgeFrame(frameNumber);
+            }
+        }
+    }
 
-                dataToSend.put(mapInformation.duplicate());
+    // Encodes the changes since the previous frame once for all clients and returns the new frame number.
+    public int nextFrame() {
+        snapshotEncoder.nextFrame(this);
+        playersUpToDate = false;
+        return snapshotEncoder.getFrameNumber();
+    }
 
-                dataToSend.put(bytes);
-                dataToSend.flip();
-                channel.write(dataToSend);
+    // The frame one client gets for the current frame number: its map update, the players in view, its own
+    // id and last acknowledged move, and its stats. The frame comes from the pool and goes back to it
+    // through the session once written or dropped.
+    public ByteBuffer encodeFrame(ClientSession session, int frameNumber) {
+        if (session == null) {
+            throw new IllegalArgumentException("session was null");
+        }
+        Player player = session.getPlayer();
+        ByteBuffer mapInformation = encodeSnapshot(session, frameNumber);
+        ByteBuffer playerInformation = encodePlayers(session.getViewWindow());
+        byte[] bytes = player.getHudBytes();
+        ByteBuffer dataToSend = framePool.acquireFrame(mapInformation.remaining() + playerInformation.remaining() +
+            SnapshotEncoder.INPUT_ACK_BYTES + bytes.length);
+
+        dataToSend.put(mapInformation);
+        dataToSend.put(playerInformation);
+        dataToSend.putInt(player.getId());
+        dataToSend.putInt(player.getAcknowledgedInput());
+
+        dataToSend.put(bytes);
+        dataToSend.flip();
+        return dataToSend;
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    // Clients with a view radius get a frame limited to their window; everyone else shares the
+    // frame encoded once for the whole map. Large maps have no whole-map frames, so there a radius
+    // covering the map still gets a window, clamped to the map. Datagrams can be lost or reordered, so clients that get them
+    // are sent a compressed keyframe every frame, which applies on its own whichever datagrams arrive.
+    private ByteBuffer encodeSnapshot(ClientSession session, int frameNumber) {
+        Player player = session.getPlayer();
+        int viewRadius = player.getViewRadius();
+        if (viewRadius == 0 && isLargeMap()) {
+            viewRadius = LARGE_MAP_VIEW_RADIUS;
+        }
+        boolean keyframe = session.needsKeyframe(frameNumber) || session.usesDatagrams();
+        boolean compressed = session.wantsCompressedKeyframes() || session.usesDatagrams();
+        ViewWindow viewWindow = session.getViewWindow();
+        if (!isLargeMap() && ViewWindow.coversMap(rows, cols, viewRadius)) {
+            if (viewWindow != null) {
+                session.setViewWindow(null);
             }
+            if (!keyframe) {
+                return snapshotEncoder.getDelta();
+            }
+            return compressed ? snapshotEncoder.getCompressedKeyframe() : snapshotEncoder.getKeyframe();
+        }
+
+        if (viewWindow == null || viewWindow.getRadius() != viewRadius) {
+            viewWindow = new ViewWindow(rows, cols, viewRadius);
+            session.setViewWindow(viewWindow);
+        }
+        return snapshotEncoder.encodeView(viewWindow, player.getGamePosition(), keyframe, compressed);
+    }
+
+    // Clients of the whole map share one list of every player, encoded once per frame. A window is searched
+    // for player cells instead, which costs the same however many players are elsewhere on the map.
+    private ByteBuffer encodePlayers(ViewWindow viewWindow) {
+        if (viewWindow == null) {
+            if (!playersUpToDate) {
+                playersBuffer = ensureCapacity(playersBuffer,
+                    Integer.BYTES + players.size() * SnapshotEncoder.PLAYER_ENTRY_BYTES);
+                playersBuffer.putInt(players.size());
+                for (Player player : players) {
+                    putPlayer(playersBuffer, player);
+                }
+                playersBuffer.flip();
+                playersUpToDate = true;
+            }
+            return playersBuffer.duplicate();
+        }
+
+        int originX = viewWindow.getOriginX();
+        int originY = viewWindow.getOriginY();
+        viewPlayersBuffer = ensureCapacity(viewPlayersBuffer,
+            Integer.BYTES + viewWindow.getRows() * viewWindow.getCols() * SnapshotEncoder.PLAYER_ENTRY_BYTES);
+        viewPlayersBuffer.putInt(0);
+        int playerCount = 0;
+        for (int y = originY; y < originY + viewWindow.getRows(); y++) {
+            for (int x = originX; x < originX + viewWindow.getCols(); x++) {
+                Player player = cells.get(x, y) == PLAYER_CELL ? occupancyGrid.getPlayer(x, y) : null;
+                if (player != null) {
+                    putPlayer(viewPlayersBuffer, player);
+                    playerCount++;
+                }
+            }
+        }
+        viewPlayersBuffer.putInt(0, playerCount);
+        viewPlayersBuffer.flip();
+        return viewPlayersBuffer.duplicate();
+    }
+
+    private static void putPlayer(ByteBuffer buffer, Player player) {
+        GamePosition gamePosition = player.getGamePosition();
+        buffer.putInt(player.getId());
+        buffer.putChar((char) gamePosition.x());
+        buffer.putChar((char) gamePosition.y());
+    }
+
+    // Returns a cleared buffer of at least the given capacity.
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int capacity) {
+        if (buffer.capacity() < capacity) {
+            return ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
         }
+        return buffer.clear();
     }
 
     public void movePlayer(Player player, char way) {
+        movePlayer(player, way, null);
+    }
+
+    public void applyFreeCellChanges(FreeCellChanges freeCellChanges) {
+        if (freeCellChanges == null) {
+            throw new IllegalArgumentException("freeCellChanges was null");
+        }
+        freeCellChanges.applyTo(freeCells);
+    }
+
+    private void movePlayer(Player player, char way, FreeCellChanges freeCellChanges) {
         if (player.isDead()) {
             return;
         }
@@ -190,26 +407,30 @@ public class GameMap {
 
         if (isEmptySpace(newPlayerX, newPlayerY)) {
             player.move(way);
-        } else if (isTreasure(newPlayerX, newPlayerY) &&
-            getTreasureAtPosition(new GamePosition(newPlayerX, newPlayerY)).getLevel() <= player.getLevel()) {
+        } else if (isTreasure(newPlayerX, newPlayerY)) {
+            Treasure treasure = occupancyGrid.getTreasure(newPlayerX, newPlayerY);
+            if (treasure == null || treasure.getLevel() > player.getLevel()) {
+                return;
+            }
             player.move(way);
-            GamePosition gamePosition = new GamePosition(newPlayerX, newPlayerY);
-            Treasure treasure = getTreasureAtPosition(gamePosition);
             player.putTreasure(treasure);
             treasures.remove(treasure);
             treasureCount--;
             player.getXpForTreasurePickUp();
             putTreasure();
+        } else {
+            // Blocked - the map is left as it is.
+            return;
         }
-        updatePlayerPosition(player, oldPlayerPosition, player.getGamePosition());
+        updatePlayerPosition(player, oldPlayerPosition, player.getGamePosition(), freeCellChanges);
     }
 
     public boolean isEmptySpace(int x, int y) {
-        return map[y][x] == '.';
+        return cells.get(x, y) == '.';
     }
 
     public boolean isTreasure(int x, int y) {
-        return map[y][x] == 'T';
+        return cells.get(x, y) == 'T';
     }
 
     public boolean isValidGamePosition(GamePosition gamePosition) {
@@ -221,20 +442,28 @@ public class GameMap {
         return 0 <= x && x < cols && 0 <= y && y < rows;
     }
 
-    public void checkForDeadMonster() {
-        Monster deadMonster = null;
-        for (Monster monster : monsters) {
-            if (monster.isDead()) {
-                GamePosition gamePosition = monster.getGamePosition();
-                map[gamePosition.y()][gamePosition.x()] = '.';
-                deadMonster = monster;
-                break;
+    // Every monster within MONSTER_CHASE_DISTANCE of a living player hits it when next to it, or takes one
+    // step towards the nearest one. A single search from all players serves every monster.
+    public void moveMonsters() {
+        chaseTargets.clear();
+        for (Player player : players) {
+            if (!player.isDead()) {
+                chaseTargets.add(player.getGamePosition());
             }
         }
-        if (deadMonster != null) {
-            monsters.remove(deadMonster);
-            monsterCount--;
-            putMonster();
+        if (chaseTargets.isEmpty() || monsters.size() == 0) {
+            return;
+        }
+        flowField.compute(chaseTargets, MONSTER_CHASE_DISTANCE);
+        for (int slot = 0; slot < monsters.size(); slot++) {
+            moveMonster(slot);
+        }
+    }
+
+    public void checkForDeadMonster() {
+        int slot = monsters.findDead();
+        if (slot != MonsterStore.NO_SLOT) {
+            removeDeadMonster(monsters.get(slot));
         }
     }
 
@@ -251,7 +480,11 @@ public class GameMap {
     }
 
     public int getMonsterCount() {
-        return monsterCount;
+        return monsters.size();
+    }
+
+    public int getFreeCellCount() {
+        return freeCells.size();
     }
 
     public List<Player> getPlayers() {
@@ -263,55 +496,138 @@ public class GameMap {
     }
 
     public List<Monster> getMonsters() {
-        return monsters;
+        return monsters.asList();
     }
 
     public Random getRandom() {
         return random;
     }
 
+    // A copy of the whole map, meant for small maps and tests.
     public char[][] getMap() {
-        return map;
+        return cells.toArray();
+    }
+
+    public CellGrid getCells() {
+        return cells;
+    }
+
+    public char getCell(int x, int y) {
+        return cells.get(x, y);
+    }
+
+    // Large maps are only ever sent as view windows, so no frame of the whole map is kept for them.
+    public boolean isLargeMap() {
+        return (long) rows * cols > LARGE_MAP_CELLS;
     }
 
     public void setPosition(GamePosition gamePosition, char newChar) {
         if (!isValidGamePosition(gamePosition)) {
             return;
         }
-        map[gamePosition.y()][gamePosition.x()] = newChar;
+        setCell(gamePosition.x(), gamePosition.y(), newChar);
+        occupancyGrid.clear(gamePosition.x(), gamePosition.y());
+    }
+
+    public boolean isRowDirty(int y) {
+        return dirtyRows[y];
+    }
 
+    public void clearDirtyRows() {
+        Arrays.fill(dirtyRows, false);
     }
 
-    private void updatePlayerPosition(Player player, GamePosition oldPosition, GamePosition newPosition) {
-        map[oldPosition.y()][oldPosition.x()] = '.';
-        map[newPosition.y()][newPosition.x()] = player.getPlayerChar();
+    private void setCell(int x, int y, char newChar) {
+        setCell(x, y, newChar, null);
     }
 
-    private ByteBuffer mapToByteBuffer() {
+    // Without freeCellChanges the free cells are updated right away, which only the tick thread may do.
+    private void setCell(int x, int y, char newChar, FreeCellChanges freeCellChanges) {
+        boolean wasFree = isEmptySpace(x, y);
+        boolean isFree = newChar == '.';
+        cells.set(x, y, newChar);
+        dirtyRows[y] = true;
+        if (wasFree == isFree) {
+            return;
+        }
+        if (freeCellChanges != null) {
+            freeCellChanges.add(x, y, isFree);
+        } else if (isFree) {
+            freeCells.add(x, y);
+            occupancyGrid.allocate(x, y);
+        } else {
+            freeCells.remove(x, y);
+        }
+    }
 
-        ByteBuffer byteBuffer = ByteBuffer.allocate(Character.BYTES * (rows * cols + 2));
-        byteBuffer.putChar((char) rows);
-        byteBuffer.putChar((char) cols);
+    private void updatePlayerPosition(Player player, GamePosition oldPosition, GamePosition newPosition,
+                                      FreeCellChanges freeCellChanges) {
+        setCell(oldPosition.x(), oldPosition.y(), '.', freeCellChanges);
+        occupancyGrid.remove(oldPosition.x(), oldPosition.y(), player);
+        setCell(newPosition.x(), newPosition.y(), PLAYER_CELL, freeCellChanges);
+        occupancyGrid.put(newPosition.x(), newPosition.y(), player);
+    }
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                byteBuffer.putChar(map[i][j]);
+    // A cell one step closer is walkable but may be taken by another monster or a treasure, so the
+    // monster tries every such cell before giving up for this turn.
+    private void moveMonster(int slot) {
+        int monsterX = monsters.getX(slot);
+        int monsterY = monsters.getY(slot);
+        int distance = flowField.distance(monsterX, monsterY);
+        if (distance == FlowField.UNREACHED || distance == 0) {
+            return;
+        }
+        for (int step = 0; step < STEP_X.length; step++) {
+            int x = monsterX + STEP_X[step];
+            int y = monsterY + STEP_Y[step];
+            if (!flowField.isInside(x, y) || flowField.distance(x, y) != distance - 1) {
+                continue;
+            }
+            if (distance == 1) {
+                Player target = occupancyGrid.getPlayer(x, y);
+                if (target != null && !target.isDead()) {
+                    monsters.attack(slot, target);
+                    return;
+                }
+            } else if (isEmptySpace(x, y)) {
+                Monster monster = monsters.get(slot);
+                setCell(monsterX, monsterY, '.');
+                occupancyGrid.remove(monsterX, monsterY, monster);
+                setCell(x, y, monster.getCharForMonster());
+                occupancyGrid.put(x, y, monster);
+                monsters.setPosition(slot, x, y);
+                return;
             }
         }
-        byteBuffer.flip();
-        return byteBuffer;
+    }
+
+    private void registerPlayerId(Player player) {
+        int id = player.getId();
+        if (id >= playersById.length) {
+            playersById = Arrays.copyOf(playersById, Math.max(id + 1, playersById.length * 2));
+        }
+        playersById[id] = player;
+    }
+
+    private void removeDeadMonster(Monster monster) {
+        int x = monster.getX();
+        int y = monster.getY();
+        setCell(x, y, '.');
+        occupancyGrid.remove(x, y, monster);
+        monsters.remove(monster);
+        putMonster();
     }
 
     private void respawnPlayer(Player player) {
-        player.respawn();
+        player.respawn(random);
     }
 
-    private void playerAttack(Player attackingPlayer, char defendingPlayerChar, AttackType attackType) {
+    private void playerAttack(Player attackingPlayer, int defendingPlayerId, AttackType attackType) {
         if (attackingPlayer.isDead()) {
             return;
         }
 
-        Player toBeAttacked = getPlayerByChar(defendingPlayerChar);
+        Player toBeAttacked = getPlayerById(defendingPlayerId);
 
         if (toBeAttacked == null) {
             return;
@@ -332,65 +648,55 @@ public class GameMap {
         if (!isValidGamePosition(monsterGamePosition)) {
             return;
         }
-        Monster monsterToAttack = getMonsterByPosition(monsterGamePosition);
+        Monster monsterToAttack = occupancyGrid.getMonster(monsterGamePosition.x(), monsterGamePosition.y());
         if (monsterToAttack == null) {
             return;
         }
         attackingPlayer.attackActorMelee(monsterToAttack);
-        checkForDeadMonster();
+        if (monsterToAttack.isDead()) {
+            removeDeadMonster(monsterToAttack);
+        }
     }
 
     private void putMonster() {
         int averageLevel = getAveragePlayerLevel();
-        while (monsterCount < MAX_MONSTER_COUNT) {
-
-            int randomX = random.nextInt(cols);
-            int randomY = random.nextInt(rows);
-
-            if (isEmptySpace(randomX, randomY)) {
-                monsterCount++;
-                GamePosition gamePosition = new GamePosition(randomX, randomY);
-                Monster monster = new Monster(random.nextInt(averageLevel) + 1, gamePosition);
-                monsters.add(monster);
-                map[randomY][randomX] = monster.getCharForMonster();
+        while (monsters.size() < maxMonsterCount) {
+            int cell = freeCells.pickRandom(random);
+            if (cell == FreeCellIndex.NO_CELL) {
+                return;
             }
+            int randomX = cell % cols;
+            int randomY = cell / cols;
+            Monster monster = monsters.add(random.nextInt(averageLevel) + 1, randomX, randomY);
+            setCell(randomX, randomY, monster.getCharForMonster());
+            occupancyGrid.put(randomX, randomY, monster);
         }
     }
 
     private void putTreasure() {
         int averageLevel = getAveragePlayerLevel();
         while (treasureCount < MAX_TREASURE_COUNT) {
-
-            int randomX = random.nextInt(cols);
-            int randomY = random.nextInt(rows);
-            if (isEmptySpace(randomX, randomY)) {
-                treasureCount++;
-                int randomWeapon = random.nextInt(TREASURE_TYPES_COUNT); //0 - Sword 1 - Staff 2 - Shield
-                GamePosition gamePosition = new GamePosition(randomX, randomY);
-                Treasure treasure;
-                if (randomWeapon == 0) {
-                    treasure = new Sword(random.nextInt(averageLevel) + 1, gamePosition);
-                } else if (randomWeapon == 1) {
-                    treasure = new Staff(random.nextInt(averageLevel) + 1, gamePosition);
-                } else {
-                    treasure = new Shield(random.nextInt(averageLevel) + 1, gamePosition);
-                }
-                treasures.add(treasure);
-                map[randomY][randomX] = 'T';
+            int cell = freeCells.pickRandom(random);
+            if (cell == FreeCellIndex.NO_CELL) {
+                return;
             }
-        }
-    }
-
-    private Treasure getTreasureAtPosition(GamePosition gamePosition) {
-        if (gamePosition == null) {
-            throw new IllegalArgumentException("gamePosition was null");
-        }
-        for (Treasure treasure : treasures) {
-            if (treasure.getGamePosition().equals(gamePosition)) {
-                return treasure;
+            int randomX = cell % cols;
+            int randomY = cell / cols;
+            treasureCount++;
+            int randomWeapon = random.nextInt(TREASURE_TYPES_COUNT); //0 - Sword 1 - Staff 2 - Shield
+            GamePosition gamePosition = new GamePosition(randomX, randomY);
+            Treasure treasure;
+            if (randomWeapon == 0) {
+                treasure = new Sword(random.nextInt(averageLevel) + 1, gamePosition);
+            } else if (randomWeapon == 1) {
+                treasure = new Staff(random.nextInt(averageLevel) + 1, gamePosition);
+            } else {
+                treasure = new Shield(random.nextInt(averageLevel) + 1, gamePosition);
             }
+            treasures.add(treasure);
+            setCell(randomX, randomY, 'T');
+            occupancyGrid.put(randomX, randomY, treasure);
         }
-        return null;
     }
 
     private int getAveragePlayerLevel() {
@@ -405,18 +711,6 @@ public class GameMap {
         return average / players.size();
     }
 
-    private Monster getMonsterByPosition(GamePosition gamePosition) {
-        if (gamePosition == null) {
-            throw new IllegalArgumentException("gameposition was null");
-        }
-        for (Monster monster : monsters) {
-            if (monster.getGamePosition().equals(gamePosition)) {
-                return monster;
-            }
-        }
-        return null;
-    }
-
     private GamePosition getNewGamePosition(GamePosition oldGamePosition, char way) {
         int x = oldGamePosition.x();
         int y = oldGamePosition.y();
@@ -429,31 +723,11 @@ public class GameMap {
         };
     }
 
-    private Player getPlayerByChar(char c) {
-        for (Player player : players) {
-            if (player.getPlayerChar() == c) {
-                return player;
-            }
-        }
-        return null;
-    }
-
-    private void handleAttack(Player player, String[] parts) {
-        char target = parts[2].charAt(0);
-
-        if (parts[1].equals("melee")) {
-            playerAttack(player, target, AttackType.MELEE);
-        } else if (parts[1].equals("spell")) {
-            playerAttack(player, target, AttackType.SPELL);
-        } else if (parts[1].equals("monster")) {
-            monsterAttack(player, target);
+    public Player getPlayerById(int id) {
+        if (id < 0 || id >= playersById.length) {
+            return null;
         }
-    }
-
-    private void handleTrade(Player player, String[] parts) {
-        char playerToReceive = parts[1].charAt(0);
-        char indexOfTreasure = Character.forDigit(parts[2].charAt(0), COUNTING_SYSTEM);
-        tradeTreasure(player, playerToReceive, indexOfTreasure);
+        return playersById[id];
     }
 
 }
@@ -1,54 +1,157 @@
 package dungeons;
 
 import dungeons.entities.player.Player;
-import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.metrics.AdminServer;
+import dungeons.metrics.ServerMetrics;
+import dungeons.metrics.ServerStats;
+import dungeons.persistence.PlayerProfile;
+import dungeons.persistence.ProfileJournal;
+import dungeons.protocol.Command;
+import dungeons.protocol.CommandDecoder;
+import dungeons.protocol.SnapshotEncoder;
+import dungeons.server.ClientSession;
+import dungeons.server.ServerOptions;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Accepts connections and keeps them in a lobby until they pick a dungeon. Every dungeon runs its own
+// selector and tick loop on its own thread, so rooms never wait on each other.
 public class GameServer {
     private static final String FILE_NAME_FOR_EXCEPTION_LOGS = "ServerLog";
 
     public static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
-    private static final int BUFFER_SIZE = 1_024;
+    private static final int MAX_ROOMS = 64;
+    private static final int DEFAULT_ROOM = 0;
+    private static final int MAX_PORT = 65_535;
+    private static final String STATS_MBEAN_NAME = "dungeons:type=ServerStats";
+
+    private final ServerOptions options;
+    private final List<DungeonInstance> rooms;
+    private final CommandDecoder commandDecoder;
+    private final Command command;
+    private final ServerMetrics metrics;
     private Selector selector;
-    private ByteBuffer buffer;
-    private GameMap gameMap;
+    private DatagramChannel datagramChannel;
+    private ProfileJournal profileJournal;
+    private final List<Handoff> pendingHandoffs;
+    // Generating a dungeon takes long enough to stall every lobby connection, so rooms created by players
+    // are built on a thread of their own, one at a time, and handed back to the lobby through builtRooms.
+    private final ExecutorService roomBuilder;
+    private final Queue<BuiltRoom> builtRooms;
+    private final Set<SelectionKey> waitingForRooms;
+    private int roomsBeingBuilt;
+    // Only the room builder changes it once the server runs, so a room that failed to build leaves no gap.
+    private int nextRoomId;
+    private volatile int lobbyConnections;
+
+    private record Handoff(DungeonInstance room, SocketChannel channel, ClientSession session) {
+    }
+
+    // The room is null if it could not be built.
+    private record BuiltRoom(SelectionKey key, DungeonInstance room, IOException failure) {
+    }
+
+    public GameServer(ServerOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options was null");
+        }
+        this.options = options;
+        rooms = new CopyOnWriteArrayList<>();
+        commandDecoder = new CommandDecoder(options.isTextCommands());
+        command = new Command();
+        metrics = new ServerMetrics();
+        pendingHandoffs = new ArrayList<>();
+        roomBuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        builtRooms = new ConcurrentLinkedQueue<>();
+        waitingForRooms = new HashSet<>();
+        roomsBeingBuilt = 0;
+        nextRoomId = 0;
+        lobbyConnections = 0;
+    }
 
     public static void main(String[] args) {
-        GameServer gameServer = new GameServer();
+        GameServer gameServer = new GameServer(ServerOptions.parse(args));
         gameServer.startServer();
     }
 
-    private void startServer() {
-        gameMap = new GameMap();
-        try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+    // Rooms are only ever added, by the lobby thread. Safe to read from any thread.
+    public List<DungeonInstance> getRooms() {
+        return Collections.unmodifiableList(rooms);
+    }
+
+    // Connections that have not joined a dungeon yet.
+    public int getLobbyConnections() {
+        return lobbyConnections;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Null unless the server was given a data directory.
+    public ProfileJournal getProfileJournal() {
+        return profileJournal;
+    }
+
+    // Blocks for as long as the server runs.
+    public void startServer() {
+        try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+             DatagramChannel snapshotChannel = DatagramChannel.open()) {
+            if (options.getDataDirectory() != null) {
+                profileJournal = new ProfileJournal(options.getDataDirectory());
+                Runtime.getRuntime().addShutdownHook(new Thread(profileJournal::close));
+            }
+            for (int i = 0; i < options.getInitialRooms(); i++) {
+                startRoom(buildRoom());
+            }
+            startMonitoring();
             serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
             serverSocketChannel.configureBlocking(false);
+            // Only ever sent from, by every room; a full socket buffer drops the datagram instead of blocking.
+            snapshotChannel.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+            snapshotChannel.configureBlocking(false);
+            datagramChannel = snapshotChannel;
             selector = Selector.open();
             serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-            buffer = ByteBuffer.allocate(BUFFER_SIZE);
             while (true) {
-                int readyChannels = selector.select();
-                if (readyChannels == 0) {
-                    continue;
-                }
+                selector.select();
+                metrics.selectorWokeUp();
                 iterateThroughKeys();
+                startBuiltRooms();
+                handOffToRooms();
             }
         } catch (IOException e) {
             logException(e);
@@ -57,60 +160,253 @@ public class GameServer {
                     "Exception Logs saved to file: " +
                     Paths.get(FILE_NAME_FOR_EXCEPTION_LOGS).toAbsolutePath(),
                 e);
-        } catch (PlayerCharAlreadyExistsException e) {
+        }
+    }
+
+    // Monitoring is best effort: a server that cannot register its statistics still serves players.
+    private void startMonitoring() {
+        ServerStats stats = new ServerStats(this, metrics);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(STATS_MBEAN_NAME));
+        } catch (JMException e) {
             logException(e);
-            throw new RuntimeException(e);
+        }
+        if (options.getAdminPort() != 0) {
+            try {
+                new AdminServer(options.getAdminPort(), stats::report).start();
+            } catch (IOException e) {
+                logException(e);
+            }
+        }
+    }
+
+    // Ids follow the order rooms are built in, which is the order they are started in.
+    private DungeonInstance buildRoom() throws IOException {
+        DungeonInstance room = new DungeonInstance(nextRoomId, options, profileJournal, metrics);
+        nextRoomId++;
+        return room;
+    }
+
+    private void startRoom(DungeonInstance room) {
+        rooms.add(room);
+        Thread thread = new Thread(room, "dungeon-" + room.getId());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // The connection's commands after "create" wait in its input buffer until it is moved to the new room.
+    private void requestRoom(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+        session.getInputBuffer().compact();
+        waitingForRooms.add(key);
+        roomsBeingBuilt++;
+        roomBuilder.execute(() -> {
+            try {
+                builtRooms.add(new BuiltRoom(key, buildRoom(), null));
+            } catch (IOException e) {
+                builtRooms.add(new BuiltRoom(key, null, e));
+            }
+            selector.wakeup();
+        });
+    }
+
+    private void startBuiltRooms() {
+        BuiltRoom builtRoom;
+        while ((builtRoom = builtRooms.poll()) != null) {
+            roomsBeingBuilt--;
+            SelectionKey key = builtRoom.key();
+            waitingForRooms.remove(key);
+            if (builtRoom.room() == null) {
+                logException(builtRoom.failure());
+                if (key.isValid()) {
+                    sendMessage(key, "The room could not be created.");
+                }
+                continue;
+            }
+            startRoom(builtRoom.room());
+            // The client may have left while its room was built.
+            if (key.isValid()) {
+                ((ClientSession) key.attachment()).getInputBuffer().flip();
+                moveToRoom(key, builtRoom.room());
+            }
         }
     }
 
-    private void iterateThroughKeys()
-        throws IOException, PlayerCharAlreadyExistsException {
+    private void iterateThroughKeys() throws IOException {
         Set<SelectionKey> selectedKeys = selector.selectedKeys();
         Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
         while (keyIterator.hasNext()) {
             SelectionKey key = keyIterator.next();
-            if (key.isReadable()) {
-                handleQuery(key);
-            } else if (key.isAcceptable()) {
+            keyIterator.remove();
+            if (key.isAcceptable()) {
                 handleNewConnection(key);
+                continue;
+            }
+            if (key.isValid() && key.isWritable()) {
+                ((ClientSession) key.attachment()).flush(key);
+            }
+            if (key.isValid() && key.isReadable()) {
+                handleQuery(key);
             }
-            gameMap.broadcast(selector);
-            keyIterator.remove();
         }
     }
 
+    private void handleNewConnection(SelectionKey key) throws IOException {
+        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
+        SocketChannel accept = sockChannel.accept();
+        accept.configureBlocking(false);
+        ClientSession session = new ClientSession();
+        session.setMetrics(metrics);
+        lobbyConnections++;
+        SelectionKey lobbyKey = accept.register(selector, SelectionKey.OP_READ, session);
+        sendMessage(lobbyKey, "Welcome to DungeonsOnline! " + describeRooms());
+    }
+
     private void handleQuery(SelectionKey key) throws IOException {
         SocketChannel sc = (SocketChannel) key.channel();
+        ClientSession session = (ClientSession) key.attachment();
+        ByteBuffer buffer = session.getInputBuffer();
 
-        buffer.clear();
-        int r = sc.read(buffer);
+        int r;
+        try {
+            r = sc.read(buffer);
+        } catch (IOException e) {
+            r = -1;
+        }
         if (r < 0) {
-            System.out.println("Client has closed the connection");
-            sc.close();
-            gameMap.disconnectPlayer((Player) key.attachment());
-            gameMap.broadcast(selector);
+            key.channel().close();
+            lobbyConnections--;
+            if (profileJournal != null && session.getProfileId() != Player.NO_PROFILE) {
+                profileJournal.logout(session.getProfileId());
+            }
             return;
         }
+        if (waitingForRooms.contains(key)) {
+            return;
+        }
+
         buffer.flip();
-        byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
+        int commandStart = buffer.position();
+        while (commandDecoder.next(buffer, command)) {
+            switch (command.getOpcode()) {
+                case Command.LIST_ROOMS -> sendMessage(key, describeRooms());
+                case Command.CREATE_ROOM -> {
+                    if (rooms.size() + roomsBeingBuilt >= MAX_ROOMS) {
+                        sendMessage(key, "No more rooms can be created.");
+                    } else {
+                        requestRoom(key);
+                        return;
+                    }
+                }
+                case Command.JOIN_ROOM -> {
+                    int roomId = command.getFirstOperand();
+                    if (roomId < 0 || roomId >= rooms.size()) {
+                        sendMessage(key, "There is no room " + roomId + ". " + describeRooms());
+                    } else {
+                        moveToRoom(key, rooms.get(roomId));
+                        return;
+                    }
+                }
+                case Command.LOGIN -> login(key, command.getFirstOperand());
+                case Command.COMPRESS -> session.setCompressedKeyframes(true);
+                case Command.UDP_SNAPSHOTS -> sendSnapshotsAsDatagrams(key, command.getFirstOperand());
+                case Command.RESYNC -> {
+                }
+                default -> {
+                    // Clients that start playing right away join the default room with their command.
+                    buffer.position(commandStart);
+                    moveToRoom(key, rooms.get(DEFAULT_ROOM));
+                    return;
+                }
+            }
+            commandStart = buffer.position();
+        }
+        buffer.compact();
+    }
 
-        String newContent = new String(bytes, StandardCharsets.UTF_8);
-        Player currPlayer = (Player) key.attachment();
-        gameMap.handleAction(currPlayer, newContent);
+    private void login(SelectionKey key, int profileId) {
+        ClientSession session = (ClientSession) key.attachment();
+        if (profileJournal == null) {
+            sendMessage(key, "Profiles are not enabled on this server.");
+        } else if (profileId < 0 || session.getProfileId() != Player.NO_PROFILE) {
+            sendMessage(key, "Cannot log in as " + profileId + ".");
+        } else if (!profileJournal.login(profileId)) {
+            sendMessage(key, "Profile " + profileId + " is already playing.");
+        } else {
+            session.setProfileId(profileId);
+            PlayerProfile profile = profileJournal.find(profileId);
+            sendMessage(key, profile == null ? "Created profile " + profileId + "." :
+                "Welcome back! Level " + profile.level() + ", " + profile.treasures().size() + " treasures.");
+        }
     }
 
-    private void handleNewConnection(SelectionKey key)
-        throws IOException, PlayerCharAlreadyExistsException {
-        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
-        SocketChannel accept = sockChannel.accept();
-        accept.configureBlocking(false);
-        Player newPlayer = new Player();
-        accept.register(selector, SelectionKey.OP_READ, newPlayer);
-        gameMap.connectPlayer(newPlayer);
+    // The datagrams go to the host the connection comes from, so clients behind NAT keep using the connection.
+    private void sendSnapshotsAsDatagrams(SelectionKey key, int port) throws IOException {
+        if (port <= 0 || port > MAX_PORT) {
+            sendMessage(key, "Cannot send frames to port " + port + ".");
+            return;
+        }
+        SocketChannel channel = (SocketChannel) key.channel();
+        InetSocketAddress remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        ((ClientSession) key.attachment()).setDatagramTarget(datagramChannel,
+            new InetSocketAddress(remoteAddress.getAddress(), port));
+    }
+
+    // Players are created here and get their ids from the room they join, once they are on its map.
+    private void moveToRoom(SelectionKey key, DungeonInstance room) {
+        ClientSession session = (ClientSession) key.attachment();
+        key.cancel();
+        lobbyConnections--;
+        session.getInputBuffer().compact();
+        Player player = new Player();
+        player.setViewRadius(options.getViewRadius());
+        int profileId = session.getProfileId();
+        if (profileId != Player.NO_PROFILE) {
+            PlayerProfile profile = profileJournal.find(profileId);
+            if (profile == null) {
+                player.setProfileId(profileId);
+            } else {
+                player.loadProfile(profile);
+            }
+        }
+        session.setPlayer(player);
+        pendingHandoffs.add(new Handoff(room, (SocketChannel) key.channel(), session));
+    }
+
+    // A cancelled key stays registered until the selector's next select, and a channel cannot switch to
+    // blocking mode for a thread-per-connection room while it is registered anywhere.
+    private void handOffToRooms() throws IOException {
+        if (pendingHandoffs.isEmpty()) {
+            return;
+        }
+        selector.selectNow();
+        for (Handoff handoff : pendingHandoffs) {
+            handoff.room().join(handoff.channel(), handoff.session());
+        }
+        pendingHandoffs.clear();
+    }
+
+    private String describeRooms() {
+        StringBuilder description = new StringBuilder("Rooms:");
+        for (DungeonInstance room : rooms) {
+            description.append(" [")
+                .append(room.getId())
+                .append(": ")
+                .append(room.getPlayerCount())
+                .append(" players]");
+        }
+        return description.append(". Type 'login <profile>' to keep your progress, 'join <room>', 'create' ")
+            .append("or start playing to join room ")
+            .append(DEFAULT_ROOM)
+            .append('.')
+            .toString();
+    }
+
+    private static void sendMessage(SelectionKey key, String message) {
+        ((ClientSession) key.attachment()).send(key, SnapshotEncoder.encodeMessage(message));
     }
 
-    private static void logException(Exception e) {
+    static void logException(Exception e) {
         try (PrintWriter writer = new PrintWriter(
             new BufferedWriter(new FileWriter(FILE_NAME_FOR_EXCEPTION_LOGS, true)))) {
             writer.println(LocalDateTime.now());
@@ -0,0 +1,115 @@
+package dungeons.client;
+
+import dungeons.protocol.Command;
+
+// Moves the player on the client as soon as a move is typed, instead of a round trip later. Every predicted
+// move gets a sequence number that goes to the server with it. Each frame tells which moves it already
+// includes; the prediction starts over from the position in the frame and replays the moves the server
+// has not applied yet. The server stays the only one that decides where the player is.
+public class MovementPredictor {
+    private static final int MAX_PENDING = 64;
+    // A move the server dropped is never acknowledged, so it stops being predicted after this many frames.
+    private static final int MAX_PENDING_FRAMES = 40;
+    private static final char FLOOR = '.';
+    private static final char TREASURE = 'T';
+
+    private final int[] sequences;
+    private final char[] directions;
+    private final int[] sentFrames;
+    private int head;
+    private int size;
+    private int nextSequence;
+    private int frames;
+    private int x;
+    private int y;
+    private int serverX;
+    private int serverY;
+    private boolean positionKnown;
+
+    public MovementPredictor() {
+        sequences = new int[MAX_PENDING];
+        directions = new char[MAX_PENDING];
+        sentFrames = new int[MAX_PENDING];
+        head = 0;
+        size = 0;
+        nextSequence = Command.NO_SEQUENCE + 1;
+        frames = 0;
+        positionKnown = false;
+    }
+
+    // Applies a move to the predicted position. Returns the sequence number to send it with, or NO_SEQUENCE
+    // when the position is not known yet or too many moves are unacknowledged; such moves are not predicted.
+    public int predict(char direction, char[][] map, int originX, int originY) {
+        if (!positionKnown || size == MAX_PENDING) {
+            return Command.NO_SEQUENCE;
+        }
+        int sequence = nextSequence++;
+        int tail = (head + size) % MAX_PENDING;
+        sequences[tail] = sequence;
+        directions[tail] = direction;
+        sentFrames[tail] = frames;
+        size++;
+        step(direction, map, originX, originY);
+        return sequence;
+    }
+
+    // Called with every frame that lists the player.
+    public void reconcile(int acknowledged, int serverX, int serverY, char[][] map, int originX, int originY) {
+        frames++;
+        while (size > 0 && (sequences[head] <= acknowledged || frames - sentFrames[head] > MAX_PENDING_FRAMES)) {
+            head = (head + 1) % MAX_PENDING;
+            size--;
+        }
+        this.serverX = serverX;
+        this.serverY = serverY;
+        x = serverX;
+        y = serverY;
+        positionKnown = true;
+        for (int i = 0; i < size; i++) {
+            step(directions[(head + i) % MAX_PENDING], map, originX, originY);
+        }
+    }
+
+    public boolean isPositionKnown() {
+        return positionKnown;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getPendingCount() {
+        return size;
+    }
+
+    // The same rule the server applies, as far as the client can see: floor and treasures can be walked
+    // onto. A treasure of too high a level is only refused by the server, and the next frame corrects that.
+    private void step(char direction, char[][] map, int originX, int originY) {
+        int nextX = x;
+        int nextY = y;
+        switch (direction) {
+            case 'w' -> nextY--;
+            case 's' -> nextY++;
+            case 'a' -> nextX--;
+            case 'd' -> nextX++;
+            default -> {
+                return;
+            }
+        }
+        int row = nextY - originY;
+        int col = nextX - originX;
+        if (row < 0 || row >= map.length || col < 0 || col >= map[row].length) {
+            return;
+        }
+        // The map still shows the player where the server has it.
+        char cell = nextX == serverX && nextY == serverY ? FLOOR : map[row][col];
+        if (cell == FLOOR || cell == TREASURE) {
+            x = nextX;
+            y = nextY;
+        }
+    }
+}
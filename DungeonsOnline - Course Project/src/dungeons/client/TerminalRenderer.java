@@ -0,0 +1,137 @@
+package dungeons.client;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// Draws frames at the top of an ANSI terminal. Each frame is laid out in a back buffer and compared with
+// the front buffer, which holds what the terminal shows, so only the cells that changed are written - one
+// cursor move per run of them, all in a single write. The lines below the frame are a scrolling region
+// of their own, where the player types and messages are printed without moving the frame.
+public class TerminalRenderer {
+    private static final String CSI = "\u001b[";
+    private static final String SAVE_CURSOR = "\u001b7";
+    private static final String RESTORE_CURSOR = "\u001b8";
+    // Unchanged cells closer than this to the next change are rewritten, which is shorter than moving there.
+    private static final int CURSOR_MOVE_LENGTH = 8;
+
+    private final PrintStream out;
+    private final StringBuilder output;
+    private char[] front;
+    private char[] back;
+    private int height;
+    private int width;
+
+    public TerminalRenderer(PrintStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("out was null");
+        }
+        this.out = out;
+        output = new StringBuilder();
+        front = new char[0];
+        back = new char[0];
+        height = 0;
+        width = 0;
+    }
+
+    // The map may be null before the first keyframe. The text goes below the map, one line per line of it.
+    public void render(char[][] map, int rows, int cols, CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("text was null");
+        }
+        if (map == null) {
+            rows = 0;
+            cols = 0;
+        }
+        int textWidth = 0;
+        int textLines = 1;
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                textWidth = Math.max(textWidth, i - lineStart);
+                textLines++;
+                lineStart = i + 1;
+            }
+        }
+        textWidth = Math.max(textWidth, text.length() - lineStart);
+
+        output.setLength(0);
+        // The screen only grows, so a frame that gets smaller is drawn as spaces instead of redrawn whole.
+        boolean redraw = rows + textLines > height || Math.max(cols, textWidth) > width;
+        if (redraw) {
+            resize(Math.max(height, rows + textLines), Math.max(width, Math.max(cols, textWidth)));
+            output.append(CSI).append('r').append(CSI).append("2J");
+        } else {
+            output.append(SAVE_CURSOR);
+        }
+
+        Arrays.fill(back, ' ');
+        for (int y = 0; y < rows; y++) {
+            System.arraycopy(map[y], 0, back, y * width, cols);
+        }
+        int line = rows;
+        int index = line * width;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line++;
+                index = line * width;
+            } else if (c != '\r') {
+                back[index++] = c;
+            }
+        }
+
+        if (!writeChanges() && !redraw) {
+            return;
+        }
+        if (redraw) {
+            // Setting the scrolling region moves the cursor home, so it is put on the input line after.
+            output.append(CSI).append(height + 2).append('r');
+            moveCursor(height + 1, 0);
+        } else {
+            output.append(RESTORE_CURSOR);
+        }
+        out.print(output);
+        out.flush();
+    }
+
+    private void resize(int newHeight, int newWidth) {
+        height = newHeight;
+        width = newWidth;
+        back = new char[height * width];
+        // What a cleared screen shows.
+        front = new char[height * width];
+        Arrays.fill(front, ' ');
+    }
+
+    // Returns whether anything changed.
+    private boolean writeChanges() {
+        boolean changed = false;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int x = 0;
+            while (x < width) {
+                if (back[rowStart + x] == front[rowStart + x]) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                int lastChanged = x;
+                for (x++; x < width && x - lastChanged <= CURSOR_MOVE_LENGTH; x++) {
+                    if (back[rowStart + x] != front[rowStart + x]) {
+                        lastChanged = x;
+                    }
+                }
+                changed = true;
+                moveCursor(y, start);
+                output.append(back, rowStart + start, lastChanged - start + 1);
+                System.arraycopy(back, rowStart + start, front, rowStart + start, lastChanged - start + 1);
+                x = lastChanged + 1;
+            }
+        }
+        return changed;
+    }
+
+    private void moveCursor(int y, int x) {
+        output.append(CSI).append(y + 1).append(';').append(x + 1).append('H');
+    }
+}
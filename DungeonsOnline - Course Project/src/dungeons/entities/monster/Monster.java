@@ -3,50 +3,32 @@ package dungeons.entities.monster;
 import dungeons.entities.Actor;
 import dungeons.entities.position.GamePosition;
 
+// A view of one monster in a MonsterStore. The store may move the monster to another slot, so the view
+// is kept up to date by the store rather than holding a slot of its own choosing.
 public class Monster implements Actor {
-    private static final int STARTING_ATTACK = 10;
-    private static final int STARTING_HEALTH = 10;
-    private static final int STARTING_DEFENCE = 10;
-
-    private static final double ATTACK_MULTIPLIER_PER_LEVEL = 1.2;
-    private static final double DAMAGE_MITIGATE_PER_DEFENCE = 0.1;
-
     private static final double MINION_KILL_XP = 0.2;
     private static final double BEAST_KILL_XP = 0.5;
     private static final double UNDEAD_KILL_XP = 1.0;
     private static final double DRAGON_KILL_XP = 1.5;
 
-    private static final int MINION_LEVEL = 5;
-    private static final int BEAST_LEVEL = 10;
-    private static final int UNDEAD_LEVEL = 15;
-
-    private final GamePosition gamePosition;
-    private final MonsterType monsterType;
-
-    private final int attack;
-    private final int totalHealth;
-    private int currHealth;
-    private final int defence;
+    private MonsterStore store;
+    private int slot;
 
+    // A monster of its own, outside any map.
     public Monster(int level, GamePosition gamePosition) {
-        this.gamePosition = gamePosition;
-        this.attack = (int) (STARTING_ATTACK + (ATTACK_MULTIPLIER_PER_LEVEL * (level - 1)));
-        totalHealth = STARTING_HEALTH * level;
-        defence = STARTING_DEFENCE * level;
-        currHealth = totalHealth;
-        if (level <= MINION_LEVEL) {
-            monsterType = MonsterType.MINION;
-        } else if (level <= BEAST_LEVEL) {
-            monsterType = MonsterType.BEAST;
-        } else if (level <= UNDEAD_LEVEL) {
-            monsterType = MonsterType.UNDEAD;
-        } else {
-            monsterType = MonsterType.DRAGON;
+        if (gamePosition == null) {
+            throw new IllegalArgumentException("gamePosition was null");
         }
+        new MonsterStore(1).put(this, level, gamePosition.x(), gamePosition.y());
+    }
+
+    Monster(MonsterStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
     }
 
     public char getCharForMonster() {
-        return switch (monsterType) {
+        return switch (store.getType(slot)) {
             case MINION -> 'M';
             case BEAST -> 'B';
             case UNDEAD -> 'U';
@@ -55,11 +37,11 @@ public class Monster implements Actor {
     }
 
     public int getAttack() {
-        return attack;
+        return store.getAttack(slot);
     }
 
     public double getXpForMonsterKill() {
-        return switch (monsterType) {
+        return switch (store.getType(slot)) {
 
             case MINION -> MINION_KILL_XP;
             case BEAST -> BEAST_KILL_XP;
@@ -68,37 +50,70 @@ public class Monster implements Actor {
         };
     }
 
+    public void attackActor(Actor actor) {
+        store.attack(slot, actor);
+    }
+
     public boolean isDead() {
-        return currHealth <= 0;
+        return store.getCurrHealth(slot) <= 0;
     }
 
     @Override
     public void setCurrHealth(int newCurrHealth) {
-        currHealth = newCurrHealth;
+        store.setCurrHealth(slot, newCurrHealth);
     }
 
+    public int getX() {
+        return store.getX(slot);
+    }
+
+    public int getY() {
+        return store.getY(slot);
+    }
+
+    // A new position each call; the map reads getX and getY instead.
     @Override
     public GamePosition getGamePosition() {
-        return gamePosition;
+        return new GamePosition(store.getX(slot), store.getY(slot));
+    }
+
+    public void setGamePosition(GamePosition gamePosition) {
+        if (gamePosition == null) {
+            throw new IllegalArgumentException("gamePosition was null");
+        }
+        store.setPosition(slot, gamePosition.x(), gamePosition.y());
     }
 
     @Override
     public int getCurrHealth() {
-        return currHealth;
+        return store.getCurrHealth(slot);
     }
 
     @Override
     public int getTotalHealth() {
-        return totalHealth;
+        return store.getTotalHealth(slot);
     }
 
     @Override
     public int getDefence() {
-        return defence;
+        return store.getDefence(slot);
     }
 
     @Override
     public int getTotalDefence() {
-        return (int) (defence * DAMAGE_MITIGATE_PER_DEFENCE);
+        return store.getTotalDefence(slot);
+    }
+
+    MonsterStore getStore() {
+        return store;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void attach(MonsterStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
     }
 }
@@ -0,0 +1,252 @@
+package dungeons.entities.monster;
+
+import dungeons.entities.Actor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Every monster of a map as parallel arrays indexed by slot, so a monster turn reads positions and stats
+// in order without chasing pointers or allocating. The slots stay packed: removing a monster moves the
+// last one into its slot. A Monster is a view of one slot, for whatever keeps a reference to it.
+public class MonsterStore {
+    public static final int NO_SLOT = -1;
+
+    private static final int STARTING_ATTACK = 10;
+    private static final int STARTING_HEALTH = 10;
+    private static final int STARTING_DEFENCE = 10;
+
+    private static final double ATTACK_MULTIPLIER_PER_LEVEL = 1.2;
+    private static final double DAMAGE_MITIGATE_PER_DEFENCE = 0.1;
+
+    private static final int MINION_LEVEL = 5;
+    private static final int BEAST_LEVEL = 10;
+    private static final int UNDEAD_LEVEL = 15;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final MonsterType[] TYPES = MonsterType.values();
+
+    private int[] xs;
+    private int[] ys;
+    private int[] attacks;
+    private int[] totalHealths;
+    private int[] currHealths;
+    private int[] defences;
+    private byte[] types;
+    private Monster[] monsters;
+    private int size;
+    private final List<Monster> view;
+
+    public MonsterStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MonsterStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        xs = new int[capacity];
+        ys = new int[capacity];
+        attacks = new int[capacity];
+        totalHealths = new int[capacity];
+        currHealths = new int[capacity];
+        defences = new int[capacity];
+        types = new byte[capacity];
+        monsters = new Monster[capacity];
+        size = 0;
+        view = new AbstractList<>() {
+            @Override
+            public Monster get(int index) {
+                return MonsterStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Monster add(int level, int x, int y) {
+        Monster monster = new Monster(this, size);
+        put(monster, level, x, y);
+        return monster;
+    }
+
+    // The removed monster keeps its last state in a store of its own, so references to it stay usable.
+    public void remove(Monster monster) {
+        if (monster == null) {
+            throw new IllegalArgumentException("monster was null");
+        }
+        if (monster.getStore() != this) {
+            throw new IllegalArgumentException("The monster is not in this store");
+        }
+        int slot = monster.getSlot();
+        new MonsterStore(1).copy(this, slot, monster);
+        int last = --size;
+        if (slot != last) {
+            copySlot(last, slot);
+        }
+        monsters[last] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Monster get(int slot) {
+        checkSlot(slot);
+        return monsters[slot];
+    }
+
+    // A live view in slot order; it changes as monsters are added and removed.
+    public List<Monster> asList() {
+        return view;
+    }
+
+    // The first dead monster's slot, or NO_SLOT when every monster is alive.
+    public int findDead() {
+        for (int slot = 0; slot < size; slot++) {
+            if (currHealths[slot] <= 0) {
+                return slot;
+            }
+        }
+        return NO_SLOT;
+    }
+
+    // The same mitigated damage a player deals with a melee attack.
+    public void attack(int slot, Actor actor) {
+        checkSlot(slot);
+        if (actor == null) {
+            throw new IllegalArgumentException("actor was null");
+        }
+        if (currHealths[slot] <= 0) {
+            return;
+        }
+        int attack = attacks[slot];
+        int mitigatedDamage = actor.getTotalDefence();
+        int actualAttack = mitigatedDamage > attack ? 0 : attack - mitigatedDamage;
+        actor.setCurrHealth(actor.getCurrHealth() - actualAttack);
+        actor.checkHealth();
+    }
+
+    public int getX(int slot) {
+        checkSlot(slot);
+        return xs[slot];
+    }
+
+    public int getY(int slot) {
+        checkSlot(slot);
+        return ys[slot];
+    }
+
+    public void setPosition(int slot, int x, int y) {
+        checkSlot(slot);
+        xs[slot] = x;
+        ys[slot] = y;
+    }
+
+    public int getAttack(int slot) {
+        checkSlot(slot);
+        return attacks[slot];
+    }
+
+    public int getTotalHealth(int slot) {
+        checkSlot(slot);
+        return totalHealths[slot];
+    }
+
+    public int getCurrHealth(int slot) {
+        checkSlot(slot);
+        return currHealths[slot];
+    }
+
+    public void setCurrHealth(int slot, int currHealth) {
+        checkSlot(slot);
+        currHealths[slot] = currHealth;
+    }
+
+    public int getDefence(int slot) {
+        checkSlot(slot);
+        return defences[slot];
+    }
+
+    public int getTotalDefence(int slot) {
+        checkSlot(slot);
+        return (int) (defences[slot] * DAMAGE_MITIGATE_PER_DEFENCE);
+    }
+
+    public MonsterType getType(int slot) {
+        checkSlot(slot);
+        return TYPES[types[slot]];
+    }
+
+    // Adds a monster in the next slot, for the view that will read it.
+    void put(Monster monster, int level, int x, int y) {
+        int slot = nextSlot(monster);
+        xs[slot] = x;
+        ys[slot] = y;
+        attacks[slot] = (int) (STARTING_ATTACK + (ATTACK_MULTIPLIER_PER_LEVEL * (level - 1)));
+        totalHealths[slot] = STARTING_HEALTH * level;
+        currHealths[slot] = totalHealths[slot];
+        defences[slot] = STARTING_DEFENCE * level;
+        MonsterType type;
+        if (level <= MINION_LEVEL) {
+            type = MonsterType.MINION;
+        } else if (level <= BEAST_LEVEL) {
+            type = MonsterType.BEAST;
+        } else if (level <= UNDEAD_LEVEL) {
+            type = MonsterType.UNDEAD;
+        } else {
+            type = MonsterType.DRAGON;
+        }
+        types[slot] = (byte) type.ordinal();
+    }
+
+    private void copy(MonsterStore from, int fromSlot, Monster monster) {
+        int slot = nextSlot(monster);
+        xs[slot] = from.xs[fromSlot];
+        ys[slot] = from.ys[fromSlot];
+        attacks[slot] = from.attacks[fromSlot];
+        totalHealths[slot] = from.totalHealths[fromSlot];
+        currHealths[slot] = from.currHealths[fromSlot];
+        defences[slot] = from.defences[fromSlot];
+        types[slot] = from.types[fromSlot];
+    }
+
+    private void copySlot(int from, int to) {
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        attacks[to] = attacks[from];
+        totalHealths[to] = totalHealths[from];
+        currHealths[to] = currHealths[from];
+        defences[to] = defences[from];
+        types[to] = types[from];
+        monsters[to] = monsters[from];
+        monsters[to].attach(this, to);
+    }
+
+    private int nextSlot(Monster monster) {
+        if (size == monsters.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            attacks = Arrays.copyOf(attacks, capacity);
+            totalHealths = Arrays.copyOf(totalHealths, capacity);
+            currHealths = Arrays.copyOf(currHealths, capacity);
+            defences = Arrays.copyOf(defences, capacity);
+            types = Arrays.copyOf(types, capacity);
+            monsters = Arrays.copyOf(monsters, capacity);
+        }
+        int slot = size++;
+        monsters[slot] = monster;
+        monster.attach(this, slot);
+        return slot;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("No monster in slot " + slot);
+        }
+    }
+}
@@ -9,13 +9,26 @@ import java.util.Random;
 public class Inventory {
     private static final int INVENTORY_CAPACITY = 5;
     private final List<Treasure> treasures;
+    private int modCount;
 
     public Inventory() {
         treasures = new ArrayList<>();
+        modCount = 0;
     }
 
     public void putTreasure(Treasure treasure) {
         treasures.add(treasure);
+        modCount++;
+    }
+
+    public void clear() {
+        treasures.clear();
+        modCount++;
+    }
+
+    // Grows with every change made through this class, so a cached rendering knows when it is stale.
+    public int getModCount() {
+        return modCount;
     }
 
     public boolean isEmpty() {
@@ -44,7 +57,7 @@ public class Inventory {
     }
 
     public Treasure getTreasureAtIndex(int index) {
-        if (index >= treasures.size()) {
+        if (index >= treasures.size() || index < 0) {
             return null;
         }
         return treasures.get(index);
@@ -55,16 +68,17 @@ public class Inventory {
             return;
         }
         treasures.remove(index);
+        modCount++;
     }
 
-    public void removeRandomTreasure() {
+    public void removeRandomTreasure(Random random) {
         if (treasures.isEmpty()) {
             return;
         }
 
-        Random random = new Random();
         int randomIndex = random.nextInt(treasures.size());
         treasures.remove(randomIndex);
+        modCount++;
     }
 
 }
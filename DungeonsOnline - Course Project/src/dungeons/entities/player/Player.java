@@ -2,14 +2,18 @@ package dungeons.entities.player;
 
 import dungeons.entities.Actor;
 import dungeons.entities.position.GamePosition;
+import dungeons.persistence.PlayerProfile;
+import dungeons.protocol.Command;
 import dungeons.treasure.Treasure;
 import dungeons.treasure.Staff;
 import dungeons.entities.monster.Monster;
 import dungeons.treasure.Shield;
 
-public class Player implements Actor {
-    private static final int COUNTING_SYSTEM = 10;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
+public class Player implements Actor {
     private static final int STARTING_HEALTH = 100;
     private static final int STARTING_MANA = 124;
     private static final int STARTING_LEVEL = 1;
@@ -30,9 +34,10 @@ public class Player implements Actor {
 
     private static final double ROUNDING = 100;
 
-    private static int playersCount = 0;
+    public static final int NO_PROFILE = -1;
+    public static final int NO_ID = -1;
 
-    private final int playerChar;
+    private int id;
     private final Inventory inventory;
     private GamePosition gamePosition;
     private int totalHealth;
@@ -45,9 +50,16 @@ public class Player implements Actor {
     private int defence;
     private Treasure equippedTreasure;
     private int spellDamage;
+    private int viewRadius;
+    private int profileId;
+    private long progressVersion;
+    private byte[] hudBytes;
+    private boolean hudChanged;
+    private int hudInventoryModCount;
+    private int acknowledgedInput;
 
     public Player() {
-        playerChar = playersCount++;
+        id = NO_ID;
         totalHealth = STARTING_HEALTH;
         totalMana = STARTING_MANA;
         currMana = totalMana;
@@ -59,6 +71,13 @@ public class Player implements Actor {
         inventory = new Inventory();
         equippedTreasure = null;
         spellDamage = STARTING_SPELL_DAMAGE;
+        viewRadius = 0;
+        profileId = NO_PROFILE;
+        progressVersion = 0;
+        hudBytes = null;
+        acknowledgedInput = Command.NO_SEQUENCE;
+        hudChanged = true;
+        hudInventoryModCount = 0;
     }
 
     public void move(char way) {
@@ -78,13 +97,16 @@ public class Player implements Actor {
 
     public void unequipTreasure() {
         equippedTreasure = null;
+        progressChanged();
     }
 
     public void removeTreasureAtIndex(int index) {
         inventory.removeTreasureAtIndex(index);
+        progressChanged();
     }
 
     public void equipTreasureAtIndex(int index) {
+        hudChanged = true;
         if (hasEquippedTreasure() && equippedTreasure instanceof Staff) {
             int staffMana = ((Staff) equippedTreasure).getMana();
             totalMana -= staffMana;
@@ -94,6 +116,7 @@ public class Player implements Actor {
 
         if (toEquip != null) {
             equippedTreasure = toEquip;
+            progressChanged();
 
             if (equippedTreasure instanceof Staff) {
                 int staffMana = ((Staff) equippedTreasure).getMana();
@@ -105,6 +128,7 @@ public class Player implements Actor {
 
     public void getXpForTreasurePickUp() {
         currLevel += XP_PER_TREASURE_PICK_UP;
+        progressChanged();
         checkLevelUp();
     }
 
@@ -128,8 +152,10 @@ public class Player implements Actor {
         actor.checkHealth();
         if (actor instanceof Monster) {
             currHealth -= actor.getAttack();
+            hudChanged = true;
             if (actor.isDead()) {
                 currLevel += ((Monster) actor).getXpForMonsterKill();
+                progressChanged();
                 checkLevelUp();
             }
         }
@@ -163,20 +189,131 @@ public class Player implements Actor {
     public void putTreasure(Treasure treasure) {
         if (!inventoryIsFull()) {
             inventory.putTreasure(treasure);
+            progressChanged();
+        }
+    }
+
+    // Given by the map the player is connected to and reused once they leave, NO_ID before that.
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        if (id < NO_ID) {
+            throw new IllegalArgumentException("id cannot be below NO_ID");
+        }
+        this.id = id;
+        hudChanged = true;
+    }
+
+    // Cells further than this from the player are not sent to their client. 0 sends the whole map.
+    public int getViewRadius() {
+        return viewRadius;
+    }
+
+    public void setViewRadius(int viewRadius) {
+        if (viewRadius < 0) {
+            throw new IllegalArgumentException("viewRadius cannot be negative");
+        }
+        this.viewRadius = viewRadius;
+    }
+
+    // The sequence number of the last move of this player's client that was applied.
+    public int getAcknowledgedInput() {
+        return acknowledgedInput;
+    }
+
+    public void acknowledgeInput(int sequence) {
+        acknowledgedInput = sequence;
+    }
+
+    public boolean hasProfile() {
+        return profileId != NO_PROFILE;
+    }
+
+    public int getProfileId() {
+        return profileId;
+    }
+
+    // Players without a profile are guests and their progress is not saved.
+    public void setProfileId(int profileId) {
+        if (profileId < 0) {
+            throw new IllegalArgumentException("profileId cannot be negative");
+        }
+        this.profileId = profileId;
+    }
+
+    // Grows with every change worth saving, so unchanged players are not written again.
+    public long getProgressVersion() {
+        return progressVersion;
+    }
+
+    public PlayerProfile toProfile() {
+        if (!hasProfile()) {
+            throw new IllegalStateException("A guest has no profile");
+        }
+        List<PlayerProfile.SavedTreasure> savedTreasures = new ArrayList<>();
+        for (Treasure treasure : inventory.getTreasures()) {
+            savedTreasures.add(PlayerProfile.SavedTreasure.of(treasure));
+        }
+        int equippedIndex = hasEquippedTreasure() ?
+            inventory.getTreasures().indexOf(equippedTreasure) : PlayerProfile.NO_EQUIPPED_TREASURE;
+        return new PlayerProfile(profileId, progressVersion, level, currLevel, attack, defence, spellDamage,
+            totalHealth, totalMana, savedTreasures, equippedIndex);
+    }
+
+    // Restores a saved player with full health and mana.
+    public void loadProfile(PlayerProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("profile was null");
+        }
+        setProfileId(profile.profileId());
+        progressVersion = profile.version();
+        level = profile.level();
+        currLevel = profile.experience();
+        attack = profile.attack();
+        defence = profile.defence();
+        spellDamage = profile.spellDamage();
+        totalHealth = profile.totalHealth();
+        currHealth = totalHealth;
+        totalMana = profile.totalMana();
+        currMana = totalMana;
+        inventory.clear();
+        for (PlayerProfile.SavedTreasure savedTreasure : profile.treasures()) {
+            inventory.putTreasure(savedTreasure.toTreasure());
         }
+        equippedTreasure = inventory.getTreasureAtIndex(profile.equippedIndex());
+        hudChanged = true;
+    }
+
+    // Everything saved is also shown on the HUD.
+    private void progressChanged() {
+        progressVersion++;
+        hudChanged = true;
     }
 
-    public char getPlayerChar() {
-        return Character.forDigit(playerChar, COUNTING_SYSTEM);
+    // The encoded toString() sent under every frame, rebuilt only after something shown on it changed.
+    public byte[] getHudBytes() {
+        if (hudChanged || hudInventoryModCount != inventory.getModCount()) {
+            hudBytes = toString().getBytes();
+            hudInventoryModCount = inventory.getModCount();
+            hudChanged = false;
+        }
+        return hudBytes;
     }
 
-    public void respawn() {
+    // The random treasure lost comes from the given generator, which is the map's in a game.
+    public void respawn(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random was null");
+        }
         if (isDead()) {
             currHealth = totalHealth;
-            removeRandomTreasure();
+            inventory.removeRandomTreasure(random);
             if (!inventory.getTreasures().contains(equippedTreasure)) {
                 equippedTreasure = null;
             }
+            progressChanged();
         }
     }
 
@@ -212,10 +349,6 @@ public class Player implements Actor {
         return equippedTreasure != null;
     }
 
-    private void removeRandomTreasure() {
-        inventory.removeRandomTreasure();
-    }
-
     private boolean inventoryIsFull() {
         return inventory.isFull();
     }
@@ -229,7 +362,7 @@ public class Player implements Actor {
         currMana = totalMana;
         totalHealth += HEALTH_PER_LEVEL;
         currHealth = totalHealth;
-
+        progressChanged();
     }
 
     private void checkLevelUp() {
@@ -284,6 +417,7 @@ public class Player implements Actor {
         player.setCurrHealth(player.getCurrHealth() - spellDamage);
         player.checkHealth();
         currMana -= MANA_FOR_SPELL_ATTACK;
+        hudChanged = true;
     }
 
     @Override
@@ -292,7 +426,7 @@ public class Player implements Actor {
         if (hasEquippedTreasure()) {
             treasure = equippedTreasure.toString();
         }
-        return "Level:" + (Math.round(currLevel * ROUNDING) / ROUNDING) + "/" + (level + 1) + " | Health:" +
+        return "Player " + id + " | Level:" + (Math.round(currLevel * ROUNDING) / ROUNDING) + "/" + (level + 1) + " | Health:" +
             currHealth + "/" + totalHealth +
             " | Mana:" +
             currMana + "/" +
@@ -304,6 +438,7 @@ public class Player implements Actor {
     @Override
     public void setCurrHealth(int newCurrHealth) {
         currHealth = newCurrHealth;
+        hudChanged = true;
     }
 
     @Override
@@ -329,8 +464,4 @@ public class Player implements Actor {
     public Treasure getEquippedTreasure() {
         return equippedTreasure;
     }
-
-    public static void setPlayersCount(int count) {
-        playersCount = count;
-    }
 }
@@ -0,0 +1,224 @@
+package dungeons.loadtest;
+
+import dungeons.protocol.BinaryCommandCodec;
+import dungeons.protocol.Command;
+import dungeons.protocol.FrameReader;
+import dungeons.protocol.SnapshotDecoder;
+import dungeons.protocol.SnapshotEncoder;
+import dungeons.protocol.TextCommandParser;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Random;
+
+// One simulated player. Latency is measured from sending a command to the first map update received
+// after it, which is what a player sees as the game reacting.
+public class Bot {
+    private static final int FRAME_BUFFER_SIZE = 2_048;
+    private static final String MOVE_KEYS = "wasd";
+    private static final int INVENTORY_SLOTS = 5;
+    private static final int NOT_WAITING = -1;
+    // A resync whose keyframe was lost as a datagram is asked for again after this many failed frames.
+    private static final int RESYNC_RETRY_FRAMES = 20;
+
+    // Cumulative chances in percent of each random action; the rest are respawns.
+    private static final int PERCENT = 100;
+    private static final int MOVE_CHANCE = 70;
+    private static final int MELEE_CHANCE = MOVE_CHANCE + 8;
+    private static final int SPELL_CHANCE = MELEE_CHANCE + 6;
+    private static final int MONSTER_CHANCE = SPELL_CHANCE + 6;
+    private static final int EQUIP_CHANCE = MONSTER_CHANCE + 5;
+    private static final int TRADE_CHANCE = EQUIP_CHANCE + 3;
+
+    private final SocketChannel channel;
+    private DatagramChannel datagramChannel;
+    private ByteBuffer datagram;
+    private final FrameReader frameReader;
+    private final SnapshotDecoder snapshotDecoder;
+    private final ByteBuffer sendBuffer;
+    private final Command command;
+    private final Random random;
+    private final List<String> script;
+    private final int maxPlayerId;
+    private int scriptIndex;
+    private long nextActionNanos;
+    private long waitingSinceNanos;
+    private long bytesReceived;
+    private long framesReceived;
+    private long resyncs;
+    private int framesUntilResync;
+
+    public Bot(SocketChannel channel, List<String> script, int maxPlayerId, long seed) {
+        if (channel == null || script == null) {
+            throw new IllegalArgumentException("channel or script was null");
+        }
+        this.channel = channel;
+        this.script = script;
+        this.maxPlayerId = maxPlayerId;
+        frameReader = new FrameReader(FRAME_BUFFER_SIZE);
+        snapshotDecoder = new SnapshotDecoder();
+        sendBuffer = ByteBuffer.allocate(BinaryCommandCodec.MAX_COMMAND_BYTES);
+        command = new Command();
+        random = new Random(seed);
+        scriptIndex = 0;
+        nextActionNanos = System.nanoTime();
+        waitingSinceNanos = NOT_WAITING;
+        framesUntilResync = 0;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+        if (datagramChannel != null) {
+            datagramChannel.close();
+        }
+    }
+
+    public long getNextActionNanos() {
+        return nextActionNanos;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    // Sends the next action unless the socket is full. Returns the number of bytes written.
+    public int act(long now, long actionPeriodNanos) throws IOException {
+        nextActionNanos = now + actionPeriodNanos;
+        nextCommand();
+        sendBuffer.clear();
+        BinaryCommandCodec.encode(command, sendBuffer);
+        sendBuffer.flip();
+        int written = channel.write(sendBuffer);
+        if (written > 0 && waitingSinceNanos == NOT_WAITING) {
+            waitingSinceNanos = now;
+        }
+        return written;
+    }
+
+    // Reads and decodes every complete frame. Returns false once the server closed the connection.
+    public boolean receive(LatencyRecorder latencies) throws IOException {
+        int read = frameReader.readFrom(channel);
+        if (read < 0) {
+            return false;
+        }
+        bytesReceived += read;
+
+        ByteBuffer frame;
+        while ((frame = frameReader.nextFrame()) != null) {
+            handleFrame(frame, latencies);
+        }
+        return true;
+    }
+
+    // Reads every datagram waiting on the bot's UDP socket.
+    public void receiveDatagrams(LatencyRecorder latencies) throws IOException {
+        while (true) {
+            datagram.clear();
+            if (datagramChannel.receive(datagram) == null) {
+                return;
+            }
+            datagram.flip();
+            bytesReceived += datagram.remaining();
+            if (FrameReader.unwrapDatagram(datagram)) {
+                handleFrame(datagram, latencies);
+            }
+        }
+    }
+
+    private void handleFrame(ByteBuffer frame, LatencyRecorder latencies) throws IOException {
+        if (frame.get(frame.position()) == SnapshotEncoder.MESSAGE || snapshotDecoder.isStale(frame)) {
+            return;
+        }
+        framesReceived++;
+        if (snapshotDecoder.decode(frame)) {
+            framesUntilResync = 0;
+        } else if (framesUntilResync-- <= 0) {
+            resyncs++;
+            requestResync();
+            framesUntilResync = RESYNC_RETRY_FRAMES;
+        }
+        snapshotDecoder.decodePlayers(frame);
+        if (waitingSinceNanos != NOT_WAITING) {
+            latencies.record(System.nanoTime() - waitingSinceNanos);
+            waitingSinceNanos = NOT_WAITING;
+        }
+    }
+
+    // Sent right after connecting, while the bot is still in the lobby. The channel must be bound.
+    public void requestDatagrams(DatagramChannel datagramChannel) throws IOException {
+        this.datagramChannel = datagramChannel;
+        datagram = ByteBuffer.allocate(FrameReader.MAX_DATAGRAM_BYTES);
+        command.set(Command.UDP_SNAPSHOTS, ((InetSocketAddress) datagramChannel.getLocalAddress()).getPort(), 0);
+        sendBuffer.clear();
+        BinaryCommandCodec.encode(command, sendBuffer);
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    // Sent right after connecting, while the bot is still in the lobby.
+    public void requestCompressedKeyframes() throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(Command.COMPRESS);
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    private void requestResync() throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(Command.RESYNC);
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    private void nextCommand() {
+        if (!script.isEmpty()) {
+            String action = script.get(scriptIndex);
+            scriptIndex = (scriptIndex + 1) % script.size();
+            if (TextCommandParser.parse(action, command)) {
+                return;
+            }
+        }
+
+        int roll = random.nextInt(PERCENT);
+        if (roll < MOVE_CHANCE) {
+            command.set(Command.MOVE, MOVE_KEYS.charAt(random.nextInt(MOVE_KEYS.length())), 0);
+        } else if (roll < MELEE_CHANCE) {
+            command.set(Command.ATTACK_MELEE, randomPlayerId(), 0);
+        } else if (roll < SPELL_CHANCE) {
+            command.set(Command.ATTACK_SPELL, randomPlayerId(), 0);
+        } else if (roll < MONSTER_CHANCE) {
+            command.set(Command.ATTACK_MONSTER, MOVE_KEYS.charAt(random.nextInt(MOVE_KEYS.length())), 0);
+        } else if (roll < EQUIP_CHANCE) {
+            command.set(Command.EQUIP, random.nextInt(INVENTORY_SLOTS), 0);
+        } else if (roll < TRADE_CHANCE) {
+            command.set(Command.TRADE, randomPlayerId(), random.nextInt(INVENTORY_SLOTS));
+        } else {
+            command.set(Command.RESPAWN, 0, 0);
+        }
+    }
+
+    // A player from the last frame when there was one, otherwise any id that may be in use.
+    private int randomPlayerId() {
+        int playerCount = snapshotDecoder.getPlayerCount();
+        if (playerCount > 0) {
+            return snapshotDecoder.getPlayerId(random.nextInt(playerCount));
+        }
+        return random.nextInt(maxPlayerId);
+    }
+}
@@ -0,0 +1,51 @@
+package dungeons.loadtest;
+
+import java.util.Arrays;
+
+// Keeps every sample of one reporting interval. Sorting a few hundred thousand longs per report is
+// cheap next to the traffic being measured, and the percentiles are exact.
+public class LatencyRecorder {
+    private static final int INITIAL_CAPACITY = 1_024;
+
+    private long[] samples;
+    private int count;
+
+    public LatencyRecorder() {
+        samples = new long[INITIAL_CAPACITY];
+        count = 0;
+    }
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public void addAll(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Sorts the samples, so it should only be called once recording for the interval is over.
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(samples, 0, count);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return samples[Math.max(0, index)];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+}
@@ -0,0 +1,299 @@
+package dungeons.loadtest;
+
+import dungeons.DungeonInstance;
+import dungeons.GameServer;
+import dungeons.server.ConnectionThreads;
+import dungeons.server.TickLoop;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+// Drives many bots from one selector thread and prints a report every second:
+// bots connected, input-to-update latency percentiles, bytes received per client and, for an embedded
+// server, tick durations. Ramping the bot count up shows at which point latency and ticks fall apart.
+//
+// java dungeons.loadtest.LoadTest --bots=2000 --ramp=60 --duration=90 --embedded -- --tick-rate=20
+//
+// Running it again with --thread-per-connection after "--" compares the two ways the server does IO, and
+// with --compress the bandwidth and tick durations of compressed keyframes. --udp sends the frames as
+// datagrams; on a link made lossy with "tc qdisc add dev lo root netem loss 2%" it shows the latency
+// TCP adds by holding every frame behind a lost packet.
+public class LoadTest {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final long SELECT_TIMEOUT_MILLIS = 1;
+    private static final long SERVER_START_TIMEOUT_NANOS = 5 * NANOS_PER_SECOND;
+    private static final long SERVER_START_RETRY_MILLIS = 50;
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    private final LoadTestOptions options;
+    private final InetSocketAddress address;
+    private final List<Bot> bots;
+    private final LatencyRecorder intervalLatencies;
+    private final LatencyRecorder totalLatencies;
+    private GameServer embeddedServer;
+    private Selector selector;
+    private int startedBots;
+    private int connectedBots;
+    private int disconnectedBots;
+    private int failedConnects;
+    private long stalledWrites;
+    private long lastReportBytes;
+    private long lastReportTicks;
+    private long lastReportTickNanos;
+
+    public LoadTest(LoadTestOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options was null");
+        }
+        this.options = options;
+        address = new InetSocketAddress(options.getHost(), options.getPort());
+        bots = new ArrayList<>();
+        intervalLatencies = new LatencyRecorder();
+        totalLatencies = new LatencyRecorder();
+    }
+
+    public static void main(String[] args) throws IOException {
+        new LoadTest(LoadTestOptions.parse(args)).run();
+    }
+
+    public void run() throws IOException {
+        if (options.getEmbeddedServer() != null) {
+            startEmbeddedServer();
+        }
+
+        selector = Selector.open();
+        long actionPeriodNanos = NANOS_PER_SECOND / options.getActionsPerSecond();
+        long start = System.nanoTime();
+        long end = start + options.getDurationSeconds() * NANOS_PER_SECOND;
+        long nextReport = start + NANOS_PER_SECOND;
+
+        long now = start;
+        while (now - end < 0) {
+            startDueBots(now - start);
+            selector.select(SELECT_TIMEOUT_MILLIS);
+            handleSelectedKeys();
+
+            now = System.nanoTime();
+            for (Bot bot : bots) {
+                if (bot.getChannel().isOpen() && now - bot.getNextActionNanos() >= 0) {
+                    act(bot, now, actionPeriodNanos);
+                }
+            }
+
+            if (now - nextReport >= 0) {
+                report((now - start) / NANOS_PER_SECOND);
+                nextReport += NANOS_PER_SECOND;
+            }
+        }
+        printSummary((double) (System.nanoTime() - start) / NANOS_PER_SECOND);
+
+        for (Bot bot : bots) {
+            bot.close();
+        }
+        selector.close();
+    }
+
+    private void startEmbeddedServer() {
+        embeddedServer = new GameServer(options.getEmbeddedServer());
+        Thread serverThread = new Thread(embeddedServer::startServer, "embedded-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        long deadline = System.nanoTime() + SERVER_START_TIMEOUT_NANOS;
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                SocketChannel.open(address).close();
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(SERVER_START_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        throw new UncheckedIOException(new IOException("The embedded server did not start listening on " + address));
+    }
+
+    private void startDueBots(long elapsedNanos) throws IOException {
+        int target = options.getBots();
+        if (options.getRampSeconds() > 0) {
+            long rampNanos = options.getRampSeconds() * NANOS_PER_SECOND;
+            target = (int) Math.min(target, (options.getBots() * (elapsedNanos + 1)) / rampNanos + 1);
+        }
+        while (startedBots < target) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            Bot bot = new Bot(channel, options.getScript(), options.getBots(), startedBots);
+            startedBots++;
+            try {
+                if (channel.connect(address)) {
+                    connected(channel.register(selector, SelectionKey.OP_READ, bot));
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, bot);
+                }
+            } catch (IOException e) {
+                failedConnects++;
+                bot.close();
+            }
+        }
+    }
+
+    private void handleSelectedKeys() throws IOException {
+        Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+        while (keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+            // A bot disconnected earlier in this loop leaves its other key cancelled.
+            if (!key.isValid()) {
+                continue;
+            }
+            Bot bot = (Bot) key.attachment();
+            boolean connecting = key.isConnectable();
+            try {
+                if (connecting) {
+                    bot.getChannel().finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    connected(key);
+                } else if (key.channel() instanceof DatagramChannel) {
+                    bot.receiveDatagrams(intervalLatencies);
+                } else if (key.isReadable() && !bot.receive(intervalLatencies)) {
+                    disconnect(bot);
+                }
+            } catch (IOException e) {
+                if (connecting) {
+                    failedConnects++;
+                    key.cancel();
+                    bot.close();
+                } else {
+                    disconnect(bot);
+                }
+            }
+        }
+    }
+
+    private void act(Bot bot, long now, long actionPeriodNanos) throws IOException {
+        try {
+            if (bot.act(now, actionPeriodNanos) == 0) {
+                stalledWrites++;
+            }
+        } catch (IOException e) {
+            disconnect(bot);
+        }
+    }
+
+    private void connected(SelectionKey key) throws IOException {
+        Bot bot = (Bot) key.attachment();
+        if (options.isCompressedKeyframes()) {
+            bot.requestCompressedKeyframes();
+        }
+        if (options.isUdpSnapshots()) {
+            DatagramChannel datagramChannel = DatagramChannel.open();
+            datagramChannel.configureBlocking(false);
+            datagramChannel.bind(new InetSocketAddress(0));
+            bot.requestDatagrams(datagramChannel);
+            datagramChannel.register(selector, SelectionKey.OP_READ, bot);
+        }
+        bots.add(bot);
+        connectedBots++;
+    }
+
+    // Closing the bot's channels cancels their keys.
+    private void disconnect(Bot bot) throws IOException {
+        if (!bot.getChannel().isOpen()) {
+            return;
+        }
+        bot.close();
+        connectedBots--;
+        disconnectedBots++;
+    }
+
+    private void report(long second) {
+        long bytes = 0;
+        for (Bot bot : bots) {
+            bytes += bot.getBytesReceived();
+        }
+        long intervalBytes = bytes - lastReportBytes;
+        lastReportBytes = bytes;
+
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+            "t=%3ds bots=%d/%d dropped=%d failed=%d samples=%d p50=%.2fms p99=%.2fms rx=%.0fB/client/s stalled=%d",
+            second, connectedBots, startedBots, disconnectedBots, failedConnects, intervalLatencies.getCount(),
+            intervalLatencies.percentile(P50) / NANOS_PER_MILLI, intervalLatencies.percentile(P99) / NANOS_PER_MILLI,
+            connectedBots == 0 ? 0.0 : (double) intervalBytes / connectedBots, stalledWrites));
+        appendTickStats(line);
+        System.out.println(line);
+
+        totalLatencies.addAll(intervalLatencies);
+        intervalLatencies.clear();
+    }
+
+    // Sums all rooms: the average is over every tick of the interval, the max over the whole run.
+    private void appendTickStats(StringBuilder line) {
+        if (embeddedServer == null) {
+            return;
+        }
+        long ticks = 0;
+        long tickNanos = 0;
+        long maxTickNanos = 0;
+        long overruns = 0;
+        for (DungeonInstance room : embeddedServer.getRooms()) {
+            TickLoop tickLoop = room.getTickLoop();
+            if (tickLoop != null) {
+                ticks += tickLoop.getTickCount();
+                tickNanos += tickLoop.getTotalTickDurationNanos();
+                maxTickNanos = Math.max(maxTickNanos, tickLoop.getMaxTickDurationNanos());
+                overruns += tickLoop.getOverrunCount();
+            }
+        }
+        long intervalTicks = ticks - lastReportTicks;
+        long intervalTickNanos = tickNanos - lastReportTickNanos;
+        lastReportTicks = ticks;
+        lastReportTickNanos = tickNanos;
+        line.append(String.format(Locale.ROOT, " tick avg=%.3fms max=%.3fms overruns=%d",
+            intervalTicks == 0 ? 0.0 : intervalTickNanos / NANOS_PER_MILLI / intervalTicks,
+            maxTickNanos / NANOS_PER_MILLI, overruns));
+    }
+
+    private void printSummary(double seconds) {
+        totalLatencies.addAll(intervalLatencies);
+        long frames = 0;
+        long resyncs = 0;
+        long bytes = 0;
+        for (Bot bot : bots) {
+            frames += bot.getFramesReceived();
+            resyncs += bot.getResyncs();
+            bytes += bot.getBytesReceived();
+        }
+        System.out.printf(Locale.ROOT,
+            "Summary: %d bots started, %d still connected, %d dropped, %d failed to connect%n" +
+                "Latency p50=%.2fms p99=%.2fms over %d samples%n" +
+                "Received %d frames, %d resyncs, %.0f bytes per client per second%n",
+            startedBots, connectedBots, disconnectedBots, failedConnects,
+            totalLatencies.percentile(P50) / NANOS_PER_MILLI, totalLatencies.percentile(P99) / NANOS_PER_MILLI,
+            totalLatencies.getCount(), frames, resyncs,
+            bots.isEmpty() ? 0.0 : bytes / seconds / bots.size());
+        if (embeddedServer != null) {
+            System.out.println("The embedded server served players with " + describeServerIo());
+        }
+    }
+
+    private String describeServerIo() {
+        if (!options.getEmbeddedServer().isThreadPerConnection()) {
+            return "a selector per room";
+        }
+        return ConnectionThreads.isVirtual() ? "virtual threads" : "platform threads";
+    }
+}
@@ -0,0 +1,196 @@
+package dungeons.loadtest;
+
+import dungeons.GameServer;
+import dungeons.server.ServerOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LoadTestOptions {
+    private static final String BOTS_OPTION = "--bots=";
+    private static final String DURATION_OPTION = "--duration=";
+    private static final String RAMP_OPTION = "--ramp=";
+    private static final String ACTIONS_OPTION = "--actions-per-second=";
+    private static final String HOST_OPTION = "--host=";
+    private static final String PORT_OPTION = "--port=";
+    private static final String SCRIPT_OPTION = "--script=";
+    private static final String SCRIPT_SEPARATOR = ",";
+    private static final String EMBEDDED_OPTION = "--embedded";
+    private static final String COMPRESS_OPTION = "--compress";
+    private static final String UDP_OPTION = "--udp";
+    private static final String SERVER_ARGS_SEPARATOR = "--";
+
+    private int bots;
+    private int durationSeconds;
+    private int rampSeconds;
+    private int actionsPerSecond;
+    private String host;
+    private int port;
+    private List<String> script;
+    private boolean compressedKeyframes;
+    private boolean udpSnapshots;
+    private ServerOptions embeddedServer;
+
+    public LoadTestOptions() {
+        bots = 100;
+        durationSeconds = 30;
+        rampSeconds = 0;
+        actionsPerSecond = 5;
+        host = "localhost";
+        port = GameServer.SERVER_PORT;
+        script = List.of();
+        compressedKeyframes = false;
+        udpSnapshots = false;
+        embeddedServer = null;
+    }
+
+    // Arguments after "--" are server options for the embedded server.
+    public static LoadTestOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("args was null");
+        }
+
+        LoadTestOptions options = new LoadTestOptions();
+        List<String> serverArgs = new ArrayList<>();
+        boolean embedded = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals(SERVER_ARGS_SEPARATOR)) {
+                serverArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (arg.startsWith(BOTS_OPTION)) {
+                options.setBots(Integer.parseInt(arg.substring(BOTS_OPTION.length())));
+            } else if (arg.startsWith(DURATION_OPTION)) {
+                options.setDurationSeconds(Integer.parseInt(arg.substring(DURATION_OPTION.length())));
+            } else if (arg.startsWith(RAMP_OPTION)) {
+                options.setRampSeconds(Integer.parseInt(arg.substring(RAMP_OPTION.length())));
+            } else if (arg.startsWith(ACTIONS_OPTION)) {
+                options.setActionsPerSecond(Integer.parseInt(arg.substring(ACTIONS_OPTION.length())));
+            } else if (arg.startsWith(HOST_OPTION)) {
+                options.setHost(arg.substring(HOST_OPTION.length()));
+            } else if (arg.startsWith(PORT_OPTION)) {
+                options.setPort(Integer.parseInt(arg.substring(PORT_OPTION.length())));
+            } else if (arg.startsWith(SCRIPT_OPTION)) {
+                options.setScript(List.of(arg.substring(SCRIPT_OPTION.length()).split(SCRIPT_SEPARATOR)));
+            } else if (arg.equals(COMPRESS_OPTION)) {
+                options.setCompressedKeyframes(true);
+            } else if (arg.equals(UDP_OPTION)) {
+                options.setUdpSnapshots(true);
+            } else if (arg.equals(EMBEDDED_OPTION)) {
+                embedded = true;
+            } else {
+                throw new IllegalArgumentException("Unknown load test option: " + arg);
+            }
+        }
+        if (embedded) {
+            options.setEmbeddedServer(ServerOptions.parse(serverArgs.toArray(new String[0])));
+        } else if (!serverArgs.isEmpty()) {
+            throw new IllegalArgumentException("Server options need " + EMBEDDED_OPTION);
+        }
+        return options;
+    }
+
+    public int getBots() {
+        return bots;
+    }
+
+    public void setBots(int bots) {
+        if (bots <= 0) {
+            throw new IllegalArgumentException("There must be at least one bot");
+        }
+        this.bots = bots;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("durationSeconds must be positive");
+        }
+        this.durationSeconds = durationSeconds;
+    }
+
+    // Bots are connected evenly over this many seconds, so the reports show where the server gives up.
+    public int getRampSeconds() {
+        return rampSeconds;
+    }
+
+    public void setRampSeconds(int rampSeconds) {
+        if (rampSeconds < 0) {
+            throw new IllegalArgumentException("rampSeconds cannot be negative");
+        }
+        this.rampSeconds = rampSeconds;
+    }
+
+    public int getActionsPerSecond() {
+        return actionsPerSecond;
+    }
+
+    public void setActionsPerSecond(int actionsPerSecond) {
+        if (actionsPerSecond <= 0) {
+            throw new IllegalArgumentException("actionsPerSecond must be positive");
+        }
+        this.actionsPerSecond = actionsPerSecond;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        if (host == null) {
+            throw new IllegalArgumentException("host was null");
+        }
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    // Text commands every bot repeats in order. Empty makes the bots act randomly.
+    public List<String> getScript() {
+        return script;
+    }
+
+    public void setScript(List<String> script) {
+        if (script == null) {
+            throw new IllegalArgumentException("script was null");
+        }
+        this.script = List.copyOf(script);
+    }
+
+    // Bots ask for compressed keyframes, to compare the bandwidth and server CPU with a run without.
+    public boolean isCompressedKeyframes() {
+        return compressedKeyframes;
+    }
+
+    public void setCompressedKeyframes(boolean compressedKeyframes) {
+        this.compressedKeyframes = compressedKeyframes;
+    }
+
+    // Bots take their frames as datagrams, commands still go over their connections.
+    public boolean isUdpSnapshots() {
+        return udpSnapshots;
+    }
+
+    public void setUdpSnapshots(boolean udpSnapshots) {
+        this.udpSnapshots = udpSnapshots;
+    }
+
+    // Null when testing a server that is already running.
+    public ServerOptions getEmbeddedServer() {
+        return embeddedServer;
+    }
+
+    public void setEmbeddedServer(ServerOptions embeddedServer) {
+        this.embeddedServer = embeddedServer;
+    }
+}
@@ -0,0 +1,56 @@
+package dungeons.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// Plain-text statistics on a localhost-only port: every connection gets one report and is closed, so
+// "nc localhost 7778" is enough to look at a running server. Connections are served one at a time on a
+// daemon thread, away from the game threads.
+public class AdminServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final Supplier<String> report;
+    private final Thread thread;
+
+    public AdminServer(int port, Supplier<String> report) throws IOException {
+        if (report == null) {
+            throw new IllegalArgumentException("report was null");
+        }
+        this.report = report;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        thread = new Thread(this::acceptLoop, "admin");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                OutputStream output = socket.getOutputStream();
+                output.write(report.get().getBytes(StandardCharsets.UTF_8));
+                output.flush();
+            } catch (IOException e) {
+                // Closed while waiting, or the client left before reading its report. Either way the
+                // loop condition decides whether to go on.
+            }
+        }
+    }
+}
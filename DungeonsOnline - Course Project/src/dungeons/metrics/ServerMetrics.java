@@ -0,0 +1,93 @@
+package dungeons.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters shared by the lobby and every room thread. LongAdders keep the hot path free of contention;
+// the sums are only computed when someone looks at them.
+public class ServerMetrics {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final LongAdder selectorWakeups;
+    private final LongAdder actionsProcessed;
+    private final LongAdder actionsDropped;
+    private final LongAdder bytesWritten;
+    private final LongAdder bytesDropped;
+    private final TickHistogram tickDurations;
+    private long lastRateSampleNanos;
+    private long lastRateSampleActions;
+    private double actionsPerSecond;
+
+    public ServerMetrics() {
+        selectorWakeups = new LongAdder();
+        actionsProcessed = new LongAdder();
+        actionsDropped = new LongAdder();
+        bytesWritten = new LongAdder();
+        bytesDropped = new LongAdder();
+        tickDurations = new TickHistogram();
+        lastRateSampleNanos = System.nanoTime();
+        lastRateSampleActions = 0;
+        actionsPerSecond = 0;
+    }
+
+    public void selectorWokeUp() {
+        selectorWakeups.increment();
+    }
+
+    public void actionProcessed() {
+        actionsProcessed.increment();
+    }
+
+    public void actionDropped() {
+        actionsDropped.increment();
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void bytesDropped(long bytes) {
+        bytesDropped.add(bytes);
+    }
+
+    public void tickFinished(long durationNanos) {
+        tickDurations.record(durationNanos);
+    }
+
+    public long getSelectorWakeups() {
+        return selectorWakeups.sum();
+    }
+
+    public long getActionsProcessed() {
+        return actionsProcessed.sum();
+    }
+
+    public long getActionsDropped() {
+        return actionsDropped.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getBytesDropped() {
+        return bytesDropped.sum();
+    }
+
+    public TickHistogram getTickDurations() {
+        return tickDurations;
+    }
+
+    // The rate over the last second or more. Readers refresh it at most once a second, so frequent
+    // polling does not turn it into noise.
+    public synchronized double getActionsPerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRateSampleNanos;
+        if (elapsed >= NANOS_PER_SECOND) {
+            long actions = actionsProcessed.sum();
+            actionsPerSecond = (double) (actions - lastRateSampleActions) * NANOS_PER_SECOND / elapsed;
+            lastRateSampleActions = actions;
+            lastRateSampleNanos = now;
+        }
+        return actionsPerSecond;
+    }
+}
@@ -0,0 +1,196 @@
+package dungeons.metrics;
+
+import dungeons.DungeonInstance;
+import dungeons.GameServer;
+import dungeons.persistence.ProfileJournal;
+import dungeons.server.ClientSession;
+import dungeons.server.TickLoop;
+
+import java.util.Locale;
+
+// Combines the shared counters with what the rooms publish about themselves. Everything here is read
+// from the JMX or admin thread while the game threads keep running, so the values are only consistent
+// with each other to within a tick.
+public class ServerStats implements ServerStatsMXBean {
+    private static final long NANOS_PER_MICRO = 1_000;
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    private final GameServer server;
+    private final ServerMetrics metrics;
+
+    public ServerStats(GameServer server, ServerMetrics metrics) {
+        if (server == null || metrics == null) {
+            throw new IllegalArgumentException("server or metrics was null");
+        }
+        this.server = server;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getRoomCount() {
+        return server.getRooms().size();
+    }
+
+    @Override
+    public int getConnectedPlayers() {
+        int players = 0;
+        for (DungeonInstance room : server.getRooms()) {
+            players += room.getPlayerCount();
+        }
+        return players;
+    }
+
+    @Override
+    public int getLobbyConnections() {
+        return server.getLobbyConnections();
+    }
+
+    @Override
+    public int getMonsterCount() {
+        int monsters = 0;
+        for (DungeonInstance room : server.getRooms()) {
+            monsters += room.getMonsterCount();
+        }
+        return monsters;
+    }
+
+    @Override
+    public int getTreasureCount() {
+        int treasures = 0;
+        for (DungeonInstance room : server.getRooms()) {
+            treasures += room.getTreasureCount();
+        }
+        return treasures;
+    }
+
+    @Override
+    public long getSelectorWakeups() {
+        return metrics.getSelectorWakeups();
+    }
+
+    @Override
+    public long getActionsProcessed() {
+        return metrics.getActionsProcessed();
+    }
+
+    @Override
+    public double getActionsPerSecond() {
+        return metrics.getActionsPerSecond();
+    }
+
+    @Override
+    public long getActionsDropped() {
+        return metrics.getActionsDropped();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return metrics.getBytesWritten();
+    }
+
+    @Override
+    public long getBytesDropped() {
+        return metrics.getBytesDropped();
+    }
+
+    @Override
+    public long getTickCount() {
+        return metrics.getTickDurations().getCount();
+    }
+
+    @Override
+    public long getTickOverruns() {
+        long overruns = 0;
+        for (DungeonInstance room : server.getRooms()) {
+            TickLoop tickLoop = room.getTickLoop();
+            if (tickLoop != null) {
+                overruns += tickLoop.getOverrunCount();
+            }
+        }
+        return overruns;
+    }
+
+    @Override
+    public long getTickP50Micros() {
+        return metrics.getTickDurations().percentileMicros(P50);
+    }
+
+    @Override
+    public long getTickP99Micros() {
+        return metrics.getTickDurations().percentileMicros(P99);
+    }
+
+    @Override
+    public long getTickMaxMicros() {
+        long max = 0;
+        for (DungeonInstance room : server.getRooms()) {
+            TickLoop tickLoop = room.getTickLoop();
+            if (tickLoop != null) {
+                max = Math.max(max, tickLoop.getMaxTickDurationNanos());
+            }
+        }
+        return max / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public int getProfilesPending() {
+        ProfileJournal journal = server.getProfileJournal();
+        return journal == null ? 0 : journal.getPendingRecords();
+    }
+
+    @Override
+    public long getProfilesDropped() {
+        ProfileJournal journal = server.getProfileJournal();
+        return journal == null ? 0 : journal.getDroppedRecords();
+    }
+
+    @Override
+    public long getProfileWriteFailures() {
+        ProfileJournal journal = server.getProfileJournal();
+        return journal == null ? 0 : journal.getWriteFailures();
+    }
+
+    // "name value" lines for the admin socket, followed by the tick histogram and one line per client.
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        line(report, "rooms", getRoomCount());
+        line(report, "players", getConnectedPlayers());
+        line(report, "lobby_connections", getLobbyConnections());
+        line(report, "monsters", getMonsterCount());
+        line(report, "treasures", getTreasureCount());
+        line(report, "selector_wakeups", getSelectorWakeups());
+        line(report, "actions", getActionsProcessed());
+        line(report, "actions_per_second", String.format(Locale.ROOT, "%.1f", getActionsPerSecond()));
+        line(report, "actions_dropped", getActionsDropped());
+        line(report, "bytes_written", getBytesWritten());
+        line(report, "bytes_dropped", getBytesDropped());
+        line(report, "ticks", getTickCount());
+        line(report, "tick_overruns", getTickOverruns());
+        line(report, "tick_p50_us", getTickP50Micros());
+        line(report, "tick_p99_us", getTickP99Micros());
+        line(report, "tick_max_us", getTickMaxMicros());
+        line(report, "profiles_pending", getProfilesPending());
+        line(report, "profiles_dropped", getProfilesDropped());
+        line(report, "profile_write_failures", getProfileWriteFailures());
+        report.append("tick_histogram").append(System.lineSeparator())
+            .append(metrics.getTickDurations().describe());
+
+        for (DungeonInstance room : server.getRooms()) {
+            for (ClientSession session : room.getSessions()) {
+                report.append("client room=").append(room.getId())
+                    .append(" player=").append(session.getPlayer().getId())
+                    .append(" profile=").append(session.getProfileId())
+                    .append(" bytes_written=").append(session.getWrittenBytes())
+                    .append(" bytes_dropped=").append(session.getDroppedBytes())
+                    .append(" bytes_datagrams=").append(session.getDatagramBytes())
+                    .append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+
+    private static void line(StringBuilder report, String name, Object value) {
+        report.append(name).append(' ').append(value).append(System.lineSeparator());
+    }
+}
@@ -0,0 +1,42 @@
+package dungeons.metrics;
+
+// What the server exposes over JMX, under dungeons:type=ServerStats.
+public interface ServerStatsMXBean {
+    int getRoomCount();
+
+    int getConnectedPlayers();
+
+    int getLobbyConnections();
+
+    int getMonsterCount();
+
+    int getTreasureCount();
+
+    long getSelectorWakeups();
+
+    long getActionsProcessed();
+
+    double getActionsPerSecond();
+
+    long getActionsDropped();
+
+    long getBytesWritten();
+
+    long getBytesDropped();
+
+    long getTickCount();
+
+    long getTickOverruns();
+
+    long getTickP50Micros();
+
+    long getTickP99Micros();
+
+    long getTickMaxMicros();
+
+    int getProfilesPending();
+
+    long getProfilesDropped();
+
+    long getProfileWriteFailures();
+}
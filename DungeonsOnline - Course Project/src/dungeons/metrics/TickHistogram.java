@@ -0,0 +1,74 @@
+package dungeons.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Tick durations in power-of-two buckets of microseconds: bucket 0 counts ticks under 1us, bucket i ticks
+// of [2^(i-1), 2^i) us. Recording is lock-free, so every room thread can share one histogram and any thread
+// can read it. Percentiles are only as exact as the bucket they fall into.
+public class TickHistogram {
+    private static final int BUCKETS = 32;
+    private static final long NANOS_PER_MICRO = 1_000;
+
+    private final AtomicLongArray counts;
+
+    public TickHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+    }
+
+    public void record(long durationNanos) {
+        long micros = Math.max(0, durationNanos / NANOS_PER_MICRO);
+        int bucket = Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    // The upper bound in microseconds of the bucket holding the given percentile, 0 without any ticks.
+    public long percentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(BUCKETS - 1);
+    }
+
+    // One line per non-empty bucket: "<upper bound>us count".
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                description.append("  <").append(upperBoundMicros(i)).append("us ").append(count)
+                    .append(System.lineSeparator());
+            }
+        }
+        return description.toString();
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+}
@@ -0,0 +1,92 @@
+package dungeons.persistence;
+
+import dungeons.treasure.Shield;
+import dungeons.treasure.Staff;
+import dungeons.treasure.Sword;
+import dungeons.treasure.Treasure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// An immutable copy of everything a player keeps between sessions. The version grows with every change
+// to the player's progress, so the newest copy of a profile always wins.
+public record PlayerProfile(int profileId, long version, int level, double experience, int attack, int defence,
+                            int spellDamage, int totalHealth, int totalMana, List<SavedTreasure> treasures,
+                            int equippedIndex) {
+    public static final int NO_EQUIPPED_TREASURE = -1;
+
+    public PlayerProfile {
+        if (treasures == null) {
+            throw new IllegalArgumentException("treasures was null");
+        }
+        treasures = List.copyOf(treasures);
+    }
+
+    public record SavedTreasure(byte kind, int level) {
+        private static final byte SWORD = 0;
+        private static final byte STAFF = 1;
+        private static final byte SHIELD = 2;
+
+        public static SavedTreasure of(Treasure treasure) {
+            if (treasure instanceof Sword) {
+                return new SavedTreasure(SWORD, treasure.getLevel());
+            } else if (treasure instanceof Staff) {
+                return new SavedTreasure(STAFF, treasure.getLevel());
+            } else if (treasure instanceof Shield) {
+                return new SavedTreasure(SHIELD, treasure.getLevel());
+            }
+            throw new IllegalArgumentException("Unknown treasure: " + treasure);
+        }
+
+        // Saved treasures are in an inventory, so they have no position on the map.
+        public Treasure toTreasure() {
+            return switch (kind) {
+                case SWORD -> new Sword(level, null);
+                case STAFF -> new Staff(level, null);
+                case SHIELD -> new Shield(level, null);
+                default -> throw new IllegalStateException("Unknown treasure kind: " + kind);
+            };
+        }
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(profileId);
+        output.writeLong(version);
+        output.writeInt(level);
+        output.writeDouble(experience);
+        output.writeInt(attack);
+        output.writeInt(defence);
+        output.writeInt(spellDamage);
+        output.writeInt(totalHealth);
+        output.writeInt(totalMana);
+        output.writeByte(equippedIndex);
+        output.writeByte(treasures.size());
+        for (SavedTreasure treasure : treasures) {
+            output.writeByte(treasure.kind());
+            output.writeInt(treasure.level());
+        }
+    }
+
+    public static PlayerProfile readFrom(DataInput input) throws IOException {
+        int profileId = input.readInt();
+        long version = input.readLong();
+        int level = input.readInt();
+        double experience = input.readDouble();
+        int attack = input.readInt();
+        int defence = input.readInt();
+        int spellDamage = input.readInt();
+        int totalHealth = input.readInt();
+        int totalMana = input.readInt();
+        int equippedIndex = input.readByte();
+        int treasureCount = input.readByte();
+        List<SavedTreasure> treasures = new ArrayList<>(treasureCount);
+        for (int i = 0; i < treasureCount; i++) {
+            treasures.add(new SavedTreasure(input.readByte(), input.readInt()));
+        }
+        return new PlayerProfile(profileId, version, level, experience, attack, defence, spellDamage, totalHealth,
+            totalMana, treasures, equippedIndex);
+    }
+}
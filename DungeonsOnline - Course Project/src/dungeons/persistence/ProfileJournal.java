@@ -0,0 +1,374 @@
+package dungeons.persistence;
+
+import dungeons.entities.player.Player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Write-behind store for player profiles. Game threads only copy the profile and queue its id; a journal
+// thread appends whole batches to the journal with one fsync each and periodically compacts everything
+// into a snapshot. On startup the snapshot is loaded and the journal replayed on top of it. A profile
+// is queued at most once however often it changes, and a failed write is retried until it succeeds.
+public class ProfileJournal implements AutoCloseable {
+    private static final String JOURNAL_FILE = "profiles.journal";
+    private static final String SNAPSHOT_FILE = "profiles.snapshot";
+    private static final String SNAPSHOT_TEMP_FILE = "profiles.snapshot.tmp";
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int MAX_BATCH = 1_024;
+    private static final int DEFAULT_SNAPSHOT_EVERY = 10_000;
+    private static final int MAX_PENDING_PROFILES = 65_536;
+    private static final long FIRST_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5_000;
+    // Failed writes are retried for as long as the server runs, but only this often once it is closing.
+    private static final int CLOSING_ATTEMPTS = 3;
+    // Queued by close(). The journal thread is never interrupted, since that would close the file channel.
+    private static final int CLOSE_MARKER = -1;
+
+    private final Path directory;
+    private final int snapshotEvery;
+    private final Map<Integer, PlayerProfile> latestProfiles;
+    private final Set<Integer> onlineProfiles;
+    private final BlockingQueue<Integer> pendingProfiles;
+    private final Set<Integer> queuedProfiles;
+    private final Map<Integer, PlayerProfile> writtenProfiles;
+    private final FileChannel journal;
+    private final Thread writer;
+    private final AtomicLong writtenRecords;
+    private final AtomicLong commits;
+    private final AtomicLong droppedRecords;
+    private final AtomicLong writeFailures;
+    private int recordsSinceSnapshot;
+    // The journal's length after the last complete commit; anything past it is a torn write.
+    private long committedBytes;
+    private volatile boolean closed;
+    // Set while writes are failing and cleared by the next one that succeeds.
+    private volatile IOException failure;
+
+    public ProfileJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    public ProfileJournal(Path directory, int snapshotEvery) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory was null");
+        }
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("snapshotEvery must be positive");
+        }
+        this.directory = directory;
+        this.snapshotEvery = snapshotEvery;
+        Files.createDirectories(directory);
+
+        writtenProfiles = new HashMap<>();
+        readSnapshot();
+        long validJournalBytes = replayJournal();
+        latestProfiles = new ConcurrentHashMap<>(writtenProfiles);
+        onlineProfiles = ConcurrentHashMap.newKeySet();
+        pendingProfiles = new LinkedBlockingQueue<>(MAX_PENDING_PROFILES + 1);
+        queuedProfiles = ConcurrentHashMap.newKeySet();
+        writtenRecords = new AtomicLong();
+        commits = new AtomicLong();
+        droppedRecords = new AtomicLong();
+        writeFailures = new AtomicLong();
+        journal = FileChannel.open(directory.resolve(JOURNAL_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journal.truncate(validJournalBytes);
+        committedBytes = validJournalBytes;
+
+        writer = new Thread(this::writeLoop, "profile-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Null for a profile that was never saved.
+    public PlayerProfile find(int profileId) {
+        return latestProfiles.get(profileId);
+    }
+
+    // Returns false if the profile is already used by another connection.
+    public boolean login(int profileId) {
+        return onlineProfiles.add(profileId);
+    }
+
+    public void logout(int profileId) {
+        onlineProfiles.remove(profileId);
+    }
+
+    // Never blocks the caller - the profile is copied here and written by the journal thread.
+    public void saveIfChanged(Player player) {
+        if (player == null) {
+            throw new IllegalArgumentException("player was null");
+        }
+        if (!player.hasProfile()) {
+            return;
+        }
+        PlayerProfile saved = latestProfiles.get(player.getProfileId());
+        if (saved != null && saved.version() == player.getProgressVersion()) {
+            return;
+        }
+        save(player.toProfile());
+    }
+
+    // The journal thread writes whatever version is latest once it gets to the profile. If writes have
+    // failed for so long that the queue is full, the profile is only kept in memory and counted as dropped.
+    public void save(PlayerProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("profile was null");
+        }
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        int profileId = profile.profileId();
+        latestProfiles.put(profileId, profile);
+        if (!queuedProfiles.add(profileId)) {
+            return;
+        }
+        if (pendingProfiles.size() >= MAX_PENDING_PROFILES || !pendingProfiles.offer(profileId)) {
+            queuedProfiles.remove(profileId);
+            droppedRecords.incrementAndGet();
+        }
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public int getPendingRecords() {
+        return pendingProfiles.size();
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    // Null unless the last write failed.
+    public IOException getFailure() {
+        return failure;
+    }
+
+    // Writes everything still queued and leaves a fresh snapshot behind. Throws if that could not be done,
+    // as profiles were then lost.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            pendingProfiles.put(CLOSE_MARKER);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException lastFailure = failure;
+        if (lastFailure != null) {
+            throw new UncheckedIOException("Could not write player profiles to " + directory.toAbsolutePath(),
+                lastFailure);
+        }
+    }
+
+    private void writeLoop() {
+        List<PlayerProfile> batch = new ArrayList<>();
+        List<Integer> profileIds = new ArrayList<>();
+        boolean closing = false;
+        long retryMillis = FIRST_RETRY_MILLIS;
+        int closingAttempts = 0;
+        while (true) {
+            // Whatever failed is retried before anything new is taken.
+            if (failure == null && !closing) {
+                try {
+                    profileIds.add(pendingProfiles.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                pendingProfiles.drainTo(profileIds, MAX_BATCH - 1);
+                closing = profileIds.remove((Integer) CLOSE_MARKER);
+                // Taken off the set first, so a save from now on queues the profile again.
+                queuedProfiles.removeAll(profileIds);
+                for (int profileId : profileIds) {
+                    batch.add(latestProfiles.get(profileId));
+                }
+                profileIds.clear();
+            }
+            try {
+                commit(batch);
+                if (closing || recordsSinceSnapshot >= snapshotEvery) {
+                    writeSnapshot();
+                }
+                if (closing) {
+                    journal.close();
+                }
+                failure = null;
+                retryMillis = FIRST_RETRY_MILLIS;
+            } catch (IOException e) {
+                failure = e;
+                writeFailures.incrementAndGet();
+                System.out.println("Could not write player profiles to " + directory.toAbsolutePath() + ": " + e +
+                    (closing ? "" : ". Retrying in " + retryMillis + " ms"));
+                if (closing && ++closingAttempts >= CLOSING_ATTEMPTS) {
+                    closeJournal();
+                    return;
+                }
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+                continue;
+            }
+            if (closing) {
+                return;
+            }
+        }
+    }
+
+    private void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // The failure that made the journal give up is the one reported.
+        }
+    }
+
+    // Clears the batch once it is written. A batch that failed halfway is cut off the journal before it
+    // is written again, so replaying never stops at a torn record followed by good ones.
+    private void commit(List<PlayerProfile> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (journal.size() != committedBytes) {
+            journal.truncate(committedBytes);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (PlayerProfile profile : batch) {
+            byte[] record = encode(profile);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            output.writeInt(record.length);
+            output.writeLong(crc.getValue());
+            output.write(record);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+        committedBytes += bytes.size();
+
+        for (PlayerProfile profile : batch) {
+            writtenProfiles.merge(profile.profileId(), profile, ProfileJournal::newer);
+        }
+        writtenRecords.addAndGet(batch.size());
+        commits.incrementAndGet();
+        recordsSinceSnapshot += batch.size();
+        batch.clear();
+    }
+
+    // The snapshot replaces the old one atomically before the journal is emptied. A crash in between
+    // only replays records the snapshot already has, which changes nothing as older versions lose.
+    private void writeSnapshot() throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temp))) {
+            output.writeInt(writtenProfiles.size());
+            for (PlayerProfile profile : writtenProfiles.values()) {
+                profile.writeTo(output);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.truncate(0);
+        journal.force(true);
+        committedBytes = 0;
+        recordsSinceSnapshot = 0;
+    }
+
+    private void readSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(snapshot))) {
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                PlayerProfile profile = PlayerProfile.readFrom(input);
+                writtenProfiles.put(profile.profileId(), profile);
+            }
+        }
+    }
+
+    // Stops at the first torn or corrupted record - it can only be the last one written before a crash.
+    // Returns the length of the valid part, which the journal is cut back to before appending again.
+    private long replayJournal() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+        int validBytes = 0;
+        while (contents.remaining() >= RECORD_HEADER_BYTES) {
+            int length = contents.getInt();
+            long checksum = contents.getLong();
+            if (length < 0 || length > contents.remaining()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            contents.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if (crc.getValue() != checksum) {
+                break;
+            }
+            PlayerProfile profile = PlayerProfile.readFrom(new DataInputStream(new ByteArrayInputStream(record)));
+            writtenProfiles.merge(profile.profileId(), profile, ProfileJournal::newer);
+            recordsSinceSnapshot++;
+            validBytes = contents.position();
+        }
+        return validBytes;
+    }
+
+    private static byte[] encode(PlayerProfile profile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        profile.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static PlayerProfile newer(PlayerProfile first, PlayerProfile second) {
+        return second.version() >= first.version() ? second : first;
+    }
+}
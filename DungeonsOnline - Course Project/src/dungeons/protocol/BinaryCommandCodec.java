@@ -0,0 +1,96 @@
+package dungeons.protocol;
+
+import java.nio.ByteBuffer;
+
+public final class BinaryCommandCodec {
+    private static final int UNKNOWN_OPCODE = -1;
+    public static final int MAX_COMMAND_BYTES = Byte.BYTES + Integer.BYTES + Byte.BYTES;
+
+    private BinaryCommandCodec() {
+    }
+
+    public static boolean isOpcode(byte value) {
+        return operandBytes(value) != UNKNOWN_OPCODE;
+    }
+
+    public static int encodedLength(byte opcode) {
+        int operandBytes = operandBytes(opcode);
+        if (operandBytes == UNKNOWN_OPCODE) {
+            throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+        return Byte.BYTES + operandBytes;
+    }
+
+    // Decodes one command without allocating. Returns false and leaves the buffer untouched if the
+    // command is not complete yet; input starting with an unknown opcode is skipped entirely.
+    public static boolean decode(ByteBuffer buffer, Command command) {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+
+        byte opcode = buffer.get(buffer.position());
+        int operandBytes = operandBytes(opcode);
+        if (operandBytes == UNKNOWN_OPCODE) {
+            buffer.position(buffer.limit());
+            return false;
+        }
+        if (buffer.remaining() < Byte.BYTES + operandBytes) {
+            return false;
+        }
+
+        buffer.get();
+        switch (opcode) {
+            case Command.MOVE -> {
+                byte direction = buffer.get();
+                command.set(opcode, direction, buffer.getInt());
+            }
+            case Command.ATTACK_MONSTER, Command.EQUIP, Command.DROP ->
+                command.set(opcode, buffer.get(), 0);
+            case Command.ATTACK_MELEE, Command.ATTACK_SPELL, Command.JOIN_ROOM, Command.LOGIN,
+                Command.UDP_SNAPSHOTS -> command.set(opcode, buffer.getInt(), 0);
+            case Command.TRADE -> {
+                int target = buffer.getInt();
+                command.set(opcode, target, buffer.get());
+            }
+            default -> command.set(opcode, 0, 0);
+        }
+        return true;
+    }
+
+    public static void encode(Command command, ByteBuffer buffer) {
+        byte opcode = command.getOpcode();
+        if (buffer.remaining() < encodedLength(opcode)) {
+            throw new IllegalArgumentException("Not enough space in buffer for command " + opcode);
+        }
+
+        buffer.put(opcode);
+        switch (opcode) {
+            case Command.MOVE -> {
+                buffer.put((byte) command.getFirstOperand());
+                buffer.putInt(command.getSecondOperand());
+            }
+            case Command.ATTACK_MONSTER, Command.EQUIP, Command.DROP ->
+                buffer.put((byte) command.getFirstOperand());
+            case Command.ATTACK_MELEE, Command.ATTACK_SPELL, Command.JOIN_ROOM, Command.LOGIN,
+                Command.UDP_SNAPSHOTS -> buffer.putInt(command.getFirstOperand());
+            case Command.TRADE -> {
+                buffer.putInt(command.getFirstOperand());
+                buffer.put((byte) command.getSecondOperand());
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static int operandBytes(byte opcode) {
+        return switch (opcode) {
+            case Command.ATTACK_MONSTER, Command.EQUIP, Command.DROP -> Byte.BYTES;
+            case Command.ATTACK_MELEE, Command.ATTACK_SPELL, Command.JOIN_ROOM, Command.LOGIN,
+                Command.UDP_SNAPSHOTS -> Integer.BYTES;
+            case Command.MOVE, Command.TRADE -> Byte.BYTES + Integer.BYTES;
+            case Command.UNEQUIP, Command.RESPAWN, Command.RESYNC, Command.LIST_ROOMS, Command.CREATE_ROOM,
+                Command.COMPRESS -> 0;
+            default -> UNKNOWN_OPCODE;
+        };
+    }
+}
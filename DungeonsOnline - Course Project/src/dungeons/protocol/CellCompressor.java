@@ -0,0 +1,146 @@
+package dungeons.protocol;
+
+import dungeons.world.CellGrid;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+// Compresses the cells of a keyframe. A map is mostly long runs of a handful of different cells, so every
+// run becomes one token: the index of its cell in a small dictionary sent first, and its length. Runs stop
+// at the end of a row. Encoded cells that are still large are deflated on top, which costs more CPU but
+// finds the repeating shapes of walls and rooms that runs miss.
+//   [method byte][int length][RLE: symbol count, symbols, tokens | DEFLATE: int RLE length, deflated RLE]
+public class CellCompressor {
+    public static final byte RLE = 1;
+    public static final byte DEFLATE = 2;
+    public static final int MAX_SYMBOLS = 16;
+    // A token holds lengths up to this; a longer run has a token of length 0 followed by a varint length.
+    static final int MAX_TOKEN_LENGTH = 15;
+    private static final int TOKEN_SYMBOL_SHIFT = 4;
+    // Smaller encoded cells are not worth deflating.
+    private static final int DEFAULT_DEFLATE_THRESHOLD = 512;
+    private static final int NO_SYMBOL = -1;
+    private static final int HEADER_BYTES = Byte.BYTES + Integer.BYTES;
+
+    private final int deflateThreshold;
+    private final Deflater deflater;
+    private final int[] symbolIndexes;
+    private final byte[] symbols;
+    private ByteBuffer runs;
+    private ByteBuffer deflated;
+
+    public CellCompressor() {
+        this(DEFAULT_DEFLATE_THRESHOLD);
+    }
+
+    // Encoded cells of at least deflateThreshold bytes are deflated when that makes them smaller.
+    public CellCompressor(int deflateThreshold) {
+        if (deflateThreshold < 0) {
+            throw new IllegalArgumentException("deflateThreshold was negative");
+        }
+        this.deflateThreshold = deflateThreshold;
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        symbolIndexes = new int[1 << Byte.SIZE];
+        symbols = new byte[MAX_SYMBOLS];
+        runs = ByteBuffer.allocate(0);
+        deflated = ByteBuffer.allocate(0);
+    }
+
+    // Compresses the given area of the grid. Returns the encoded cells, valid until the next call, or null
+    // when the area holds more different cells than the dictionary fits.
+    public ByteBuffer compress(CellGrid cells, int originX, int originY, int rows, int cols) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+
+        Arrays.fill(symbolIndexes, NO_SYMBOL);
+        int symbolCount = 0;
+        for (int y = originY; y < originY + rows; y++) {
+            for (int x = originX; x < originX + cols; x++) {
+                int cell = cells.get(x, y) & 0xFF;
+                if (symbolIndexes[cell] == NO_SYMBOL) {
+                    if (symbolCount == MAX_SYMBOLS) {
+                        return null;
+                    }
+                    symbolIndexes[cell] = symbolCount;
+                    symbols[symbolCount++] = (byte) cell;
+                }
+            }
+        }
+
+        // At worst every cell is a run of its own; a longer run never takes more bytes than it has cells.
+        int maxBytes = HEADER_BYTES + Byte.BYTES + symbolCount + rows * cols;
+        if (runs.capacity() < maxBytes) {
+            runs = ByteBuffer.allocate(maxBytes);
+        }
+        runs.clear();
+        runs.put(RLE);
+        runs.putInt(0);
+        runs.put((byte) symbolCount);
+        runs.put(symbols, 0, symbolCount);
+        for (int y = originY; y < originY + rows; y++) {
+            int x = originX;
+            while (x < originX + cols) {
+                char cell = cells.get(x, y);
+                int start = x;
+                while (x < originX + cols && cells.get(x, y) == cell) {
+                    x++;
+                }
+                putRun(symbolIndexes[cell & 0xFF], x - start);
+            }
+        }
+        int runBytes = runs.position() - HEADER_BYTES;
+        runs.putInt(Byte.BYTES, runBytes);
+        runs.flip();
+
+        if (runBytes >= deflateThreshold) {
+            ByteBuffer result = deflate(runBytes);
+            if (result != null) {
+                return result;
+            }
+        }
+        return runs;
+    }
+
+    private void putRun(int symbol, int length) {
+        if (length <= MAX_TOKEN_LENGTH) {
+            runs.put((byte) (symbol << TOKEN_SYMBOL_SHIFT | length));
+            return;
+        }
+        runs.put((byte) (symbol << TOKEN_SYMBOL_SHIFT));
+        while ((length & ~0x7F) != 0) {
+            runs.put((byte) (length & 0x7F | 0x80));
+            length >>>= 7;
+        }
+        runs.put((byte) length);
+    }
+
+    // Returns null when deflating does not make the cells smaller.
+    private ByteBuffer deflate(int runBytes) {
+        int maxBytes = HEADER_BYTES + Integer.BYTES + runBytes;
+        if (deflated.capacity() < maxBytes) {
+            deflated = ByteBuffer.allocate(maxBytes);
+        }
+        deflated.clear();
+        deflated.put(DEFLATE);
+        deflated.putInt(0);
+        deflated.putInt(runBytes);
+
+        deflater.reset();
+        deflater.setInput(runs.array(), HEADER_BYTES, runBytes);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (!deflated.hasRemaining()) {
+                return null;
+            }
+            deflater.deflate(deflated);
+        }
+        if (deflated.position() >= runs.limit()) {
+            return null;
+        }
+        deflated.putInt(Byte.BYTES, deflated.position() - HEADER_BYTES);
+        deflated.flip();
+        return deflated;
+    }
+}
@@ -0,0 +1,111 @@
+package dungeons.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reads cells written by CellCompressor straight into a client's map. The inflater and the buffer for
+// inflated cells are kept, so decoding a keyframe allocates nothing once the buffer is big enough.
+public class CellDecompressor {
+    private static final int TOKEN_SYMBOL_SHIFT = 4;
+    private static final int TOKEN_LENGTH_MASK = 0x0F;
+
+    private final Inflater inflater;
+    private final char[] symbols;
+    private ByteBuffer inflated;
+
+    public CellDecompressor() {
+        inflater = new Inflater();
+        symbols = new char[CellCompressor.MAX_SYMBOLS];
+        inflated = ByteBuffer.allocate(0);
+    }
+
+    // Fills rows x cols cells of the map and leaves the buffer after the encoded cells.
+    public void decompress(ByteBuffer buffer, char[][] map, int rows, int cols) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer was null");
+        }
+        if (map == null) {
+            throw new IllegalArgumentException("map was null");
+        }
+
+        byte method = buffer.get();
+        int length = buffer.getInt();
+        int end = buffer.position() + length;
+        switch (method) {
+            case CellCompressor.RLE -> decodeRuns(buffer, map, rows, cols);
+            case CellCompressor.DEFLATE -> decodeRuns(inflate(buffer, length), map, rows, cols);
+            default -> throw new IllegalArgumentException("Unknown cell compression " + method);
+        }
+        buffer.position(end);
+    }
+
+    private ByteBuffer inflate(ByteBuffer buffer, int length) {
+        int runBytes = buffer.getInt();
+        if (inflated.capacity() < runBytes) {
+            inflated = ByteBuffer.allocate(runBytes);
+        }
+        inflated.clear();
+        inflated.limit(runBytes);
+
+        int deflatedBytes = length - Integer.BYTES;
+        inflater.reset();
+        if (buffer.hasArray()) {
+            inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), deflatedBytes);
+        } else {
+            inflater.setInput(buffer.slice().limit(deflatedBytes));
+        }
+        try {
+            while (inflated.hasRemaining() && inflater.inflate(inflated) > 0) {
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed cells", e);
+        }
+        if (inflated.hasRemaining()) {
+            throw new IllegalArgumentException("Compressed cells were cut short");
+        }
+        inflated.flip();
+        return inflated;
+    }
+
+    private void decodeRuns(ByteBuffer runs, char[][] map, int rows, int cols) {
+        int symbolCount = runs.get() & 0xFF;
+        if (symbolCount > CellCompressor.MAX_SYMBOLS) {
+            throw new IllegalArgumentException("Too many cell symbols: " + symbolCount);
+        }
+        for (int i = 0; i < symbolCount; i++) {
+            symbols[i] = (char) (runs.get() & 0xFF);
+        }
+        for (int y = 0; y < rows; y++) {
+            char[] row = map[y];
+            int x = 0;
+            while (x < cols) {
+                int token = runs.get() & 0xFF;
+                int symbol = token >>> TOKEN_SYMBOL_SHIFT;
+                int length = token & TOKEN_LENGTH_MASK;
+                if (length == 0) {
+                    length = readVarint(runs);
+                }
+                if (symbol >= symbolCount || length == 0 || length > cols - x) {
+                    throw new IllegalArgumentException("Malformed compressed cells");
+                }
+                char cell = symbols[symbol];
+                for (int end = x + length; x < end; x++) {
+                    row[x] = cell;
+                }
+            }
+        }
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in compressed cells");
+    }
+}
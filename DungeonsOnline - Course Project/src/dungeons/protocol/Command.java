@@ -0,0 +1,53 @@
+package dungeons.protocol;
+
+public class Command {
+    public static final byte MOVE = 1;
+    public static final byte ATTACK_MELEE = 2;
+    public static final byte ATTACK_SPELL = 3;
+    public static final byte ATTACK_MONSTER = 4;
+    public static final byte EQUIP = 5;
+    public static final byte UNEQUIP = 6;
+    public static final byte DROP = 7;
+    public static final byte TRADE = 8;
+    public static final byte RESPAWN = 9;
+    public static final byte RESYNC = 10;
+    public static final byte LIST_ROOMS = 11;
+    public static final byte JOIN_ROOM = 12;
+    public static final byte CREATE_ROOM = 13;
+    public static final byte LOGIN = 14;
+    // Sent in the lobby by clients that want their keyframes compressed.
+    public static final byte COMPRESS = 15;
+    // Sent in the lobby with the port of a UDP socket the client wants its game frames on.
+    public static final byte UDP_SNAPSHOTS = 16;
+
+    // The second operand of a move is the client's sequence number for it, which the server acknowledges
+    // in its frames. Clients that do not predict their moves send NO_SEQUENCE.
+    public static final int NO_SEQUENCE = 0;
+
+    private byte opcode;
+    private int firstOperand;
+    private int secondOperand;
+
+    public void set(byte opcode, int firstOperand, int secondOperand) {
+        this.opcode = opcode;
+        this.firstOperand = firstOperand;
+        this.secondOperand = secondOperand;
+    }
+
+    public boolean isLobbyCommand() {
+        return opcode == LIST_ROOMS || opcode == JOIN_ROOM || opcode == CREATE_ROOM || opcode == LOGIN ||
+            opcode == COMPRESS || opcode == UDP_SNAPSHOTS;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    public int getFirstOperand() {
+        return firstOperand;
+    }
+
+    public int getSecondOperand() {
+        return secondOperand;
+    }
+}
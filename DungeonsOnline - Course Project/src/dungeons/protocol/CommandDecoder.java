@@ -0,0 +1,82 @@
+package dungeons.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class CommandDecoder {
+    private static final byte LINE_END = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final String MOVE_KEYS = "wasd";
+
+    private final boolean textCommands;
+
+    public CommandDecoder(boolean textCommands) {
+        this.textCommands = textCommands;
+    }
+
+    // Decodes the next command from a buffer in read mode, so a caller looping until it returns false gets
+    // every command one read brought in. Binary commands are decoded in place. With text commands enabled,
+    // input that does not start with an opcode is read up to the end of the line. A line that has not fully
+    // arrived is left in the buffer for the next read, unless it fills the whole buffer and never could.
+    public boolean next(ByteBuffer buffer, Command command) {
+        while (buffer.hasRemaining()) {
+            if (textCommands && !BinaryCommandCodec.isOpcode(buffer.get(buffer.position()))) {
+                int end = findLineEnd(buffer);
+                if (end == buffer.limit()) {
+                    if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                        buffer.position(end);
+                    }
+                    return false;
+                }
+                if (nextText(buffer, end, command)) {
+                    return true;
+                }
+                continue;
+            }
+            return BinaryCommandCodec.decode(buffer, command);
+        }
+        return false;
+    }
+
+    private static int findLineEnd(ByteBuffer buffer) {
+        int end = buffer.position();
+        while (end < buffer.limit() && !isLineEnd(buffer, end)) {
+            end++;
+        }
+        return end;
+    }
+
+    // Decodes the text up to end, where a line end is.
+    private static boolean nextText(ByteBuffer buffer, int end, Command command) {
+        int start = buffer.position();
+        // Moves typed faster than they are read arrive glued together, as in "wwd". No other command
+        // starts with two move keys.
+        if (isMoveKey(buffer, start) && (isMoveKey(buffer, start + 1) || isLineEnd(buffer, start + 1))) {
+            command.set(Command.MOVE, buffer.get(), Command.NO_SEQUENCE);
+            skipLineEnd(buffer);
+            return true;
+        }
+
+        byte[] bytes = new byte[end - start];
+        buffer.get(bytes);
+        skipLineEnd(buffer);
+        return TextCommandParser.parse(new String(bytes, StandardCharsets.UTF_8), command);
+    }
+
+    private static void skipLineEnd(ByteBuffer buffer) {
+        if (isLineEnd(buffer, buffer.position()) && buffer.get(buffer.position()) == CARRIAGE_RETURN) {
+            buffer.get();
+        }
+        if (isLineEnd(buffer, buffer.position())) {
+            buffer.get();
+        }
+    }
+
+    private static boolean isMoveKey(ByteBuffer buffer, int index) {
+        return index < buffer.limit() && MOVE_KEYS.indexOf(buffer.get(index)) >= 0;
+    }
+
+    private static boolean isLineEnd(ByteBuffer buffer, int index) {
+        return index < buffer.limit() && (buffer.get(index) == LINE_END || buffer.get(index) == CARRIAGE_RETURN);
+    }
+}
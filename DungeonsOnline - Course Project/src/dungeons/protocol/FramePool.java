@@ -0,0 +1,77 @@
+package dungeons.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Direct buffers for outgoing frames, reused once a frame has been written or dropped. Capacities are
+// powers of two so a buffer fits any frame of its size class; frames above the largest class are not
+// pooled. Frames are taken on the game thread but may be given back by writer threads, hence the lock.
+public class FramePool {
+    private static final int MIN_CAPACITY_SHIFT = 8;
+    private static final int MAX_CAPACITY_SHIFT = 20;
+    private static final int MAX_POOLED_BYTES_PER_CLASS = 4 * 1_024 * 1_024;
+
+    private final List<ArrayDeque<ByteBuffer>> freeBuffers;
+
+    public FramePool() {
+        freeBuffers = new ArrayList<>();
+        for (int shift = MIN_CAPACITY_SHIFT; shift <= MAX_CAPACITY_SHIFT; shift++) {
+            freeBuffers.add(new ArrayDeque<>());
+        }
+    }
+
+    // A frame with its length prefix written, ready for payloadLength bytes, like FrameReader.allocateFrame.
+    public ByteBuffer acquireFrame(int payloadLength) {
+        if (payloadLength < 0) {
+            throw new IllegalArgumentException("payloadLength cannot be negative");
+        }
+        int frameLength = FrameReader.LENGTH_PREFIX_BYTES + payloadLength;
+        int sizeClass = sizeClass(frameLength);
+        if (sizeClass >= freeBuffers.size()) {
+            return FrameReader.allocateFrame(payloadLength);
+        }
+
+        ByteBuffer frame;
+        synchronized (this) {
+            frame = freeBuffers.get(sizeClass).pollLast();
+        }
+        if (frame == null) {
+            frame = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CAPACITY_SHIFT));
+        }
+        frame.clear().limit(frameLength);
+        frame.putInt(payloadLength);
+        return frame;
+    }
+
+    // Frames that did not come from a pool are left to the garbage collector.
+    public void release(ByteBuffer frame) {
+        if (frame == null || !frame.isDirect() || Integer.bitCount(frame.capacity()) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(frame.capacity());
+        if (sizeClass >= freeBuffers.size() || frame.capacity() < 1 << MIN_CAPACITY_SHIFT) {
+            return;
+        }
+        synchronized (this) {
+            ArrayDeque<ByteBuffer> buffers = freeBuffers.get(sizeClass);
+            if ((buffers.size() + 1) * frame.capacity() <= MAX_POOLED_BYTES_PER_CLASS) {
+                buffers.addLast(frame);
+            }
+        }
+    }
+
+    public synchronized int getPooledCount() {
+        int count = 0;
+        for (ArrayDeque<ByteBuffer> buffers : freeBuffers) {
+            count += buffers.size();
+        }
+        return count;
+    }
+
+    private static int sizeClass(int length) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        return Math.max(shift, MIN_CAPACITY_SHIFT) - MIN_CAPACITY_SHIFT;
+    }
+}
@@ -0,0 +1,83 @@
+package dungeons.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class FrameReader {
+    public static final int LENGTH_PREFIX_BYTES = Integer.BYTES;
+    // Game frames up to this size may be sent as datagrams; it fits one packet on common links, so a
+    // datagram is never lost in pieces.
+    public static final int MAX_DATAGRAM_BYTES = 1_400;
+
+    private ByteBuffer buffer;
+    private int requiredCapacity;
+
+    public FrameReader(int initialCapacity) {
+        if (initialCapacity <= LENGTH_PREFIX_BYTES) {
+            throw new IllegalArgumentException("initialCapacity is too small");
+        }
+        buffer = ByteBuffer.allocate(initialCapacity);
+        buffer.limit(0);
+        requiredCapacity = initialCapacity;
+    }
+
+    public static ByteBuffer allocateFrame(int payloadLength) {
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_PREFIX_BYTES + payloadLength);
+        frame.putInt(payloadLength);
+        return frame;
+    }
+
+    // A datagram holds one frame, length prefix included. Returns false for anything else, which is dropped
+    // like a lost datagram; otherwise the datagram is left positioned at the frame.
+    public static boolean unwrapDatagram(ByteBuffer datagram) {
+        if (datagram.remaining() < LENGTH_PREFIX_BYTES) {
+            return false;
+        }
+        return datagram.getInt() == datagram.remaining();
+    }
+
+    // Frames returned by nextFrame() stay valid only until the next call to readFrom().
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        buffer.compact();
+        if (requiredCapacity > buffer.capacity() || !buffer.hasRemaining()) {
+            grow();
+        }
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read;
+    }
+
+    public ByteBuffer nextFrame() {
+        int position = buffer.position();
+        if (buffer.remaining() < LENGTH_PREFIX_BYTES) {
+            return null;
+        }
+
+        int payloadLength = buffer.getInt(position);
+        if (payloadLength < 0) {
+            throw new IllegalStateException("Received a frame with negative length: " + payloadLength);
+        }
+
+        int frameLength = LENGTH_PREFIX_BYTES + payloadLength;
+        if (buffer.remaining() < frameLength) {
+            requiredCapacity = Math.max(requiredCapacity, frameLength);
+            return null;
+        }
+
+        ByteBuffer frame = buffer.duplicate();
+        frame.position(position + LENGTH_PREFIX_BYTES);
+        frame.limit(position + frameLength);
+        buffer.position(position + frameLength);
+        return frame;
+    }
+
+    private void grow() {
+        int newCapacity = Math.max(requiredCapacity, buffer.capacity() * 2);
+        ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+        requiredCapacity = newCapacity;
+    }
+}
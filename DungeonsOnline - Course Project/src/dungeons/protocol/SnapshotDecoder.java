@@ -0,0 +1,217 @@
+package dungeons.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class SnapshotDecoder {
+    private static final int NO_FRAME = -1;
+    private static final char UNKNOWN_CELL = ' ';
+    private static final int INITIAL_PLAYER_CAPACITY = 16;
+
+    private char[][] map;
+    private int rows;
+    private int cols;
+    private int originX;
+    private int originY;
+    private int frameNumber;
+    // The last frame applied. Unlike frameNumber it is kept while waiting for a resync.
+    private int newestFrameNumber;
+    private int playerCount;
+    private int[] playerIds;
+    private int[] playerXs;
+    private int[] playerYs;
+    private int ownId;
+    private int acknowledgedInput;
+    private final CellDecompressor decompressor;
+
+    public SnapshotDecoder() {
+        frameNumber = NO_FRAME;
+        newestFrameNumber = NO_FRAME;
+        playerCount = 0;
+        playerIds = new int[INITIAL_PLAYER_CAPACITY];
+        playerXs = new int[INITIAL_PLAYER_CAPACITY];
+        playerYs = new int[INITIAL_PLAYER_CAPACITY];
+        ownId = -1;
+        acknowledgedInput = Command.NO_SEQUENCE;
+        decompressor = new CellDecompressor();
+    }
+
+    // Frames sent as datagrams can arrive late, twice or not at all. A game frame no newer than the last one
+    // applied is stale and should be dropped whole, players and stats included. While waiting for a resync
+    // no keyframe is stale, however old, since any keyframe ends the wait.
+    public boolean isStale(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer was null");
+        }
+        int position = buffer.position();
+        byte frameType = buffer.get(position);
+        if (frameType == SnapshotEncoder.MESSAGE || frameNumber == NO_FRAME && isKeyframe(frameType)) {
+            return false;
+        }
+        return buffer.getInt(position + Byte.BYTES) <= newestFrameNumber;
+    }
+
+    // Returns false when a delta does not follow the last applied frame and the client has to resync.
+    public boolean decode(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer was null");
+        }
+
+        byte frameType = buffer.get();
+        int receivedFrameNumber = buffer.getInt();
+
+        if (isKeyframe(frameType)) {
+            boolean view = frameType == SnapshotEncoder.VIEW_KEYFRAME ||
+                frameType == SnapshotEncoder.COMPRESSED_VIEW_KEYFRAME;
+            originX = view ? buffer.getChar() : 0;
+            originY = view ? buffer.getChar() : 0;
+            decodeKeyframe(buffer, frameType == SnapshotEncoder.COMPRESSED_KEYFRAME ||
+                frameType == SnapshotEncoder.COMPRESSED_VIEW_KEYFRAME);
+            frameNumber = receivedFrameNumber;
+            newestFrameNumber = receivedFrameNumber;
+            return true;
+        }
+
+        int newOriginX = originX;
+        int newOriginY = originY;
+        if (frameType == SnapshotEncoder.VIEW_DELTA) {
+            newOriginX = buffer.getChar();
+            newOriginY = buffer.getChar();
+        }
+        int changedCount = buffer.getInt();
+        if (map == null || receivedFrameNumber != frameNumber + 1) {
+            buffer.position(buffer.position() + changedCount * SnapshotEncoder.CHANGED_CELL_BYTES);
+            frameNumber = NO_FRAME;
+            return false;
+        }
+
+        if (newOriginX != originX || newOriginY != originY) {
+            ViewWindow.shift(map, newOriginX - originX, newOriginY - originY, UNKNOWN_CELL);
+            originX = newOriginX;
+            originY = newOriginY;
+        }
+        for (int i = 0; i < changedCount; i++) {
+            int cellIndex = buffer.getInt();
+            map[cellIndex / cols][cellIndex % cols] = (char) buffer.get();
+        }
+        frameNumber = receivedFrameNumber;
+        newestFrameNumber = receivedFrameNumber;
+        return true;
+    }
+
+    // Reads the players following the map update of a game frame. Their positions are map coordinates.
+    public void decodePlayers(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer was null");
+        }
+        playerCount = buffer.getInt();
+        if (playerCount > playerIds.length) {
+            int capacity = Math.max(playerCount, playerIds.length * 2);
+            playerIds = Arrays.copyOf(playerIds, capacity);
+            playerXs = Arrays.copyOf(playerXs, capacity);
+            playerYs = Arrays.copyOf(playerYs, capacity);
+        }
+        for (int i = 0; i < playerCount; i++) {
+            playerIds[i] = buffer.getInt();
+            playerXs[i] = buffer.getChar();
+            playerYs[i] = buffer.getChar();
+        }
+    }
+
+    // Reads the receiving player's id and last acknowledged move, which follow the players.
+    public void decodeInputAck(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer was null");
+        }
+        ownId = buffer.getInt();
+        acknowledgedInput = buffer.getInt();
+    }
+
+    public int getOwnId() {
+        return ownId;
+    }
+
+    public int getAcknowledgedInput() {
+        return acknowledgedInput;
+    }
+
+    // The index of the player with the given id in the last list of players, or -1 when it is not in view.
+    public int indexOfPlayer(int id) {
+        for (int i = 0; i < playerCount; i++) {
+            if (playerIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getPlayerId(int index) {
+        return playerIds[index];
+    }
+
+    public int getPlayerX(int index) {
+        return playerXs[index];
+    }
+
+    public int getPlayerY(int index) {
+        return playerYs[index];
+    }
+
+    public boolean hasMap() {
+        return map != null;
+    }
+
+    public char[][] getMap() {
+        return map;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    // Map coordinates of the top left cell of the received map. Always 0 without a view radius.
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+
+    private static boolean isKeyframe(byte frameType) {
+        return frameType == SnapshotEncoder.KEYFRAME || frameType == SnapshotEncoder.VIEW_KEYFRAME ||
+            frameType == SnapshotEncoder.COMPRESSED_KEYFRAME || frameType == SnapshotEncoder.COMPRESSED_VIEW_KEYFRAME;
+    }
+
+    private void decodeKeyframe(ByteBuffer buffer, boolean compressed) {
+        int newRows = buffer.getChar();
+        int newCols = buffer.getChar();
+        if (map == null || newRows != rows || newCols != cols) {
+            rows = newRows;
+            cols = newCols;
+            map = new char[rows][cols];
+        }
+
+        if (compressed) {
+            decompressor.decompress(buffer, map, rows, cols);
+            return;
+        }
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                map[y][x] = (char) buffer.get();
+            }
+        }
+    }
+}
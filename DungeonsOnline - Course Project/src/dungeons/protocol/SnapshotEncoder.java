@@ -0,0 +1,267 @@
+package dungeons.protocol;
+
+import dungeons.GameMap;
+import dungeons.entities.position.GamePosition;
+import dungeons.world.CellGrid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Cells go over the wire as single ASCII bytes, the same way CellGrid stores them. Every player is the
+// same cell, so a game frame follows its map update with the players in view: a count, then the id and
+// map position of each. Then come the receiving player's own id and the sequence number of its last move
+// the frame includes, for the client to reconcile its predicted moves with. Clients that ask for it get
+// keyframes with their cells compressed by CellCompressor; deltas are sparse already and stay as they are.
+public class SnapshotEncoder {
+    public static final byte KEYFRAME = 0;
+    public static final byte DELTA = 1;
+    public static final byte MESSAGE = 2;
+    public static final byte VIEW_KEYFRAME = 3;
+    public static final byte VIEW_DELTA = 4;
+    public static final byte COMPRESSED_KEYFRAME = 5;
+    public static final byte COMPRESSED_VIEW_KEYFRAME = 6;
+
+    public static final int HEADER_BYTES = Byte.BYTES + Integer.BYTES;
+    public static final int CHANGED_CELL_BYTES = Integer.BYTES + Byte.BYTES;
+    public static final int PLAYER_ENTRY_BYTES = Integer.BYTES + 2 * Character.BYTES;
+    public static final int INPUT_ACK_BYTES = 2 * Integer.BYTES;
+    private static final int CHANGED_COUNT_OFFSET = HEADER_BYTES;
+    private static final int VIEW_CHANGED_COUNT_OFFSET = HEADER_BYTES + 2 * Character.BYTES;
+    private static final int INITIAL_DELTA_BYTES = 4 * 1_024;
+
+    private final int rows;
+    private final int cols;
+    private final CellGrid cells;
+    private final CellGrid lastFrame;
+    private final boolean[] changedRows;
+    private ByteBuffer deltaBuffer;
+    private ByteBuffer keyframeBuffer;
+    private ByteBuffer viewBuffer;
+    private ByteBuffer compressedKeyframeBuffer;
+    private final CellCompressor compressor;
+
+    private int frameNumber;
+    private boolean keyframeUpToDate;
+    private boolean compressedKeyframeUpToDate;
+
+    public SnapshotEncoder(CellGrid cells) {
+        this(cells, true);
+    }
+
+    // Without full map frames only view frames can be encoded, and no copy of the map is kept.
+    public SnapshotEncoder(CellGrid cells, boolean fullMapFrames) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+        rows = cells.getRows();
+        cols = cells.getCols();
+        this.cells = cells;
+        lastFrame = fullMapFrames ? cells.copy() : null;
+        changedRows = new boolean[rows];
+        deltaBuffer = ByteBuffer.allocate(INITIAL_DELTA_BYTES);
+        keyframeBuffer = null;
+        viewBuffer = ByteBuffer.allocate(0);
+        compressedKeyframeBuffer = ByteBuffer.allocate(0);
+        compressor = new CellCompressor();
+        frameNumber = 0;
+        keyframeUpToDate = false;
+        compressedKeyframeUpToDate = false;
+    }
+
+    public void nextFrame(GameMap gameMap) {
+        for (int y = 0; y < rows; y++) {
+            changedRows[y] = gameMap.isRowDirty(y);
+        }
+        gameMap.clearDirtyRows();
+        frameNumber++;
+        keyframeUpToDate = false;
+        compressedKeyframeUpToDate = false;
+        if (lastFrame != null) {
+            encodeDelta();
+        }
+    }
+
+    private void encodeDelta() {
+        deltaBuffer.clear();
+        deltaBuffer.put(DELTA);
+        deltaBuffer.putInt(frameNumber);
+        deltaBuffer.putInt(0);
+
+        int changedCount = 0;
+        for (int y = 0; y < rows; y++) {
+            if (!changedRows[y]) {
+                continue;
+            }
+            for (int x = 0; x < cols; x++) {
+                char cell = cells.get(x, y);
+                if (cell != lastFrame.get(x, y)) {
+                    lastFrame.set(x, y, cell);
+                    if (deltaBuffer.remaining() < CHANGED_CELL_BYTES) {
+                        deltaBuffer = grow(deltaBuffer);
+                    }
+                    deltaBuffer.putInt(y * cols + x);
+                    deltaBuffer.put((byte) cell);
+                    changedCount++;
+                }
+            }
+        }
+        deltaBuffer.putInt(CHANGED_COUNT_OFFSET, changedCount);
+        deltaBuffer.flip();
+    }
+
+    public static ByteBuffer encodeMessage(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = FrameReader.allocateFrame(Byte.BYTES + bytes.length);
+        frame.put(MESSAGE);
+        frame.put(bytes);
+        frame.flip();
+        return frame;
+    }
+
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+
+    public ByteBuffer getDelta() {
+        requireFullMapFrames();
+        return deltaBuffer.duplicate();
+    }
+
+    public ByteBuffer getKeyframe() {
+        requireFullMapFrames();
+        if (!keyframeUpToDate) {
+            encodeKeyframe();
+        }
+        return keyframeBuffer.duplicate();
+    }
+
+    // Shared by every client that asked for compressed keyframes, like the plain keyframe. A map that does
+    // not compress, or has more different cells than CellCompressor fits, gets the plain keyframe instead.
+    public ByteBuffer getCompressedKeyframe() {
+        requireFullMapFrames();
+        if (!compressedKeyframeUpToDate) {
+            ByteBuffer compressedCells = compressor.compress(lastFrame, 0, 0, rows, cols);
+            if (compressedCells == null || compressedCells.remaining() >= rows * cols) {
+                return getKeyframe();
+            }
+            int frameBytes = HEADER_BYTES + 2 * Character.BYTES + compressedCells.remaining();
+            if (compressedKeyframeBuffer.capacity() < frameBytes) {
+                compressedKeyframeBuffer = ByteBuffer.allocate(frameBytes);
+            }
+            compressedKeyframeBuffer.clear();
+            compressedKeyframeBuffer.put(COMPRESSED_KEYFRAME);
+            compressedKeyframeBuffer.putInt(frameNumber);
+            compressedKeyframeBuffer.putChar((char) rows);
+            compressedKeyframeBuffer.putChar((char) cols);
+            compressedKeyframeBuffer.put(compressedCells);
+            compressedKeyframeBuffer.flip();
+            compressedKeyframeUpToDate = true;
+        }
+        return compressedKeyframeBuffer.duplicate();
+    }
+
+    public ByteBuffer encodeView(ViewWindow window, GamePosition center, boolean keyframe) {
+        return encodeView(window, center, keyframe, false);
+    }
+
+    // Encodes the current frame limited to one client's window. The window keeps the cells that client
+    // was sent, so a delta only has to look at the rows changed this frame unless the window moved.
+    public ByteBuffer encodeView(ViewWindow window, GamePosition center, boolean keyframe, boolean compressed) {
+        if (window == null) {
+            throw new IllegalArgumentException("window was null");
+        }
+
+        boolean moved = window.moveTo(center, rows, cols);
+        int originX = window.getOriginX();
+        int originY = window.getOriginY();
+        int windowRows = window.getRows();
+        int windowCols = window.getCols();
+        char[][] windowCells = window.getCells();
+
+        int maxViewBytes = HEADER_BYTES + 2 * Character.BYTES + Integer.BYTES +
+            windowRows * windowCols * CHANGED_CELL_BYTES;
+        if (viewBuffer.capacity() < maxViewBytes) {
+            viewBuffer = ByteBuffer.allocate(maxViewBytes);
+        }
+        viewBuffer.clear();
+        viewBuffer.put(keyframe ? VIEW_KEYFRAME : VIEW_DELTA);
+        viewBuffer.putInt(frameNumber);
+        viewBuffer.putChar((char) originX);
+        viewBuffer.putChar((char) originY);
+
+        ByteBuffer compressedCells = keyframe && compressed ?
+            compressor.compress(cells, originX, originY, windowRows, windowCols) : null;
+        if (compressedCells != null && compressedCells.remaining() < windowRows * windowCols) {
+            viewBuffer.put(0, COMPRESSED_VIEW_KEYFRAME);
+            viewBuffer.putChar((char) windowRows);
+            viewBuffer.putChar((char) windowCols);
+            for (int y = 0; y < windowRows; y++) {
+                for (int x = 0; x < windowCols; x++) {
+                    windowCells[y][x] = cells.get(originX + x, originY + y);
+                }
+            }
+            viewBuffer.put(compressedCells);
+        } else if (keyframe) {
+            viewBuffer.putChar((char) windowRows);
+            viewBuffer.putChar((char) windowCols);
+            for (int y = 0; y < windowRows; y++) {
+                for (int x = 0; x < windowCols; x++) {
+                    char cell = cells.get(originX + x, originY + y);
+                    windowCells[y][x] = cell;
+                    viewBuffer.put((byte) cell);
+                }
+            }
+        } else {
+            viewBuffer.putInt(0);
+            int changedCount = 0;
+            for (int y = 0; y < windowRows; y++) {
+                if (!moved && !changedRows[originY + y]) {
+                    continue;
+                }
+                for (int x = 0; x < windowCols; x++) {
+                    char cell = cells.get(originX + x, originY + y);
+                    if (cell != windowCells[y][x]) {
+                        windowCells[y][x] = cell;
+                        viewBuffer.putInt(y * windowCols + x);
+                        viewBuffer.put((byte) cell);
+                        changedCount++;
+                    }
+                }
+            }
+            viewBuffer.putInt(VIEW_CHANGED_COUNT_OFFSET, changedCount);
+        }
+        viewBuffer.flip();
+        return viewBuffer.duplicate();
+    }
+
+    private void encodeKeyframe() {
+        if (keyframeBuffer == null) {
+            keyframeBuffer = ByteBuffer.allocate(HEADER_BYTES + 2 * Character.BYTES + rows * cols);
+        }
+        keyframeBuffer.clear();
+        keyframeBuffer.put(KEYFRAME);
+        keyframeBuffer.putInt(frameNumber);
+        keyframeBuffer.putChar((char) rows);
+        keyframeBuffer.putChar((char) cols);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                keyframeBuffer.put((byte) lastFrame.get(x, y));
+            }
+        }
+        keyframeBuffer.flip();
+        keyframeUpToDate = true;
+    }
+
+    private void requireFullMapFrames() {
+        if (lastFrame == null) {
+            throw new IllegalStateException("This map is only encoded as view frames");
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,74 @@
+package dungeons.protocol;
+
+public final class TextCommandParser {
+    public static final String RESYNC_COMMAND = "resync";
+    public static final String COMPRESS_COMMAND = "compress";
+    private static final String MOVE_KEYS = "wasd";
+
+    private TextCommandParser() {
+    }
+
+    public static boolean parse(String action, Command command) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action was null");
+        }
+
+        String[] parts = action.split(" ");
+        int len = action.length();
+
+        try {
+            if ("respawn".equals(action)) {
+                command.set(Command.RESPAWN, 0, 0);
+            } else if ("unequip".equals(action)) {
+                command.set(Command.UNEQUIP, 0, 0);
+            } else if (RESYNC_COMMAND.equals(action)) {
+                command.set(Command.RESYNC, 0, 0);
+            } else if (COMPRESS_COMMAND.equals(action)) {
+                command.set(Command.COMPRESS, 0, 0);
+            } else if ("rooms".equals(action)) {
+                command.set(Command.LIST_ROOMS, 0, 0);
+            } else if ("create".equals(action)) {
+                command.set(Command.CREATE_ROOM, 0, 0);
+            } else if (parts[0].equals("login") && parts.length > 1) {
+                command.set(Command.LOGIN, Integer.parseInt(parts[1]), 0);
+            } else if (parts[0].equals("udp") && parts.length > 1) {
+                command.set(Command.UDP_SNAPSHOTS, Integer.parseInt(parts[1]), 0);
+            } else if (parts[0].equals("join") && parts.length > 1) {
+                command.set(Command.JOIN_ROOM, Integer.parseInt(parts[1]), 0);
+            } else if (parts[0].equals("drop") && parts.length > 1) {
+                command.set(Command.DROP, Integer.parseInt(parts[1]), 0);
+            } else if (len == 1 && MOVE_KEYS.indexOf(action.charAt(0)) >= 0) {
+                command.set(Command.MOVE, action.charAt(0), Command.NO_SEQUENCE);
+            } else if (parts[0].equals("attack") && parts.length > 2) {
+                return parseAttack(parts, command);
+            } else if (parts[0].equals("equip") && parts.length > 1) {
+                command.set(Command.EQUIP, Integer.parseInt(parts[1]), 0);
+            } else if (parts[0].equals("trade") && parts.length > 2) {
+                command.set(Command.TRADE, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            } else {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean parseAttack(String[] parts, Command command) {
+        switch (parts[1]) {
+            case "melee" -> command.set(Command.ATTACK_MELEE, Integer.parseInt(parts[2]), 0);
+            case "spell" -> command.set(Command.ATTACK_SPELL, Integer.parseInt(parts[2]), 0);
+            case "monster" -> {
+                // Two spaces in a row leave an empty part.
+                if (parts[2].isEmpty()) {
+                    return false;
+                }
+                command.set(Command.ATTACK_MONSTER, parts[2].charAt(0), 0);
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
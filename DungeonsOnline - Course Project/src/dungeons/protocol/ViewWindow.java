@@ -0,0 +1,125 @@
+package dungeons.protocol;
+
+import dungeons.entities.position.GamePosition;
+
+import java.util.Arrays;
+
+// The part of the map one client sees, together with the cells it was last sent. The window keeps
+// its size and slides along the map edges instead of shrinking, so moving it only changes the origin.
+public class ViewWindow {
+    // Never a map cell, so newly exposed cells always differ from the map and get sent.
+    private static final char UNKNOWN = '\0';
+
+    private final int radius;
+    private final int rows;
+    private final int cols;
+    private final char[][] cells;
+    private int originX;
+    private int originY;
+
+    public ViewWindow(int mapRows, int mapCols, int radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("radius must be positive");
+        }
+        this.radius = radius;
+        rows = Math.min(2 * radius + 1, mapRows);
+        cols = Math.min(2 * radius + 1, mapCols);
+        cells = new char[rows][cols];
+        originX = 0;
+        originY = 0;
+    }
+
+    public static boolean coversMap(int mapRows, int mapCols, int radius) {
+        return radius == 0 || (2 * radius + 1 >= mapRows && 2 * radius + 1 >= mapCols);
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    char[][] getCells() {
+        return cells;
+    }
+
+    // Centers the window on the given position, clamped to the map. A null center keeps the window
+    // where it is. Returns true if the origin moved.
+    public boolean moveTo(GamePosition center, int mapRows, int mapCols) {
+        if (center == null) {
+            return false;
+        }
+        int newOriginX = Math.max(0, Math.min(center.x() - radius, mapCols - cols));
+        int newOriginY = Math.max(0, Math.min(center.y() - radius, mapRows - rows));
+        if (newOriginX == originX && newOriginY == originY) {
+            return false;
+        }
+        shift(cells, newOriginX - originX, newOriginY - originY, UNKNOWN);
+        originX = newOriginX;
+        originY = newOriginY;
+        return true;
+    }
+
+    // Moves the content of a window whose origin moved by (dx, dy) so every cell stays on the same map
+    // position. Cells that scrolled into view are set to fill. The rows are moved in place: the ones that
+    // scrolled out of view come back as the newly exposed ones, so nothing is allocated.
+    public static void shift(char[][] cells, int dx, int dy, char fill) {
+        int rows = cells.length;
+        int cols = cells[0].length;
+        if (Math.abs(dx) >= cols || Math.abs(dy) >= rows) {
+            for (char[] row : cells) {
+                Arrays.fill(row, fill);
+            }
+            return;
+        }
+        rotateRows(cells, dy);
+        int firstKeptRow = Math.max(0, -dy);
+        int lastKeptRow = Math.min(rows, rows - dy) - 1;
+        for (int y = 0; y < rows; y++) {
+            char[] row = cells[y];
+            if (y < firstKeptRow || y > lastKeptRow) {
+                Arrays.fill(row, fill);
+            } else if (dx > 0) {
+                System.arraycopy(row, dx, row, 0, cols - dx);
+                Arrays.fill(row, cols - dx, cols, fill);
+            } else if (dx < 0) {
+                System.arraycopy(row, 0, row, -dx, cols + dx);
+                Arrays.fill(row, 0, -dx, fill);
+            }
+        }
+    }
+
+    // Afterwards row y is the row that was at y + dy, wrapping around.
+    private static void rotateRows(char[][] cells, int dy) {
+        int rows = cells.length;
+        int by = Math.floorMod(dy, rows);
+        if (by == 0) {
+            return;
+        }
+        reverseRows(cells, 0, by);
+        reverseRows(cells, by, rows);
+        reverseRows(cells, 0, rows);
+    }
+
+    private static void reverseRows(char[][] cells, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            char[] row = cells[i];
+            cells[i] = cells[j];
+            cells[j] = row;
+        }
+    }
+}
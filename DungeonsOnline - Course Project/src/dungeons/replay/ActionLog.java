@@ -0,0 +1,110 @@
+package dungeons.replay;
+
+import dungeons.entities.player.Player;
+import dungeons.protocol.Command;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Everything that changed a room's simulation, in the order the room applied it: players joining and
+// leaving and every action that reached the map. Each record starts with the ticks since the previous one,
+// and numbers are written as varints, so a typical action takes five bytes.
+//
+// The log starts with MAGIC, VERSION and the match settings and ends with an END record carrying the
+// final tick. A log cut short by a crash is still read up to its last whole record.
+public class ActionLog implements AutoCloseable {
+    public static final int MAGIC = 0x444C4F47;
+    public static final byte VERSION = 1;
+
+    public static final byte JOIN = 1;
+    public static final byte LEAVE = 2;
+    public static final byte ACTION = 3;
+    public static final byte END = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1_024;
+
+    private final DataOutputStream output;
+    private int lastTick;
+    private boolean closed;
+
+    public ActionLog(OutputStream stream, MatchSettings settings) throws IOException {
+        if (stream == null || settings == null) {
+            throw new IllegalArgumentException("stream or settings was null");
+        }
+        output = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        settings.writeTo(output);
+        lastTick = 0;
+        closed = false;
+    }
+
+    // Call right after the player got its id. A player with a profile is logged with it, since the
+    // profile decides its stats.
+    public void playerJoined(int tick, Player player) throws IOException {
+        writeHeader(tick, JOIN, player.getId());
+        output.writeBoolean(player.hasProfile());
+        if (player.hasProfile()) {
+            player.toProfile().writeTo(output);
+        }
+    }
+
+    // Call before the player gives up its id.
+    public void playerLeft(int tick, Player player) throws IOException {
+        writeHeader(tick, LEAVE, player.getId());
+    }
+
+    public void actionApplied(int tick, Player player, Command command) throws IOException {
+        writeHeader(tick, ACTION, player.getId());
+        output.writeByte(command.getOpcode());
+        writeSignedVarint(command.getFirstOperand());
+        writeSignedVarint(command.getSecondOperand());
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    // The final tick lets a replay run the ticks after the last action too.
+    public void close(int tick) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeHeader(tick, END, 0);
+        } finally {
+            output.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(lastTick);
+    }
+
+    private void writeHeader(int tick, byte kind, int playerId) throws IOException {
+        if (tick < lastTick) {
+            throw new IllegalArgumentException("Ticks must not go back: " + tick + " after " + lastTick);
+        }
+        writeVarint(tick - lastTick);
+        lastTick = tick;
+        output.writeByte(kind);
+        writeVarint(playerId);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    // Zigzag encoding keeps small negative operands short too.
+    private void writeSignedVarint(int value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+}
@@ -0,0 +1,118 @@
+package dungeons.replay;
+
+import dungeons.persistence.PlayerProfile;
+import dungeons.protocol.Command;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads an ActionLog record by record. The fields of the last record read are kept in the reader, so a
+// whole log is read without allocating anything but profiles.
+public class ActionLogReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1_024;
+
+    private final DataInputStream input;
+    private final MatchSettings settings;
+    private byte kind;
+    private int tick;
+    private int playerId;
+    private PlayerProfile profile;
+    private boolean ended;
+
+    public ActionLogReader(InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream was null");
+        }
+        input = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        if (input.readInt() != ActionLog.MAGIC) {
+            throw new IOException("Not an action log");
+        }
+        byte version = input.readByte();
+        if (version != ActionLog.VERSION) {
+            throw new IOException("Unsupported action log version " + version);
+        }
+        settings = MatchSettings.readFrom(input);
+        tick = 0;
+        ended = false;
+    }
+
+    public MatchSettings getSettings() {
+        return settings;
+    }
+
+    // Reads the next record, copying an action into the given holder. Returns false after the END record
+    // or at the end of a log that was cut short.
+    public boolean next(Command command) throws IOException {
+        if (ended) {
+            return false;
+        }
+        try {
+            tick += readVarint();
+            kind = input.readByte();
+            playerId = readVarint();
+            profile = null;
+            switch (kind) {
+                case ActionLog.JOIN -> {
+                    if (input.readBoolean()) {
+                        profile = PlayerProfile.readFrom(input);
+                    }
+                }
+                case ActionLog.ACTION -> command.set(input.readByte(), readSignedVarint(), readSignedVarint());
+                case ActionLog.LEAVE -> {
+                }
+                case ActionLog.END -> {
+                    ended = true;
+                    return false;
+                }
+                default -> throw new IOException("Unknown action log record " + kind);
+            }
+            return true;
+        } catch (EOFException e) {
+            ended = true;
+            return false;
+        }
+    }
+
+    public byte getKind() {
+        return kind;
+    }
+
+    // After next() has returned false this is the last tick of the log.
+    public int getTick() {
+        return tick;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    // The profile a joining player was logged with, or null for a guest.
+    public PlayerProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in action log");
+    }
+
+    private int readSignedVarint() throws IOException {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,47 @@
+package dungeons.replay;
+
+import dungeons.GameMap;
+import dungeons.world.DungeonGenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Everything a dungeon's simulation depends on besides the players' actions. A room and a replay of its
+// action log build their maps from the same settings, so they make the same random choices in the same
+// order. Zero map rows and columns stand for the default map.
+public record MatchSettings(long seed, int mapRows, int mapCols, int monsters, int ticksPerSecond) {
+    private static final int MONSTER_TURNS_PER_SECOND = 2;
+
+    public MatchSettings {
+        if (mapRows < 0 || mapCols < 0 || monsters < 0 || ticksPerSecond < 0) {
+            throw new IllegalArgumentException("Match settings cannot be negative");
+        }
+    }
+
+    public GameMap createMap() {
+        return new GameMap(mapRows > 0 ? DungeonGenerator.generate(mapRows, mapCols, seed) : GameMap.defaultCells(),
+            monsters, seed);
+    }
+
+    public boolean isTickMode() {
+        return ticksPerSecond > 0;
+    }
+
+    // Monsters move at the same pace whatever the tick rate.
+    public int getTicksPerMonsterTurn() {
+        return Math.max(1, ticksPerSecond / MONSTER_TURNS_PER_SECOND);
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeLong(seed);
+        output.writeInt(mapRows);
+        output.writeInt(mapCols);
+        output.writeInt(monsters);
+        output.writeInt(ticksPerSecond);
+    }
+
+    public static MatchSettings readFrom(DataInput input) throws IOException {
+        return new MatchSettings(input.readLong(), input.readInt(), input.readInt(), input.readInt(), input.readInt());
+    }
+}
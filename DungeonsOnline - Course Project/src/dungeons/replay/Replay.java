@@ -0,0 +1,140 @@
+package dungeons.replay;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.protocol.Command;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Runs a recorded match again without clients or clocks: every tick between two records is run at once,
+// in the same steps a room takes - actions, then the monsters' turn, then the frame. The players get the
+// same ids back, so a replay that gives a different one has diverged and stops.
+public class Replay {
+    private static final int INITIAL_PLAYER_TABLE_SIZE = 16;
+
+    private final MatchSettings settings;
+    private final GameMap gameMap;
+    private final Command command;
+    private Player[] players;
+    private int tick;
+    private int ticksUntilMonsterTurn;
+    private long actionCount;
+
+    public Replay(MatchSettings settings) {
+        if (settings == null) {
+            throw new IllegalArgumentException("settings was null");
+        }
+        this.settings = settings;
+        gameMap = settings.createMap();
+        command = new Command();
+        players = new Player[INITIAL_PLAYER_TABLE_SIZE];
+        tick = 0;
+        ticksUntilMonsterTurn = settings.getTicksPerMonsterTurn();
+        actionCount = 0;
+    }
+
+    // Replays everything left in the log, which must have been recorded with this replay's settings.
+    public void run(ActionLogReader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader was null");
+        }
+        while (reader.next(command)) {
+            runTicksUntil(reader.getTick());
+            Player player;
+            switch (reader.getKind()) {
+                case ActionLog.JOIN -> join(reader.getPlayerId(), reader);
+                case ActionLog.LEAVE -> {
+                    player = getPlayer(reader.getPlayerId());
+                    gameMap.disconnectPlayer(player);
+                    players[reader.getPlayerId()] = null;
+                }
+                case ActionLog.ACTION -> {
+                    player = getPlayer(reader.getPlayerId());
+                    gameMap.handleCommand(player, command.getOpcode(), command.getFirstOperand(),
+                        command.getSecondOperand());
+                    actionCount++;
+                }
+                default -> throw new IllegalStateException("Unexpected record " + reader.getKind());
+            }
+        }
+        runTicksUntil(reader.getTick());
+    }
+
+    public GameMap getGameMap() {
+        return gameMap;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public long getActionCount() {
+        return actionCount;
+    }
+
+    // Sums up the map and every player's state, so two runs of one log can be compared in a single number.
+    public static long checksum(GameMap gameMap) {
+        if (gameMap == null) {
+            throw new IllegalArgumentException("gameMap was null");
+        }
+        CRC32 crc = new CRC32();
+        for (int y = 0; y < gameMap.getRows(); y++) {
+            for (int x = 0; x < gameMap.getCols(); x++) {
+                crc.update(gameMap.getCell(x, y));
+            }
+        }
+        for (Player player : gameMap.getPlayers()) {
+            GamePosition gamePosition = player.getGamePosition();
+            crc.update(player.getId());
+            crc.update(gamePosition.x());
+            crc.update(gamePosition.y());
+            crc.update(player.getLevel());
+            crc.update(player.getCurrHealth());
+            crc.update(player.getInventory().getTreasures().size());
+        }
+        return crc.getValue();
+    }
+
+    private void join(int id, ActionLogReader reader) {
+        Player player = new Player();
+        if (reader.getProfile() != null) {
+            player.loadProfile(reader.getProfile());
+        }
+        try {
+            gameMap.connectPlayer(player);
+        } catch (PlayerCharAlreadyExistsException e) {
+            throw new IllegalStateException("A new player was already connected", e);
+        }
+        if (player.getId() != id) {
+            throw new IllegalStateException("Replay diverged at tick " + tick + ": player " + id +
+                " joined as " + player.getId());
+        }
+        if (id >= players.length) {
+            players = Arrays.copyOf(players, Math.max(id + 1, players.length * 2));
+        }
+        players[id] = player;
+    }
+
+    private Player getPlayer(int id) {
+        Player player = id < players.length ? players[id] : null;
+        if (player == null) {
+            throw new IllegalStateException("Replay diverged at tick " + tick + ": no player " + id);
+        }
+        return player;
+    }
+
+    private void runTicksUntil(int targetTick) {
+        while (tick < targetTick) {
+            if (settings.isTickMode() && --ticksUntilMonsterTurn == 0) {
+                gameMap.moveMonsters();
+                ticksUntilMonsterTurn = settings.getTicksPerMonsterTurn();
+            }
+            gameMap.nextFrame();
+            tick++;
+        }
+    }
+}
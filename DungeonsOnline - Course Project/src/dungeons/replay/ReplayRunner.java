@@ -0,0 +1,47 @@
+package dungeons.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Replays an action log written with --record as fast as it goes, any number of times:
+//   java dungeons.replay.ReplayRunner <log> [--repeat=N]
+// Every run prints its speed and the checksum of the final state. A build that gives a different checksum
+// for the same log changed how the game plays; one that runs faster got faster on real traffic.
+public class ReplayRunner {
+    private static final String REPEAT_OPTION = "--repeat=";
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private ReplayRunner() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: ReplayRunner <log> [" + REPEAT_OPTION + "N]");
+        }
+        Path log = Path.of(args[0]);
+        int repeat = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(REPEAT_OPTION)) {
+                repeat = Integer.parseInt(args[i].substring(REPEAT_OPTION.length()));
+            } else {
+                throw new IllegalArgumentException("Unknown replay option: " + args[i]);
+            }
+        }
+
+        for (int run = 1; run <= repeat; run++) {
+            try (InputStream stream = Files.newInputStream(log); ActionLogReader reader = new ActionLogReader(stream)) {
+                Replay replay = new Replay(reader.getSettings());
+                long start = System.nanoTime();
+                replay.run(reader);
+                double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+                System.out.printf(Locale.ROOT,
+                    "run %d: %d ticks, %d actions in %.3fs (%.0f ticks/s, %.0f actions/s) checksum=%08x%n",
+                    run, replay.getTick(), replay.getActionCount(), seconds, replay.getTick() / seconds,
+                    replay.getActionCount() / seconds, Replay.checksum(replay.getGameMap()));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package dungeons.server;
+
+import dungeons.protocol.Command;
+import dungeons.protocol.CommandDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// One client served by two threads doing blocking IO: a reader that decodes commands and passes them to
+// the listener, and a writer that drains the frames queued by the game thread. Neither thread takes a
+// lock, so with virtual threads a blocked client costs a parked continuation instead of a carrier thread.
+public class BlockingConnection {
+    private static final int MAX_QUEUED_BYTES = 64 * 1_024;
+
+    private final SocketChannel channel;
+    private final ClientSession session;
+    private final ConnectionListener listener;
+    private final CommandDecoder commandDecoder;
+    private final Queue<ByteBuffer> outboundFrames;
+    private final AtomicInteger queuedBytes;
+    private final AtomicBoolean closed;
+    private Thread writer;
+
+    public BlockingConnection(SocketChannel channel, ClientSession session, ConnectionListener listener,
+                              boolean textCommands) {
+        if (channel == null || session == null || listener == null) {
+            throw new IllegalArgumentException("channel, session or listener was null");
+        }
+        this.channel = channel;
+        this.session = session;
+        this.listener = listener;
+        commandDecoder = new CommandDecoder(textCommands);
+        outboundFrames = new ConcurrentLinkedQueue<>();
+        queuedBytes = new AtomicInteger();
+        closed = new AtomicBoolean();
+    }
+
+    // The channel must no longer be registered with any selector.
+    public void start() throws IOException {
+        channel.configureBlocking(true);
+        session.transferPendingFrames(this);
+        String name = "client-" + session.getPlayer().getId();
+        writer = ConnectionThreads.start(name + "-writer", this::writeLoop);
+        ConnectionThreads.start(name + "-reader", this::readLoop);
+    }
+
+    // Called by the game thread only.
+    public void send(ByteBuffer frame) {
+        if (closed.get()) {
+            session.releaseFrame(frame);
+            return;
+        }
+        queuedBytes.addAndGet(frame.remaining());
+        outboundFrames.add(frame);
+        LockSupport.unpark(writer);
+    }
+
+    public boolean isBackedUp() {
+        return queuedBytes.get() > MAX_QUEUED_BYTES;
+    }
+
+    // Called by the game thread only. The frame the writer is busy with has already left the queue, so
+    // only frames the client has not started receiving are dropped, like ClientSession.dropPendingFrames.
+    public void dropPendingFrames() {
+        long dropped = 0;
+        ByteBuffer frame;
+        while ((frame = outboundFrames.poll()) != null) {
+            dropped += frame.remaining();
+            session.releaseFrame(frame);
+        }
+        queuedBytes.addAndGet((int) -dropped);
+        session.recordDropped(dropped);
+        session.requestKeyframe();
+    }
+
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to do with a channel that cannot even be closed.
+            }
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer buffer = session.getInputBuffer();
+        Command command = new Command();
+        try {
+            // The lobby may have read the first commands already.
+            do {
+                buffer.flip();
+                while (commandDecoder.next(buffer, command)) {
+                    listener.commandReceived(session, command);
+                }
+                buffer.compact();
+            } while (channel.read(buffer) >= 0);
+        } catch (IOException e) {
+            // Closed by the writer, by close() or by the client - handled the same way below.
+        } finally {
+            close();
+            listener.connectionClosed(session);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed.get()) {
+                ByteBuffer frame = outboundFrames.poll();
+                if (frame == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                int bytes = frame.remaining();
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+                queuedBytes.addAndGet(-bytes);
+                session.recordWritten(bytes);
+                session.releaseFrame(frame);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package dungeons.server;
+
+import dungeons.entities.player.Player;
+import dungeons.metrics.ServerMetrics;
+import dungeons.protocol.FramePool;
+import dungeons.protocol.FrameReader;
+import dungeons.protocol.ViewWindow;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class ClientSession {
+    private static final int NO_FRAME = -1;
+    private static final int INPUT_BUFFER_SIZE = 1_024;
+    private static final int MAX_QUEUED_BYTES = 64 * 1_024;
+
+    private Player player;
+    private final ByteBuffer inputBuffer;
+    private final Deque<ByteBuffer> outboundFrames;
+    private int queuedBytes;
+    // Written by the thread that owns the connection, volatile so the admin endpoint can read them.
+    private volatile long writtenBytes;
+    private volatile long droppedBytes;
+    private volatile long datagramBytes;
+    private boolean writeFailed;
+    private int lastAcknowledgedFrame;
+    private ViewWindow viewWindow;
+    private int profileId;
+    private ServerMetrics metrics;
+    private BlockingConnection connection;
+    private FramePool framePool;
+    private boolean compressedKeyframes;
+    private DatagramChannel datagramChannel;
+    private InetSocketAddress datagramAddress;
+
+    // Connections start in the lobby without a player; one is assigned when they join a dungeon.
+    public ClientSession() {
+        inputBuffer = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+        outboundFrames = new ArrayDeque<>();
+        queuedBytes = 0;
+        writtenBytes = 0;
+        droppedBytes = 0;
+        writeFailed = false;
+        lastAcknowledgedFrame = NO_FRAME;
+        viewWindow = null;
+        profileId = Player.NO_PROFILE;
+        metrics = null;
+        connection = null;
+        framePool = null;
+        compressedKeyframes = false;
+        datagramChannel = null;
+        datagramAddress = null;
+    }
+
+    public ClientSession(Player player) {
+        this();
+        setPlayer(player);
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public void setPlayer(Player player) {
+        if (player == null) {
+            throw new IllegalArgumentException("player was null");
+        }
+        this.player = player;
+    }
+
+    public ByteBuffer getInputBuffer() {
+        return inputBuffer;
+    }
+
+    // The profile the client logged in with in the lobby, NO_PROFILE for guests.
+    public int getProfileId() {
+        return profileId;
+    }
+
+    public void setProfileId(int profileId) {
+        this.profileId = profileId;
+    }
+
+    // Null when the traffic of this client is not counted towards the server totals.
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Null unless the client is served by its own threads instead of a selector.
+    public BlockingConnection getConnection() {
+        return connection;
+    }
+
+    public void setConnection(BlockingConnection connection) {
+        this.connection = connection;
+    }
+
+    // Where written and dropped frames go back to. Null leaves them to the garbage collector.
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
+    // Called once a frame will not be read again, by whichever thread wrote or dropped it.
+    public void releaseFrame(ByteBuffer frame) {
+        if (framePool != null) {
+            framePool.release(frame);
+        }
+    }
+
+    // Set when the client asked for compressed keyframes before joining a room.
+    public boolean wantsCompressedKeyframes() {
+        return compressedKeyframes;
+    }
+
+    public void setCompressedKeyframes(boolean compressedKeyframes) {
+        this.compressedKeyframes = compressedKeyframes;
+    }
+
+    // Game frames that fit go to the given address as datagrams from then on; commands, messages and
+    // larger frames stay on the connection.
+    public void setDatagramTarget(DatagramChannel datagramChannel, InetSocketAddress datagramAddress) {
+        if (datagramChannel == null || datagramAddress == null) {
+            throw new IllegalArgumentException("datagramChannel or datagramAddress was null");
+        }
+        this.datagramChannel = datagramChannel;
+        this.datagramAddress = datagramAddress;
+    }
+
+    public boolean usesDatagrams() {
+        return datagramAddress != null;
+    }
+
+    // Sends a game frame as one datagram, unless the client did not ask for datagrams or the frame is too
+    // large. Returns false when the frame has to be sent over the connection instead. Clients on datagrams
+    // only get keyframes, so a datagram the socket has no room for is simply dropped, and one that
+    // overtakes frames still on the connection makes them stale without breaking the client's map.
+    public boolean sendDatagram(ByteBuffer frame) {
+        if (datagramAddress == null || frame.remaining() > FrameReader.MAX_DATAGRAM_BYTES) {
+            return false;
+        }
+        int length = frame.remaining();
+        int sent;
+        try {
+            sent = datagramChannel.send(frame, datagramAddress);
+        } catch (IOException e) {
+            sent = 0;
+        }
+        if (sent == 0) {
+            recordDropped(length);
+        } else {
+            datagramBytes += sent;
+            if (metrics != null) {
+                metrics.bytesWritten(sent);
+            }
+        }
+        releaseFrame(frame);
+        return true;
+    }
+
+    // Null while the client receives the whole map.
+    public ViewWindow getViewWindow() {
+        return viewWindow;
+    }
+
+    // The client cannot patch its map across a window change, so it gets a keyframe next.
+    public void setViewWindow(ViewWindow viewWindow) {
+        this.viewWindow = viewWindow;
+        requestKeyframe();
+    }
+
+    public int getLastAcknowledgedFrame() {
+        return lastAcknowledgedFrame;
+    }
+
+    // Queued frames are delivered in order over TCP unless dropped, so queuing a frame counts as acknowledging it.
+    public void acknowledgeFrame(int frameNumber) {
+        lastAcknowledgedFrame = frameNumber;
+    }
+
+    public void requestKeyframe() {
+        lastAcknowledgedFrame = NO_FRAME;
+    }
+
+    public boolean needsKeyframe(int frameNumber) {
+        return lastAcknowledgedFrame == NO_FRAME || lastAcknowledgedFrame != frameNumber - 1;
+    }
+
+    public boolean isBackedUp() {
+        return queuedBytes > MAX_QUEUED_BYTES;
+    }
+
+    public int getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    // Written by the game thread, which sends the datagrams whichever way the connection is served.
+    public long getDatagramBytes() {
+        return datagramBytes;
+    }
+
+    // Drops every frame the client has not started receiving yet. The next frame has to be a keyframe
+    // because the dropped deltas will never arrive.
+    public void dropPendingFrames() {
+        ByteBuffer partiallyWritten = outboundFrames.peekFirst();
+        if (partiallyWritten != null && partiallyWritten.position() == 0) {
+            partiallyWritten = null;
+        }
+
+        long dropped = 0;
+        for (ByteBuffer frame : outboundFrames) {
+            if (frame != partiallyWritten) {
+                dropped += frame.remaining();
+                releaseFrame(frame);
+            }
+        }
+        queuedBytes -= (int) dropped;
+        recordDropped(dropped);
+        outboundFrames.clear();
+        if (partiallyWritten != null) {
+            outboundFrames.add(partiallyWritten);
+        }
+        requestKeyframe();
+    }
+
+    // Hands the frames the lobby could not write yet to a connection with a writer thread of its own.
+    public void transferPendingFrames(BlockingConnection connection) {
+        ByteBuffer frame;
+        while ((frame = outboundFrames.pollFirst()) != null) {
+            connection.send(frame);
+        }
+        queuedBytes = 0;
+    }
+
+    public void send(SelectionKey key, ByteBuffer frame) {
+        if (writeFailed) {
+            return;
+        }
+        outboundFrames.addLast(frame);
+        queuedBytes += frame.remaining();
+        flush(key);
+    }
+
+    // A failed write is not handled here - the following read on the same channel fails too
+    // and the server disconnects the client from there.
+    public void flush(SelectionKey key) {
+        if (writeFailed || !key.isValid()) {
+            return;
+        }
+
+        try {
+            SocketChannel channel = (SocketChannel) key.channel();
+            ByteBuffer frame;
+            int written = 0;
+            while ((frame = outboundFrames.peekFirst()) != null) {
+                written += channel.write(frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                releaseFrame(outboundFrames.pollFirst());
+            }
+            queuedBytes -= written;
+            recordWritten(written);
+        } catch (IOException e) {
+            writeFailed = true;
+            for (ByteBuffer frame : outboundFrames) {
+                releaseFrame(frame);
+            }
+            outboundFrames.clear();
+            queuedBytes = 0;
+        }
+
+        int interestOps = outboundFrames.isEmpty() ?
+            SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (key.interestOps() != interestOps) {
+            key.interestOps(interestOps);
+        }
+    }
+
+    // Each is called by one thread only: the thread writing to the client, and the thread dropping its
+    // frames. That is the same thread unless the connection has a writer thread of its own.
+    public void recordWritten(long bytes) {
+        writtenBytes += bytes;
+        if (metrics != null) {
+            metrics.bytesWritten(bytes);
+        }
+    }
+
+    public void recordDropped(long bytes) {
+        droppedBytes += bytes;
+        if (metrics != null) {
+            metrics.bytesDropped(bytes);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package dungeons.server;
+
+import dungeons.entities.player.Player;
+import dungeons.protocol.Command;
+
+import java.util.Arrays;
+
+// Commands in arrival order. With a limit on actions per tick, a player's commands beyond it wait for
+// the next tick behind everyone else's, and a player cannot queue more than a few ticks' worth, so one
+// spamming client can neither starve the others nor make the tick run long.
+public class CommandQueue {
+    public static final int UNLIMITED = 0;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_PLAYER_TABLE_SIZE = 16;
+    private static final int BACKLOG_TICKS = 4;
+
+    private final int maxActionsPerTick;
+    private Player[] players;
+    private byte[] opcodes;
+    private int[] firstOperands;
+    private int[] secondOperands;
+    private int head;
+    private int size;
+
+    // Indexed by player id, which stays small because ids are reused.
+    private int[] queuedCounts;
+    private int[] tickCounts;
+    private int[] tickStamps;
+    private int tickStamp;
+    private int unexamined;
+
+    public CommandQueue() {
+        this(UNLIMITED);
+    }
+
+    public CommandQueue(int maxActionsPerTick) {
+        if (maxActionsPerTick < 0) {
+            throw new IllegalArgumentException("maxActionsPerTick cannot be negative");
+        }
+        this.maxActionsPerTick = maxActionsPerTick;
+        players = new Player[INITIAL_CAPACITY];
+        opcodes = new byte[INITIAL_CAPACITY];
+        firstOperands = new int[INITIAL_CAPACITY];
+        secondOperands = new int[INITIAL_CAPACITY];
+        head = 0;
+        size = 0;
+        queuedCounts = new int[INITIAL_PLAYER_TABLE_SIZE];
+        tickCounts = new int[INITIAL_PLAYER_TABLE_SIZE];
+        tickStamps = new int[INITIAL_PLAYER_TABLE_SIZE];
+        tickStamp = 0;
+        unexamined = 0;
+    }
+
+    // Returns false if the command was dropped because its player already has a full backlog.
+    public boolean add(Player player, Command command) {
+        if (player == null) {
+            throw new IllegalArgumentException("player was null");
+        }
+        if (isLimited()) {
+            int id = player.getId();
+            if (id == Player.NO_ID) {
+                return false;
+            }
+            ensurePlayerCapacity(id);
+            if (queuedCounts[id] >= maxActionsPerTick * BACKLOG_TICKS) {
+                return false;
+            }
+            queuedCounts[id]++;
+        }
+        append(player, command.getOpcode(), command.getFirstOperand(), command.getSecondOperand());
+        return true;
+    }
+
+    // Starts a tick. With a limit, poll() then returns only commands queued before this call and at most
+    // maxActionsPerTick of them per player.
+    public void beginTick() {
+        tickStamp++;
+        unexamined = size;
+    }
+
+    // Returns the player who issued the next command and copies the command into the given holder,
+    // or null when nothing more can be applied this tick.
+    public Player poll(Command command) {
+        while (size > 0 && (!isLimited() || unexamined > 0)) {
+            Player player = players[head];
+            byte opcode = opcodes[head];
+            int firstOperand = firstOperands[head];
+            int secondOperand = secondOperands[head];
+            players[head] = null;
+            head = (head + 1) % players.length;
+            size--;
+            if (player == null) {
+                unexamined--;
+                continue;
+            }
+            if (isLimited()) {
+                unexamined--;
+                int id = player.getId();
+                if (tickStamps[id] != tickStamp) {
+                    tickStamps[id] = tickStamp;
+                    tickCounts[id] = 0;
+                }
+                if (tickCounts[id] == maxActionsPerTick) {
+                    // Behind every command still to be examined, so the player's own order is kept.
+                    append(player, opcode, firstOperand, secondOperand);
+                    continue;
+                }
+                tickCounts[id]++;
+                queuedCounts[id]--;
+            }
+            command.set(opcode, firstOperand, secondOperand);
+            return player;
+        }
+        return null;
+    }
+
+    // Called before the player leaves the map, while it still has its id.
+    public void removePlayer(Player player) {
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % players.length;
+            if (players[index] == player) {
+                players[index] = null;
+            }
+        }
+        int id = player.getId();
+        if (id != Player.NO_ID && id < queuedCounts.length) {
+            queuedCounts[id] = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private boolean isLimited() {
+        return maxActionsPerTick != UNLIMITED;
+    }
+
+    private void append(Player player, byte opcode, int firstOperand, int secondOperand) {
+        if (size == players.length) {
+            grow();
+        }
+        int tail = (head + size) % players.length;
+        players[tail] = player;
+        opcodes[tail] = opcode;
+        firstOperands[tail] = firstOperand;
+        secondOperands[tail] = secondOperand;
+        size++;
+    }
+
+    private void ensurePlayerCapacity(int id) {
+        if (id >= queuedCounts.length) {
+            int newSize = Math.max(id + 1, queuedCounts.length * 2);
+            queuedCounts = Arrays.copyOf(queuedCounts, newSize);
+            tickCounts = Arrays.copyOf(tickCounts, newSize);
+            tickStamps = Arrays.copyOf(tickStamps, newSize);
+        }
+    }
+
+    private void grow() {
+        int newCapacity = players.length * 2;
+        Player[] newPlayers = new Player[newCapacity];
+        byte[] newOpcodes = new byte[newCapacity];
+        int[] newFirstOperands = new int[newCapacity];
+        int[] newSecondOperands = new int[newCapacity];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % players.length;
+            newPlayers[i] = players[index];
+            newOpcodes[i] = opcodes[index];
+            newFirstOperands[i] = firstOperands[index];
+            newSecondOperands[i] = secondOperands[index];
+        }
+        players = newPlayers;
+        opcodes = newOpcodes;
+        firstOperands = newFirstOperands;
+        secondOperands = newSecondOperands;
+        head = 0;
+    }
+}
@@ -0,0 +1,12 @@
+package dungeons.server;
+
+import dungeons.protocol.Command;
+
+// Called from a connection's reader thread. Implementations hand the work over to the game thread.
+public interface ConnectionListener {
+    // The command is reused for the next read, so it has to be copied before this returns.
+    void commandReceived(ClientSession session, Command command);
+
+    // Called once, after which the session gets no more commands.
+    void connectionClosed(ClientSession session);
+}
@@ -0,0 +1,54 @@
+package dungeons.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+// Starts the threads that serve one connection each. On Java 21 and later these are virtual threads, found
+// through reflection so the server still builds and runs on 17, where it falls back to platform threads.
+public final class ConnectionThreads {
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Class<?> BUILDER = findBuilder();
+    private static final Method NAME = BUILDER == null ? null : findMethod(BUILDER, "name", String.class);
+    private static final Method START = BUILDER == null ? null : findMethod(BUILDER, "start", Runnable.class);
+
+    private ConnectionThreads() {
+    }
+
+    public static boolean isVirtual() {
+        return OF_VIRTUAL != null && NAME != null && START != null;
+    }
+
+    public static Thread start(String name, Runnable task) {
+        if (name == null || task == null) {
+            throw new IllegalArgumentException("name or task was null");
+        }
+        if (isVirtual()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) START.invoke(builder, task);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Could not start a virtual thread", e);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static Class<?> findBuilder() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package dungeons.server;
+
+import java.nio.file.Path;
+
+public class ServerOptions {
+    private static final String TICK_RATE_OPTION = "--tick-rate=";
+    private static final String TEXT_COMMANDS_OPTION = "--text-commands";
+    private static final String REGIONS_OPTION = "--regions=";
+    private static final String REGIONS_SEPARATOR = "x";
+    private static final String ROOMS_OPTION = "--rooms=";
+    private static final String VIEW_RADIUS_OPTION = "--view-radius=";
+    private static final String MAP_SIZE_OPTION = "--map-size=";
+    private static final String SEED_OPTION = "--seed=";
+    private static final String DATA_DIR_OPTION = "--data-dir=";
+    private static final String ADMIN_PORT_OPTION = "--admin-port=";
+    private static final String THREAD_PER_CONNECTION_OPTION = "--thread-per-connection";
+    private static final String MONSTERS_OPTION = "--monsters=";
+    private static final String MAX_ACTIONS_PER_TICK_OPTION = "--max-actions-per-tick=";
+    private static final String RECORD_OPTION = "--record=";
+
+    private static final int DEFAULT_TICKS_PER_SECOND = 20;
+    private static final int DEFAULT_ADMIN_PORT = 7778;
+    private static final int MAX_PORT = 65_535;
+    private static final int DEFAULT_MONSTERS = 5;
+    private static final int DEFAULT_MAX_ACTIONS_PER_TICK = 4;
+
+    private int ticksPerSecond;
+    private boolean textCommands;
+    private int regionRows;
+    private int regionCols;
+    private int initialRooms;
+    private int viewRadius;
+    private int mapRows;
+    private int mapCols;
+    private long seed;
+    private Path dataDirectory;
+    private int adminPort;
+    private boolean threadPerConnection;
+    private int monsters;
+    private int maxActionsPerTick;
+    private Path recordDirectory;
+
+    public ServerOptions() {
+        ticksPerSecond = DEFAULT_TICKS_PER_SECOND;
+        textCommands = false;
+        regionRows = 1;
+        regionCols = 1;
+        initialRooms = 1;
+        viewRadius = 0;
+        mapRows = 0;
+        mapCols = 0;
+        seed = System.currentTimeMillis();
+        dataDirectory = null;
+        adminPort = DEFAULT_ADMIN_PORT;
+        threadPerConnection = false;
+        monsters = DEFAULT_MONSTERS;
+        maxActionsPerTick = DEFAULT_MAX_ACTIONS_PER_TICK;
+        recordDirectory = null;
+    }
+
+    public static ServerOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("args was null");
+        }
+
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            if (arg.startsWith(TICK_RATE_OPTION)) {
+                options.setTicksPerSecond(Integer.parseInt(arg.substring(TICK_RATE_OPTION.length())));
+            } else if (arg.equals(TEXT_COMMANDS_OPTION)) {
+                options.setTextCommands(true);
+            } else if (arg.startsWith(REGIONS_OPTION)) {
+                String[] dimensions = arg.substring(REGIONS_OPTION.length()).split(REGIONS_SEPARATOR);
+                if (dimensions.length != 2) {
+                    throw new IllegalArgumentException("Regions should be given as <rows>x<cols>: " + arg);
+                }
+                options.setRegions(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+            } else if (arg.startsWith(MAP_SIZE_OPTION)) {
+                String[] dimensions = arg.substring(MAP_SIZE_OPTION.length()).split(REGIONS_SEPARATOR);
+                if (dimensions.length != 2) {
+                    throw new IllegalArgumentException("Map size should be given as <rows>x<cols>: " + arg);
+                }
+                options.setMapSize(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+            } else if (arg.startsWith(SEED_OPTION)) {
+                options.setSeed(Long.parseLong(arg.substring(SEED_OPTION.length())));
+            } else if (arg.startsWith(DATA_DIR_OPTION)) {
+                options.setDataDirectory(Path.of(arg.substring(DATA_DIR_OPTION.length())));
+            } else if (arg.equals(THREAD_PER_CONNECTION_OPTION)) {
+                options.setThreadPerConnection(true);
+            } else if (arg.startsWith(ADMIN_PORT_OPTION)) {
+                options.setAdminPort(Integer.parseInt(arg.substring(ADMIN_PORT_OPTION.length())));
+            } else if (arg.startsWith(MONSTERS_OPTION)) {
+                options.setMonsters(Integer.parseInt(arg.substring(MONSTERS_OPTION.length())));
+            } else if (arg.startsWith(RECORD_OPTION)) {
+                options.setRecordDirectory(Path.of(arg.substring(RECORD_OPTION.length())));
+            } else if (arg.startsWith(MAX_ACTIONS_PER_TICK_OPTION)) {
+                options.setMaxActionsPerTick(Integer.parseInt(arg.substring(MAX_ACTIONS_PER_TICK_OPTION.length())));
+            } else if (arg.startsWith(ROOMS_OPTION)) {
+                options.setInitialRooms(Integer.parseInt(arg.substring(ROOMS_OPTION.length())));
+            } else if (arg.startsWith(VIEW_RADIUS_OPTION)) {
+                options.setViewRadius(Integer.parseInt(arg.substring(VIEW_RADIUS_OPTION.length())));
+            } else {
+                throw new IllegalArgumentException("Unknown server option: " + arg);
+            }
+        }
+        // Regions apply actions on several threads at once, in an order no log could repeat.
+        if (options.getRecordDirectory() != null && options.isRegionSharded()) {
+            throw new IllegalArgumentException("Matches played with regions cannot be recorded");
+        }
+        return options;
+    }
+
+    // 0 ticks per second applies every action and broadcasts as soon as it is read.
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public void setTicksPerSecond(int ticksPerSecond) {
+        if (ticksPerSecond < 0) {
+            throw new IllegalArgumentException("ticksPerSecond cannot be negative");
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    // Accept the plain text commands sent by older clients next to the binary protocol.
+    public boolean isTextCommands() {
+        return textCommands;
+    }
+
+    public void setTextCommands(boolean textCommands) {
+        this.textCommands = textCommands;
+    }
+
+    // The map is split into regionRows x regionCols regions simulated in parallel. 1x1 keeps the whole
+    // simulation on the selector thread.
+    public int getRegionRows() {
+        return regionRows;
+    }
+
+    public int getRegionCols() {
+        return regionCols;
+    }
+
+    public boolean isRegionSharded() {
+        return regionRows * regionCols > 1;
+    }
+
+    public void setRegions(int regionRows, int regionCols) {
+        if (regionRows <= 0 || regionCols <= 0) {
+            throw new IllegalArgumentException("Region counts must be positive");
+        }
+        this.regionRows = regionRows;
+        this.regionCols = regionCols;
+    }
+
+    // Dungeons opened at startup. Clients can create more from the lobby.
+    public int getInitialRooms() {
+        return initialRooms;
+    }
+
+    public void setInitialRooms(int initialRooms) {
+        if (initialRooms <= 0) {
+            throw new IllegalArgumentException("There must be at least one room");
+        }
+        this.initialRooms = initialRooms;
+    }
+
+    // View radius given to every new player. 0 sends the whole map.
+    public int getViewRadius() {
+        return viewRadius;
+    }
+
+    public void setViewRadius(int viewRadius) {
+        if (viewRadius < 0) {
+            throw new IllegalArgumentException("viewRadius cannot be negative");
+        }
+        this.viewRadius = viewRadius;
+    }
+
+    // A size of 0x0 keeps the built-in map; anything else generates a dungeon of that size.
+    public boolean isGeneratedMap() {
+        return mapRows > 0;
+    }
+
+    public int getMapRows() {
+        return mapRows;
+    }
+
+    public int getMapCols() {
+        return mapCols;
+    }
+
+    public void setMapSize(int mapRows, int mapCols) {
+        if (mapRows <= 0 || mapCols <= 0) {
+            throw new IllegalArgumentException("Map dimensions must be positive");
+        }
+        this.mapRows = mapRows;
+        this.mapCols = mapCols;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Where player profiles are kept. Null keeps every player a guest.
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public void setDataDirectory(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    // Localhost port of the plain-text statistics endpoint. 0 turns it off.
+    public int getAdminPort() {
+        return adminPort;
+    }
+
+    public void setAdminPort(int adminPort) {
+        if (adminPort < 0 || adminPort > MAX_PORT) {
+            throw new IllegalArgumentException("adminPort must be between 0 and " + MAX_PORT);
+        }
+        this.adminPort = adminPort;
+    }
+
+    // Serve every player in a dungeon with blocking reads and writes on threads of its own, virtual where
+    // the JVM has them, instead of the dungeon's selector. The lobby always runs on the selector.
+    public boolean isThreadPerConnection() {
+        return threadPerConnection;
+    }
+
+    public void setThreadPerConnection(boolean threadPerConnection) {
+        this.threadPerConnection = threadPerConnection;
+    }
+
+    // Monsters kept alive in every dungeon. They chase players only when the server runs in ticks.
+    public int getMonsters() {
+        return monsters;
+    }
+
+    public void setMonsters(int monsters) {
+        if (monsters < 0) {
+            throw new IllegalArgumentException("monsters cannot be negative");
+        }
+        this.monsters = monsters;
+    }
+
+    // Actions a player gets applied per tick; the rest wait for later ticks, up to a few ticks' worth.
+    // 0 lets players act as often as they send. Without ticks every action is applied as it is read.
+    public int getMaxActionsPerTick() {
+        return maxActionsPerTick;
+    }
+
+    public void setMaxActionsPerTick(int maxActionsPerTick) {
+        if (maxActionsPerTick < 0) {
+            throw new IllegalArgumentException("maxActionsPerTick cannot be negative");
+        }
+        this.maxActionsPerTick = maxActionsPerTick;
+    }
+
+    // Where every room writes the log of its match, to be replayed with ReplayRunner. Null records nothing.
+    public Path getRecordDirectory() {
+        return recordDirectory;
+    }
+
+    public void setRecordDirectory(Path recordDirectory) {
+        this.recordDirectory = recordDirectory;
+    }
+}
@@ -0,0 +1,102 @@
+package dungeons.server;
+
+import java.util.function.LongSupplier;
+
+public class TickLoop {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final int ticksPerSecond;
+    private final long tickPeriodNanos;
+    private final LongSupplier clock;
+    private long nextTickNanos;
+
+    // Written by the tick thread only, volatile so monitoring threads see current values.
+    private volatile long tickCount;
+    private volatile long overrunCount;
+    private volatile long lastTickDurationNanos;
+    private volatile long maxTickDurationNanos;
+    private volatile long totalTickDurationNanos;
+
+    public TickLoop(int ticksPerSecond) {
+        this(ticksPerSecond, System::nanoTime);
+    }
+
+    // The clock returns nanoseconds the way System.nanoTime() does; tests pass one they control.
+    TickLoop(int ticksPerSecond, LongSupplier clock) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("ticksPerSecond must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("clock was null");
+        }
+        this.ticksPerSecond = ticksPerSecond;
+        this.clock = clock;
+        tickPeriodNanos = NANOS_PER_SECOND / ticksPerSecond;
+        nextTickNanos = clock.getAsLong();
+    }
+
+    public boolean isTickDue() {
+        return clock.getAsLong() - nextTickNanos >= 0;
+    }
+
+    public long millisUntilNextTick() {
+        long remaining = nextTickNanos - clock.getAsLong();
+        if (remaining <= 0) {
+            return 0;
+        }
+        return (remaining + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI;
+    }
+
+    public long beginTick() {
+        return clock.getAsLong();
+    }
+
+    public void endTick(long tickStartNanos) {
+        long now = clock.getAsLong();
+        long duration = now - tickStartNanos;
+
+        tickCount++;
+        lastTickDurationNanos = duration;
+        totalTickDurationNanos += duration;
+        maxTickDurationNanos = Math.max(maxTickDurationNanos, duration);
+
+        nextTickNanos += tickPeriodNanos;
+        if (now - nextTickNanos >= 0) {
+            // The tick took longer than its period - skip the missed ticks instead of trying to catch up.
+            overrunCount++;
+            nextTickNanos = now + tickPeriodNanos;
+        }
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getLastTickDurationNanos() {
+        return lastTickDurationNanos;
+    }
+
+    public long getMaxTickDurationNanos() {
+        return maxTickDurationNanos;
+    }
+
+    public long getTotalTickDurationNanos() {
+        return totalTickDurationNanos;
+    }
+
+    public long getAverageTickDurationNanos() {
+        if (tickCount == 0) {
+            return 0;
+        }
+        return totalTickDurationNanos / tickCount;
+    }
+}
@@ -0,0 +1,121 @@
+package dungeons.world;
+
+import java.util.Arrays;
+
+// Map cells packed one ASCII byte per cell into square chunks. A chunk is only allocated once one of
+// its cells differs from the fill, so untouched rock costs nothing however large the map is.
+public class CellGrid {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int rows;
+    private final int cols;
+    private final int chunkCols;
+    private final byte fill;
+    private final byte[][] chunks;
+    private int allocatedChunks;
+
+    public CellGrid(int rows, int cols, char fill) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("The grid must have positive dimensions");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.fill = toByte(fill);
+        chunkCols = chunkCount(cols);
+        chunks = new byte[chunkCount(rows) * chunkCols][];
+        allocatedChunks = 0;
+    }
+
+    public CellGrid copy() {
+        CellGrid copy = new CellGrid(rows, cols, (char) fill);
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                copy.chunks[i] = chunks[i].clone();
+            }
+        }
+        copy.allocatedChunks = allocatedChunks;
+        return copy;
+    }
+
+    public static CellGrid of(char[][] map) {
+        if (map == null) {
+            throw new IllegalArgumentException("map was null");
+        }
+        CellGrid grid = new CellGrid(map.length, map[0].length, '#');
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                grid.set(x, y, map[y][x]);
+            }
+        }
+        return grid;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getAllocatedChunks() {
+        return allocatedChunks;
+    }
+
+    public long getAllocatedBytes() {
+        return (long) allocatedChunks * CHUNK_SIZE * CHUNK_SIZE;
+    }
+
+    public char get(int x, int y) {
+        byte[] chunk = chunks[chunkIndex(x, y)];
+        return (char) (chunk == null ? fill : chunk[cellIndex(x, y)]);
+    }
+
+    public void set(int x, int y, char cell) {
+        byte value = toByte(cell);
+        int chunkIndex = chunkIndex(x, y);
+        byte[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (value == fill) {
+                return;
+            }
+            chunk = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            Arrays.fill(chunk, fill);
+            chunks[chunkIndex] = chunk;
+            allocatedChunks++;
+        }
+        chunk[cellIndex(x, y)] = value;
+    }
+
+    // Meant for small maps and tests - it allocates the whole bounding box.
+    public char[][] toArray() {
+        char[][] map = new char[rows][cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                map[y][x] = get(x, y);
+            }
+        }
+        return map;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CHUNK_SHIFT) * chunkCols + (x >> CHUNK_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+
+    private static int chunkCount(int cells) {
+        return (cells + CHUNK_MASK) >> CHUNK_SHIFT;
+    }
+
+    private static byte toByte(char cell) {
+        if (cell > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Only ASCII cells can be stored: " + (int) cell);
+        }
+        return (byte) cell;
+    }
+}
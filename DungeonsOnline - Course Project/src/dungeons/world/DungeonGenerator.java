@@ -0,0 +1,99 @@
+package dungeons.world;
+
+import java.util.Random;
+
+// Generates rooms and corridors from a seed. The map is split into a grid of slots, each holding at
+// most one room. Every slot is linked to the next one in its row, and the first column is linked
+// top to bottom, so all rooms are reachable. A few extra vertical links add loops.
+public final class DungeonGenerator {
+    private static final char WALL = '#';
+    private static final char FLOOR = '.';
+
+    private static final int SLOT_SIZE = 24;
+    private static final int MIN_ROOM_SIZE = 4;
+    private static final int MAX_ROOM_SIZE = 16;
+    private static final int MIN_MAP_SIZE = 5;
+    private static final int EMPTY_SLOT_PERCENT = 20;
+    private static final int EXTRA_LINK_PERCENT = 30;
+    private static final int PERCENT = 100;
+
+    private DungeonGenerator() {
+    }
+
+    public static CellGrid generate(int rows, int cols, long seed) {
+        if (rows < MIN_MAP_SIZE || cols < MIN_MAP_SIZE) {
+            throw new IllegalArgumentException("The map must be at least " + MIN_MAP_SIZE + "x" + MIN_MAP_SIZE);
+        }
+
+        Random random = new Random(seed);
+        CellGrid cells = new CellGrid(rows, cols, WALL);
+        int slotRows = Math.max(1, rows / SLOT_SIZE);
+        int slotCols = Math.max(1, cols / SLOT_SIZE);
+
+        // Centers of the previous slot row, linked to the slots below them.
+        int[] aboveX = new int[slotCols];
+        int[] aboveY = new int[slotCols];
+        for (int slotY = 0; slotY < slotRows; slotY++) {
+            int top = slotY * rows / slotRows;
+            int bottom = (slotY + 1) * rows / slotRows;
+            int leftX = 0;
+            int leftY = 0;
+            for (int slotX = 0; slotX < slotCols; slotX++) {
+                int left = slotX * cols / slotCols;
+                int right = (slotX + 1) * cols / slotCols;
+
+                int centerX;
+                int centerY;
+                boolean onlySlot = slotRows == 1 && slotCols == 1;
+                if (onlySlot || random.nextInt(PERCENT) >= EMPTY_SLOT_PERCENT) {
+                    int roomWidth = roomSize(random, right - left);
+                    int roomHeight = roomSize(random, bottom - top);
+                    int roomX = left + 1 + random.nextInt(right - left - 2 - roomWidth + 1);
+                    int roomY = top + 1 + random.nextInt(bottom - top - 2 - roomHeight + 1);
+                    carveRoom(cells, roomX, roomY, roomWidth, roomHeight);
+                    centerX = roomX + roomWidth / 2;
+                    centerY = roomY + roomHeight / 2;
+                } else {
+                    centerX = (left + right) / 2;
+                    centerY = (top + bottom) / 2;
+                }
+
+                if (slotX > 0) {
+                    carveCorridor(cells, leftX, leftY, centerX, centerY);
+                }
+                if (slotY > 0 && (slotX == 0 || random.nextInt(PERCENT) < EXTRA_LINK_PERCENT)) {
+                    carveCorridor(cells, aboveX[slotX], aboveY[slotX], centerX, centerY);
+                }
+                leftX = centerX;
+                leftY = centerY;
+                aboveX[slotX] = centerX;
+                aboveY[slotX] = centerY;
+            }
+        }
+        return cells;
+    }
+
+    // Leaves a wall on both sides of the slot so neighbouring rooms never merge.
+    private static int roomSize(Random random, int slotSize) {
+        int maxSize = Math.min(MAX_ROOM_SIZE, slotSize - 2);
+        int minSize = Math.min(MIN_ROOM_SIZE, maxSize);
+        return minSize + random.nextInt(maxSize - minSize + 1);
+    }
+
+    private static void carveRoom(CellGrid cells, int roomX, int roomY, int width, int height) {
+        for (int y = roomY; y < roomY + height; y++) {
+            for (int x = roomX; x < roomX + width; x++) {
+                cells.set(x, y, FLOOR);
+            }
+        }
+    }
+
+    private static void carveCorridor(CellGrid cells, int fromX, int fromY, int toX, int toY) {
+        for (int x = Math.min(fromX, toX); x <= Math.max(fromX, toX); x++) {
+            cells.set(x, fromY, FLOOR);
+        }
+        for (int y = Math.min(fromY, toY); y <= Math.max(fromY, toY); y++) {
+            cells.set(toX, y, FLOOR);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package dungeons.world;
+
+import dungeons.entities.position.GamePosition;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Walking distances from the nearest of many sources, found by one breadth-first search from all of them
+// at once. Every monster reads the same field, so a tick costs one search however many monsters chase.
+// The search stops at maxDistance, which keeps it to the neighbourhood of the players on large maps.
+//
+// Cells are stored in chunks like CellGrid and only chunks the search reaches are allocated. Each cell
+// holds the search's stamp next to its distance, so a new search needs no clearing.
+public class FlowField {
+    public static final int UNREACHED = -1;
+    public static final int MAX_DISTANCE = 255;
+
+    private static final char WALL = '#';
+    private static final int CHUNK_MASK = CellGrid.CHUNK_SIZE - 1;
+    private static final int DISTANCE_BITS = 8;
+    private static final int DISTANCE_MASK = (1 << DISTANCE_BITS) - 1;
+    private static final int MAX_STAMP = Integer.MAX_VALUE >> DISTANCE_BITS;
+    private static final int INITIAL_QUEUE_SIZE = 256;
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+
+    private final CellGrid cells;
+    private final int rows;
+    private final int cols;
+    private final int chunkCols;
+    private final int[][] chunks;
+    private int stamp;
+    private int[] queueX;
+    private int[] queueY;
+
+    public FlowField(CellGrid cells) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+        this.cells = cells;
+        rows = cells.getRows();
+        cols = cells.getCols();
+        chunkCols = (cols + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT;
+        chunks = new int[((rows + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT) * chunkCols][];
+        stamp = 0;
+        queueX = new int[INITIAL_QUEUE_SIZE];
+        queueY = new int[INITIAL_QUEUE_SIZE];
+    }
+
+    // Everything but walls can be walked through, so players, monsters and treasures do not cut the
+    // field in two. Whether a cell is free to step on is up to the caller.
+    public void compute(List<GamePosition> sources, int maxDistance) {
+        if (sources == null) {
+            throw new IllegalArgumentException("sources was null");
+        }
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE);
+        }
+        nextStamp();
+
+        int tail = 0;
+        for (GamePosition source : sources) {
+            int x = source.x();
+            int y = source.y();
+            if (isInside(x, y) && distance(x, y) == UNREACHED) {
+                mark(x, y, 0);
+                tail = enqueue(tail, x, y);
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int x = queueX[head];
+            int y = queueY[head];
+            int nextDistance = distance(x, y) + 1;
+            if (nextDistance > maxDistance) {
+                continue;
+            }
+            for (int step = 0; step < STEP_X.length; step++) {
+                int nextX = x + STEP_X[step];
+                int nextY = y + STEP_Y[step];
+                if (isInside(nextX, nextY) && cells.get(nextX, nextY) != WALL && distance(nextX, nextY) == UNREACHED) {
+                    mark(nextX, nextY, nextDistance);
+                    tail = enqueue(tail, nextX, nextY);
+                }
+            }
+        }
+    }
+
+    // The distance found by the last search, or UNREACHED.
+    public int distance(int x, int y) {
+        int[] chunk = chunks[chunkIndex(x, y)];
+        if (chunk == null) {
+            return UNREACHED;
+        }
+        int value = chunk[cellIndex(x, y)];
+        return value >>> DISTANCE_BITS == stamp ? value & DISTANCE_MASK : UNREACHED;
+    }
+
+    public boolean isInside(int x, int y) {
+        return 0 <= x && x < cols && 0 <= y && y < rows;
+    }
+
+    private void mark(int x, int y, int distance) {
+        int chunkIndex = chunkIndex(x, y);
+        int[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new int[CellGrid.CHUNK_SIZE * CellGrid.CHUNK_SIZE];
+            chunks[chunkIndex] = chunk;
+        }
+        chunk[cellIndex(x, y)] = stamp << DISTANCE_BITS | distance;
+    }
+
+    private int enqueue(int tail, int x, int y) {
+        if (tail == queueX.length) {
+            queueX = Arrays.copyOf(queueX, tail * 2);
+            queueY = Arrays.copyOf(queueY, tail * 2);
+        }
+        queueX[tail] = x;
+        queueY[tail] = y;
+        return tail + 1;
+    }
+
+    // Stamp 0 is what a fresh chunk holds, so it is never used for a search.
+    private void nextStamp() {
+        if (stamp == MAX_STAMP) {
+            for (int[] chunk : chunks) {
+                if (chunk != null) {
+                    Arrays.fill(chunk, 0);
+                }
+            }
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CellGrid.CHUNK_SHIFT) * chunkCols + (x >> CellGrid.CHUNK_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return (y & CHUNK_MASK) << CellGrid.CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+}
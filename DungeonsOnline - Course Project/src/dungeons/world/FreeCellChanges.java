@@ -0,0 +1,45 @@
+package dungeons.world;
+
+import java.util.Arrays;
+
+// The cells a region worker freed or took, in the order it did, until the tick thread applies them to
+// the FreeCellIndex. Applying every region's changes in region order keeps the index the same however
+// the workers were scheduled, and with it every cell picked from it.
+public class FreeCellChanges {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int FREED = 1;
+    private static final int TAKEN = 0;
+
+    // Three ints per change: x, y and whether the cell was freed.
+    private int[] changes;
+    private int size;
+
+    public FreeCellChanges() {
+        changes = new int[INITIAL_CAPACITY * 3];
+        size = 0;
+    }
+
+    public void add(int x, int y, boolean freed) {
+        if (size + 3 > changes.length) {
+            changes = Arrays.copyOf(changes, changes.length * 2);
+        }
+        changes[size++] = x;
+        changes[size++] = y;
+        changes[size++] = freed ? FREED : TAKEN;
+    }
+
+    // Applies the changes in order and forgets them.
+    public void applyTo(FreeCellIndex freeCells) {
+        if (freeCells == null) {
+            throw new IllegalArgumentException("freeCells was null");
+        }
+        for (int i = 0; i < size; i += 3) {
+            if (changes[i + 2] == FREED) {
+                freeCells.add(changes[i], changes[i + 1]);
+            } else {
+                freeCells.remove(changes[i], changes[i + 1]);
+            }
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package dungeons.world;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// The floor cells nothing stands on, kept in an array so a random one is picked in constant time however
+// full the map is. Every free cell also knows its place in the array, chunked like CellGrid, so removing
+// one moves the last free cell into its place. Only the tick thread changes it; region workers keep
+// their changes in FreeCellChanges.
+public class FreeCellIndex {
+    public static final int NO_CELL = -1;
+    private static final char FREE_CELL = '.';
+    private static final int CHUNK_MASK = CellGrid.CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+    // A slot holds the cell's index in freeCells plus one, so a new chunk means no cell of it is free.
+    private static final int NOT_FREE = 0;
+
+    private final int cols;
+    private final int chunkCols;
+    private final int[][] slots;
+    private int[] freeCells;
+    private int size;
+
+    // Indexes every free cell of the grid.
+    public FreeCellIndex(CellGrid cells) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+        int rows = cells.getRows();
+        cols = cells.getCols();
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A map of " + rows + "x" + cols + " cells is too large to index");
+        }
+        chunkCols = (cols + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT;
+        slots = new int[((rows + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT) * chunkCols][];
+        freeCells = new int[INITIAL_CAPACITY];
+        size = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (cells.get(x, y) == FREE_CELL) {
+                    add(x, y);
+                }
+            }
+        }
+    }
+
+    // Does nothing for a cell that is free already.
+    public void add(int x, int y) {
+        int chunkIndex = chunkIndex(x, y);
+        int[] chunk = slots[chunkIndex];
+        if (chunk == null) {
+            chunk = new int[CellGrid.CHUNK_SIZE * CellGrid.CHUNK_SIZE];
+            slots[chunkIndex] = chunk;
+        }
+        int slotIndex = slotIndex(x, y);
+        if (chunk[slotIndex] != NOT_FREE) {
+            return;
+        }
+        if (size == freeCells.length) {
+            freeCells = Arrays.copyOf(freeCells, size * 2);
+        }
+        freeCells[size++] = y * cols + x;
+        chunk[slotIndex] = size;
+    }
+
+    // Does nothing for a cell that is not free.
+    public void remove(int x, int y) {
+        int[] chunk = slots[chunkIndex(x, y)];
+        int slotIndex = slotIndex(x, y);
+        if (chunk == null || chunk[slotIndex] == NOT_FREE) {
+            return;
+        }
+        int index = chunk[slotIndex] - 1;
+        chunk[slotIndex] = NOT_FREE;
+        int last = freeCells[--size];
+        if (index != size) {
+            freeCells[index] = last;
+            int lastX = last % cols;
+            int lastY = last / cols;
+            slots[chunkIndex(lastX, lastY)][slotIndex(lastX, lastY)] = index + 1;
+        }
+    }
+
+    public boolean contains(int x, int y) {
+        int[] chunk = slots[chunkIndex(x, y)];
+        return chunk != null && chunk[slotIndex(x, y)] != NOT_FREE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns y * cols + x of a free cell picked uniformly at random, or NO_CELL when no cell is free.
+    // The cell stays in the index until whatever is put on it takes it out.
+    public int pickRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random was null");
+        }
+        return size == 0 ? NO_CELL : freeCells[random.nextInt(size)];
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CellGrid.CHUNK_SHIFT) * chunkCols + (x >> CellGrid.CHUNK_SHIFT);
+    }
+
+    private static int slotIndex(int x, int y) {
+        return (y & CHUNK_MASK) << CellGrid.CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,34 @@
+package dungeons.world;
+
+import java.util.BitSet;
+
+// Hands out the lowest free id, so ids stay small enough to index arrays even after thousands of
+// players came and went.
+public class IdAllocator {
+    private final BitSet usedIds;
+    private int lowestFreeId;
+
+    public IdAllocator() {
+        usedIds = new BitSet();
+        lowestFreeId = 0;
+    }
+
+    public int allocate() {
+        int id = lowestFreeId;
+        usedIds.set(id);
+        lowestFreeId = usedIds.nextClearBit(id + 1);
+        return id;
+    }
+
+    public void release(int id) {
+        if (id < 0 || !usedIds.get(id)) {
+            throw new IllegalArgumentException("Id " + id + " is not allocated");
+        }
+        usedIds.clear(id);
+        lowestFreeId = Math.min(lowestFreeId, id);
+    }
+
+    public int getAllocatedCount() {
+        return usedIds.cardinality();
+    }
+}
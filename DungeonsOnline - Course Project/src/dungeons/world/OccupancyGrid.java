@@ -0,0 +1,88 @@
+package dungeons.world;
+
+import dungeons.entities.monster.Monster;
+import dungeons.entities.player.Player;
+import dungeons.treasure.Treasure;
+
+// Chunked like CellGrid, so only the parts of the map with floor take memory. Entities only ever move
+// onto floor cells, whose chunks are allocated up front or by the tick thread once a cell becomes floor,
+// so region workers putting entities in parallel never allocate a chunk.
+public class OccupancyGrid {
+    private static final int CHUNK_MASK = CellGrid.CHUNK_SIZE - 1;
+    private static final char FLOOR_CELL = '.';
+
+    private final int chunkCols;
+    private final Object[][] chunks;
+
+    public OccupancyGrid(CellGrid cells) {
+        if (cells == null) {
+            throw new IllegalArgumentException("cells was null");
+        }
+        chunkCols = (cells.getCols() + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT;
+        chunks = new Object[((cells.getRows() + CHUNK_MASK) >> CellGrid.CHUNK_SHIFT) * chunkCols][];
+        for (int y = 0; y < cells.getRows(); y++) {
+            for (int x = 0; x < cells.getCols(); x++) {
+                if (cells.get(x, y) == FLOOR_CELL) {
+                    allocate(x, y);
+                }
+            }
+        }
+    }
+
+    // Makes room for occupants of the cell's chunk. Only the tick thread may call it.
+    public void allocate(int x, int y) {
+        int chunkIndex = chunkIndex(x, y);
+        if (chunks[chunkIndex] == null) {
+            chunks[chunkIndex] = new Object[CellGrid.CHUNK_SIZE * CellGrid.CHUNK_SIZE];
+        }
+    }
+
+    // The cell must have been floor at some point, so its chunk is allocated.
+    public void put(int x, int y, Object occupant) {
+        Object[] chunk = chunks[chunkIndex(x, y)];
+        if (chunk == null) {
+            throw new IllegalStateException("No chunk was allocated for " + x + ", " + y);
+        }
+        chunk[cellIndex(x, y)] = occupant;
+    }
+
+    public Object get(int x, int y) {
+        Object[] chunk = chunks[chunkIndex(x, y)];
+        return chunk == null ? null : chunk[cellIndex(x, y)];
+    }
+
+    public void clear(int x, int y) {
+        Object[] chunk = chunks[chunkIndex(x, y)];
+        if (chunk != null) {
+            chunk[cellIndex(x, y)] = null;
+        }
+    }
+
+    // Clears the cell only if it still belongs to the given occupant.
+    public void remove(int x, int y, Object occupant) {
+        Object[] chunk = chunks[chunkIndex(x, y)];
+        if (chunk != null && chunk[cellIndex(x, y)] == occupant) {
+            chunk[cellIndex(x, y)] = null;
+        }
+    }
+
+    public Player getPlayer(int x, int y) {
+        return get(x, y) instanceof Player player ? player : null;
+    }
+
+    public Monster getMonster(int x, int y) {
+        return get(x, y) instanceof Monster monster ? monster : null;
+    }
+
+    public Treasure getTreasure(int x, int y) {
+        return get(x, y) instanceof Treasure treasure ? treasure : null;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CellGrid.CHUNK_SHIFT) * chunkCols + (x >> CellGrid.CHUNK_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return (y & CHUNK_MASK) << CellGrid.CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,131 @@
+package dungeons.world;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.protocol.Command;
+import dungeons.server.CommandQueue;
+
+import java.util.concurrent.Callable;
+
+class Region implements Callable<Void> {
+    // The longest reach of any command (spell attack). A player at least this far from every inner border
+    // cannot affect or be affected by anything in a neighbouring region.
+    private static final int INTERACTION_RANGE = 2;
+
+    private final GameMap gameMap;
+    private final RegionScheduler scheduler;
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+
+    private final CommandQueue commands;
+    private final CommandQueue deferredCommands;
+    private final FreeCellChanges freeCellChanges;
+    private final Command command;
+
+    Region(GameMap gameMap, RegionScheduler scheduler, int left, int top, int right, int bottom) {
+        this.gameMap = gameMap;
+        this.scheduler = scheduler;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        commands = new CommandQueue();
+        deferredCommands = new CommandQueue();
+        freeCellChanges = new FreeCellChanges();
+        command = new Command();
+    }
+
+    public void add(Player player, Command command) {
+        commands.add(player, command);
+    }
+
+    public boolean hasCommands() {
+        return !commands.isEmpty();
+    }
+
+    public boolean contains(GamePosition gamePosition) {
+        return gamePosition != null &&
+            left <= gamePosition.x() && gamePosition.x() <= right &&
+            top <= gamePosition.y() && gamePosition.y() <= bottom;
+    }
+
+    // Runs on a worker thread. Commands that could reach outside the region are kept in order for applyDeferred().
+    @Override
+    public Void call() {
+        Player player;
+        while ((player = commands.poll(command)) != null) {
+            if (!scheduler.isDeferred(player) && canApplyInParallel(player)) {
+                gameMap.handleCommand(player, command.getOpcode(), command.getFirstOperand(),
+                    command.getSecondOperand(), freeCellChanges);
+            } else {
+                scheduler.markDeferred(player);
+                deferredCommands.add(player, command);
+            }
+        }
+        return null;
+    }
+
+    // Runs on the tick thread after every region has finished call(), region by region, before any
+    // deferred command can pick a free cell.
+    public void applyFreeCellChanges() {
+        gameMap.applyFreeCellChanges(freeCellChanges);
+    }
+
+    // Runs on the tick thread after every region has applied its free cell changes.
+    public void applyDeferred() {
+        Player player;
+        while ((player = deferredCommands.poll(command)) != null) {
+            gameMap.handleCommand(player, command.getOpcode(), command.getFirstOperand(),
+                command.getSecondOperand());
+        }
+    }
+
+    private boolean canApplyInParallel(Player player) {
+        GamePosition position = player.getGamePosition();
+        if (!contains(position)) {
+            return false;
+        }
+
+        return switch (command.getOpcode()) {
+            // A respawn draws from the map's seeded random, so it runs on the tick thread like a treasure pickup.
+            case Command.EQUIP, Command.UNEQUIP, Command.DROP -> true;
+            case Command.MOVE -> isInterior(position) && !leadsToTreasure(position, (char) command.getFirstOperand());
+            case Command.ATTACK_MELEE, Command.ATTACK_SPELL, Command.TRADE ->
+                isInterior(position) && targetIsInRegion(command.getFirstOperand());
+            default -> false;
+        };
+    }
+
+    private boolean isInterior(GamePosition position) {
+        int x = position.x();
+        int y = position.y();
+        return (left == 0 || x - left >= INTERACTION_RANGE) &&
+            (right == gameMap.getCols() - 1 || right - x >= INTERACTION_RANGE) &&
+            (top == 0 || y - top >= INTERACTION_RANGE) &&
+            (bottom == gameMap.getRows() - 1 || bottom - y >= INTERACTION_RANGE);
+    }
+
+    // Picking up a treasure spawns a new one anywhere on the map, so it has to run on the tick thread.
+    private boolean leadsToTreasure(GamePosition position, char way) {
+        int x = position.x();
+        int y = position.y();
+        switch (way) {
+            case 'w' -> y--;
+            case 's' -> y++;
+            case 'a' -> x--;
+            case 'd' -> x++;
+            default -> {
+                return false;
+            }
+        }
+        return gameMap.isValidGamePosition(new GamePosition(x, y)) && gameMap.isTreasure(x, y);
+    }
+
+    private boolean targetIsInRegion(int targetId) {
+        Player target = gameMap.getPlayerById(targetId);
+        return target == null || contains(target.getGamePosition());
+    }
+}
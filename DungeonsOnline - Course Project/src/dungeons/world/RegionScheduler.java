@@ -0,0 +1,178 @@
+package dungeons.world;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.protocol.Command;
+import dungeons.server.CommandQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Applies a tick's commands in two phases. Commands of players deep inside a region run in parallel,
+// one worker per region. Everything that could cross a border (moves near it, attacks and trades on
+// players elsewhere, treasure pickups, monster fights) or draws from the map's random (respawns) then
+// runs on the tick thread region by region in arrival order, so the outcome does not depend on thread
+// scheduling. The free cells the workers change are applied to the map's FreeCellIndex on the tick
+// thread as well, in region order.
+public class RegionScheduler implements AutoCloseable {
+    private static final int INITIAL_STAMP_TABLE_SIZE = 16;
+
+    private final GameMap gameMap;
+    private final int regionRows;
+    private final int regionCols;
+    private final int[] rowBands;
+    private final int[] colBands;
+    private final Region[] regions;
+    private final List<Region> activeRegions;
+    private final ExecutorService executor;
+    private final Command command;
+
+    private int[] deferredStamps;
+    private int tickStamp;
+
+    public RegionScheduler(GameMap gameMap, int regionRows, int regionCols) {
+        if (gameMap == null) {
+            throw new IllegalArgumentException("gameMap was null");
+        }
+        if (regionRows <= 0 || regionCols <= 0 ||
+            regionRows > gameMap.getRows() || regionCols > gameMap.getCols()) {
+            throw new IllegalArgumentException("Cannot split the map into " + regionRows + "x" + regionCols + " regions");
+        }
+
+        this.gameMap = gameMap;
+        this.regionRows = regionRows;
+        this.regionCols = regionCols;
+        rowBands = computeBands(gameMap.getRows(), regionRows);
+        colBands = computeBands(gameMap.getCols(), regionCols);
+        regions = createRegions();
+        activeRegions = new ArrayList<>(regions.length);
+        executor = Executors.newFixedThreadPool(regions.length, runnable -> {
+            Thread thread = new Thread(runnable, "region-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        command = new Command();
+        deferredStamps = new int[INITIAL_STAMP_TABLE_SIZE];
+        tickStamp = 0;
+    }
+
+    public void apply(CommandQueue commands) {
+        if (commands == null) {
+            throw new IllegalArgumentException("commands was null");
+        }
+
+        tickStamp++;
+        Player player;
+        while ((player = commands.poll(command)) != null) {
+            ensureStampCapacity(player.getId());
+            regionOf(player.getGamePosition()).add(player, command);
+        }
+
+        activeRegions.clear();
+        for (Region region : regions) {
+            if (region.hasCommands()) {
+                activeRegions.add(region);
+            }
+        }
+        runInParallel();
+
+        for (Region region : regions) {
+            region.applyFreeCellChanges();
+        }
+        for (Region region : regions) {
+            region.applyDeferred();
+        }
+    }
+
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    boolean isDeferred(Player player) {
+        return deferredStamps[player.getId()] == tickStamp;
+    }
+
+    void markDeferred(Player player) {
+        deferredStamps[player.getId()] = tickStamp;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void runInParallel() {
+        if (activeRegions.isEmpty()) {
+            return;
+        }
+        try {
+            for (Future<Void> result : executor.invokeAll(activeRegions)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating regions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A region worker failed", e.getCause());
+        }
+    }
+
+    private Region regionOf(GamePosition gamePosition) {
+        if (gamePosition == null || !gameMap.isValidGamePosition(gamePosition)) {
+            return regions[0];
+        }
+        return regions[rowBands[gamePosition.y()] * regionCols + colBands[gamePosition.x()]];
+    }
+
+    private Region[] createRegions() {
+        Region[] created = new Region[regionRows * regionCols];
+        for (int band = 0; band < regionRows; band++) {
+            int top = firstIndexOfBand(rowBands, band);
+            int bottom = lastIndexOfBand(rowBands, band);
+            for (int column = 0; column < regionCols; column++) {
+                int left = firstIndexOfBand(colBands, column);
+                int right = lastIndexOfBand(colBands, column);
+                created[band * regionCols + column] = new Region(gameMap, this, left, top, right, bottom);
+            }
+        }
+        return created;
+    }
+
+    private void ensureStampCapacity(int id) {
+        if (id >= deferredStamps.length) {
+            deferredStamps = Arrays.copyOf(deferredStamps, Math.max(id + 1, deferredStamps.length * 2));
+        }
+    }
+
+    private static int[] computeBands(int length, int bandCount) {
+        int[] bands = new int[length];
+        for (int i = 0; i < length; i++) {
+            bands[i] = (int) ((long) i * bandCount / length);
+        }
+        return bands;
+    }
+
+    private static int firstIndexOfBand(int[] bands, int band) {
+        for (int i = 0; i < bands.length; i++) {
+            if (bands[i] == band) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Empty band " + band);
+    }
+
+    private static int lastIndexOfBand(int[] bands, int band) {
+        for (int i = bands.length - 1; i >= 0; i--) {
+            if (bands[i] == band) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Empty band " + band);
+    }
+}
@@ -4,13 +4,19 @@ import dungeons.entities.monster.Monster;
 import dungeons.entities.player.Player;
 import dungeons.entities.position.GamePosition;
 import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.protocol.Command;
+import dungeons.server.ClientSession;
 import dungeons.treasure.Sword;
 import dungeons.treasure.Treasure;
+import dungeons.world.CellGrid;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GameMapTest {
@@ -38,7 +44,6 @@ public class GameMapTest {
 
     @BeforeEach
     void init() {
-        Player.setPlayersCount(0);
         testGameMap = new GameMap(deepCopyCharArray(testMap));
     }
 
@@ -144,8 +149,7 @@ public class GameMapTest {
         Player defendingPlayer = new Player();
         testGameMap.connectPlayer(attackingPlayer);
         testGameMap.connectPlayer(defendingPlayer);
-        char defendingPlayerChar = defendingPlayer.getPlayerChar();
-        String action = "attack melee " + defendingPlayerChar;
+        String action = "attack melee " + defendingPlayer.getId();
         attackingPlayer.setPlayerPosition(new GamePosition(0, 0));
         defendingPlayer.setPlayerPosition(new GamePosition(0, 0));
         testGameMap.handleAction(attackingPlayer, action);
@@ -159,10 +163,9 @@ public class GameMapTest {
         Player playerToReceive = new Player();
         testGameMap.connectPlayer(playerToSend);
         testGameMap.connectPlayer(playerToReceive);
-        char playerToReceiveChar = playerToReceive.getPlayerChar();
         Treasure treasureToBeTraded = new Sword(1, null);
         playerToSend.putTreasure(treasureToBeTraded);
-        String action = "trade " + playerToReceiveChar + " 0";
+        String action = "trade " + playerToReceive.getId() + " 0";
         playerToSend.setPlayerPosition(new GamePosition(0, 0));
         playerToReceive.setPlayerPosition(new GamePosition(0, 0));
         testGameMap.handleAction(playerToSend, action);
@@ -170,4 +173,147 @@ public class GameMapTest {
                 playerToReceive.getInventory().getTreasures().contains(treasureToBeTraded),
             "After successful trade treasure is remove from sending player's inventory and is added to receicing player's inventory");
     }
+
+    @Test
+    void testMovePlayerOntoTreasurePicksItUp() throws PlayerCharAlreadyExistsException {
+        Player player = new Player();
+        testGameMap.connectPlayer(player);
+        Treasure treasure = testGameMap.getTreasures().get(0);
+        GamePosition treasurePosition = treasure.getGamePosition();
+
+        boolean treasureHasLeftNeighbour = treasurePosition.x() > 0;
+        int playerX = treasureHasLeftNeighbour ? treasurePosition.x() - 1 : treasurePosition.x() + 1;
+        player.setPlayerPosition(new GamePosition(playerX, treasurePosition.y()));
+        testGameMap.movePlayer(player, treasureHasLeftNeighbour ? 'd' : 'a');
+
+        assertTrue(player.getInventory().getTreasures().contains(treasure) &&
+                !testGameMap.getTreasures().contains(treasure),
+            "Moving onto a treasure should move it from the map to the player's inventory");
+        assertEquals(treasurePosition, player.getGamePosition(),
+            "Player should stand on the cell of the picked up treasure");
+    }
+
+    @Test
+    void testMonstersChaseAndAttackPlayers() throws PlayerCharAlreadyExistsException {
+        char[][] openMap = new char[8][8];
+        for (char[] row : openMap) {
+            Arrays.fill(row, '.');
+        }
+        GameMap gameMap = new GameMap(CellGrid.of(openMap), 1);
+        for (Treasure treasure : gameMap.getTreasures()) {
+            gameMap.setPosition(treasure.getGamePosition(), '.');
+        }
+        Player player = new Player();
+        gameMap.connectPlayer(player);
+
+        for (int turn = 0; turn < 16; turn++) {
+            gameMap.moveMonsters();
+        }
+
+        assertTrue(player.getCurrHealth() < player.getTotalHealth(),
+            "A monster should walk up to the player and attack it");
+        assertEquals(1, player.getGamePosition().getDistance(gameMap.getMonsters().get(0).getGamePosition()),
+            "The monster should stay next to the player it attacks");
+    }
+
+    @Test
+    void testViewCoveringLargeMapGetsWindow() throws PlayerCharAlreadyExistsException {
+        char[][] largeMap = new char[200][200];
+        for (char[] row : largeMap) {
+            Arrays.fill(row, '.');
+        }
+        GameMap gameMap = new GameMap(CellGrid.of(largeMap), 1);
+        Player player = new Player();
+        player.setViewRadius(100);
+        gameMap.connectPlayer(player);
+        ClientSession session = new ClientSession(player);
+
+        int frameNumber = gameMap.nextFrame();
+        gameMap.encodeFrame(session, frameNumber);
+        session.acknowledgeFrame(frameNumber);
+        frameNumber = gameMap.nextFrame();
+        gameMap.encodeFrame(session, frameNumber);
+        assertNotNull(session.getViewWindow(), "A large map has no whole-map frames, so the view should be a window");
+    }
+
+    @Test
+    void testDisconnectedPlayersIdIsReused() throws PlayerCharAlreadyExistsException {
+        Player first = new Player();
+        Player second = new Player();
+        testGameMap.connectPlayer(first);
+        testGameMap.connectPlayer(second);
+        int firstId = first.getId();
+        testGameMap.disconnectPlayer(first);
+
+        Player third = new Player();
+        testGameMap.connectPlayer(third);
+        assertEquals(firstId, third.getId(), "A new player should get the id a disconnected player left free");
+        assertEquals(third, testGameMap.getPlayerById(firstId), "The reused id should lead to the new player");
+        assertEquals(GameMap.PLAYER_CELL, testGameMap.getCell(third.getGamePosition().x(),
+            third.getGamePosition().y()), "Every player should be drawn as the same cell");
+    }
+
+    @Test
+    void testBlockedMovesAreAcknowledgedToo() throws PlayerCharAlreadyExistsException {
+        Player player = new Player();
+        testGameMap.connectPlayer(player);
+        GamePosition start = new GamePosition(0, 0);
+        testGameMap.setPosition(player.getGamePosition(), '.');
+        testGameMap.setPosition(start, GameMap.PLAYER_CELL);
+        player.setPlayerPosition(start);
+        testGameMap.handleCommand(player, Command.MOVE, 'w', 7);
+        assertEquals(start, player.getGamePosition(), "A move off the map should not be made");
+        assertEquals(7, player.getAcknowledgedInput(), "The client should learn the move was handled");
+
+        testGameMap.handleCommand(player, Command.MOVE, 'd', Command.NO_SEQUENCE);
+        assertEquals(7, player.getAcknowledgedInput(), "Moves without a sequence number acknowledge nothing");
+    }
+
+    @Test
+    void testBlockedMoveLeavesTheMapAlone() throws PlayerCharAlreadyExistsException {
+        Player player = new Player();
+        testGameMap.connectPlayer(player);
+        GamePosition start = new GamePosition(1, 1);
+        testGameMap.setPosition(player.getGamePosition(), '.');
+        testGameMap.setPosition(start, GameMap.PLAYER_CELL);
+        player.setPlayerPosition(start);
+        int freeCells = testGameMap.getFreeCellCount();
+        testGameMap.clearDirtyRows();
+
+        testGameMap.handleCommand(player, Command.MOVE, 'a', Command.NO_SEQUENCE);
+        assertEquals(start, player.getGamePosition(), "A move into a wall should not be made");
+        assertFalse(testGameMap.isRowDirty(start.y()), "A blocked move should not be sent as a change");
+        assertEquals(freeCells, testGameMap.getFreeCellCount(), "A blocked move should not change the free cells");
+    }
+
+    @Test
+    void testFullMapSpawnsWhatFits() throws PlayerCharAlreadyExistsException {
+        char[][] map = {
+            {'#', '#', '#', '#'},
+            {'#', '.', '.', '#'},
+            {'#', '.', '#', '#'},
+        };
+        GameMap gameMap = new GameMap(map);
+        assertEquals(3, gameMap.getTreasureCount() + gameMap.getMonsterCount(),
+            "Spawning should stop once every free cell is taken");
+        assertEquals(0, gameMap.getFreeCellCount(), "No free cell should be left");
+
+        Player player = new Player();
+        gameMap.connectPlayer(player);
+        assertEquals(Player.NO_ID, player.getId(), "A player should not be placed on a full map");
+        assertFalse(gameMap.getPlayers().contains(player), "A player that found no cell should not be added");
+    }
+
+    @Test
+    void testFreeCellsFollowTheMap() throws PlayerCharAlreadyExistsException {
+        int freeCells = testGameMap.getFreeCellCount();
+        Player player = new Player();
+        testGameMap.connectPlayer(player);
+        assertEquals(freeCells - 1, testGameMap.getFreeCellCount(), "The player's cell should no longer be free");
+        assertFalse(testGameMap.isEmptySpace(player.getGamePosition().x(), player.getGamePosition().y()),
+            "The player should be placed on a free cell");
+
+        testGameMap.disconnectPlayer(player);
+        assertEquals(freeCells, testGameMap.getFreeCellCount(), "A disconnected player's cell should be free again");
+    }
 }
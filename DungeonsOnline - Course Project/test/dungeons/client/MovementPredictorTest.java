@@ -0,0 +1,56 @@
+package dungeons.client;
+
+import dungeons.protocol.Command;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MovementPredictorTest {
+    private MovementPredictor predictor;
+    private char[][] map;
+
+    @BeforeEach
+    void init() {
+        predictor = new MovementPredictor();
+        map = new char[][] {
+            "######".toCharArray(),
+            "#P..T#".toCharArray(),
+            "######".toCharArray()
+        };
+    }
+
+    @Test
+    void testMovesAreShownBeforeTheServerAppliesThem() {
+        assertEquals(Command.NO_SEQUENCE, predictor.predict('d', map, 0, 0),
+            "Nothing can be predicted before the first frame");
+        predictor.reconcile(Command.NO_SEQUENCE, 1, 1, map, 0, 0);
+
+        int first = predictor.predict('d', map, 0, 0);
+        int second = predictor.predict('d', map, 0, 0);
+        predictor.predict('w', map, 0, 0);
+        assertEquals(3, predictor.getX(), "Moves onto the floor should be made right away");
+        assertEquals(1, predictor.getY(), "Moves into walls should be refused like the server does");
+
+        // The server has applied the first move only.
+        map[1][1] = '.';
+        map[1][2] = 'P';
+        predictor.reconcile(first, 2, 1, map, 0, 0);
+        assertEquals(3, predictor.getX(), "Unacknowledged moves should be replayed on the server's position");
+        assertEquals(2, predictor.getPendingCount());
+
+        // The server refused the second move, say because a monster stepped in the way.
+        predictor.reconcile(second + 1, 2, 1, map, 0, 0);
+        assertEquals(2, predictor.getX(), "Acknowledged moves should give way to the server's position");
+        assertEquals(0, predictor.getPendingCount());
+    }
+
+    @Test
+    void testPredictionCanReturnToTheServersPosition() {
+        predictor.reconcile(Command.NO_SEQUENCE, 1, 1, map, 0, 0);
+        predictor.predict('d', map, 0, 0);
+        predictor.predict('a', map, 0, 0);
+        predictor.reconcile(Command.NO_SEQUENCE, 1, 1, map, 0, 0);
+        assertEquals(1, predictor.getX(), "The player's own cell should not block its way back");
+    }
+}
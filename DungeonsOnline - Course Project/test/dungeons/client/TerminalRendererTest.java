@@ -0,0 +1,61 @@
+package dungeons.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TerminalRendererTest {
+    private static final String CSI = "\u001b[";
+
+    private ByteArrayOutputStream bytes;
+    private TerminalRenderer renderer;
+    private char[][] map;
+
+    @BeforeEach
+    void init() {
+        bytes = new ByteArrayOutputStream();
+        renderer = new TerminalRenderer(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        map = new char[][] {
+            "#####".toCharArray(),
+            "#P..#".toCharArray(),
+            "#####".toCharArray()
+        };
+    }
+
+    private String render(String text) {
+        bytes.reset();
+        renderer.render(map, 3, 5, text);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testOnlyChangedCellsAreWritten() {
+        String first = render("Health:10");
+        assertTrue(first.contains(CSI + "2J"), "The first frame should clear the screen");
+        assertTrue(first.contains("#####") && first.contains("Health:10"));
+
+        map[1][1] = '.';
+        map[1][3] = 'P';
+        String second = render("Health:10");
+        assertFalse(second.contains(CSI + "2J"), "A frame of the same size should not clear the screen");
+        assertTrue(second.contains(CSI + "2;2H..P"), "A run of changes should be written after one cursor move");
+        assertFalse(second.contains("#"), "Unchanged cells should not be written again");
+
+        assertEquals("", render("Health:10"), "An unchanged frame should write nothing");
+    }
+
+    @Test
+    void testShorterTextIsBlankedOut() {
+        render("Health:10\nMana:100");
+        String second = render("Health:9");
+        assertTrue(second.contains(CSI + "4;8H9 "), "The rest of a shorter line should be overwritten");
+        assertTrue(second.contains(CSI + "5;1H        "), "A line that is gone should be cleared");
+    }
+}
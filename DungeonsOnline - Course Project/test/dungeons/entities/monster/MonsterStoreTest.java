@@ -0,0 +1,52 @@
+package dungeons.entities.monster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MonsterStoreTest {
+    @Test
+    void testViewsFollowTheirMonsterWhenSlotsMove() {
+        MonsterStore store = new MonsterStore(1);
+        Monster first = store.add(1, 0, 0);
+        Monster second = store.add(6, 1, 0);
+        Monster third = store.add(20, 2, 0);
+        store.remove(first);
+
+        assertEquals(2, store.size(), "The removed monster should leave the store");
+        assertFalse(store.asList().contains(first), "The removed monster should leave the list");
+        assertEquals(third, store.get(0), "The last monster should take the free slot");
+        assertEquals(2, third.getX(), "A moved monster should keep its position");
+        assertEquals('D', third.getCharForMonster(), "A moved monster should keep its type");
+        assertEquals('B', second.getCharForMonster(), "Other monsters should be left alone");
+    }
+
+    @Test
+    void testRemovedMonsterKeepsItsState() {
+        MonsterStore store = new MonsterStore();
+        Monster monster = store.add(3, 4, 5);
+        store.add(1, 0, 0);
+        monster.setCurrHealth(0);
+        store.remove(monster);
+
+        assertTrue(monster.isDead(), "A removed monster should stay dead");
+        assertEquals(4, monster.getX(), "A removed monster should keep its position");
+        assertEquals(30, monster.getTotalHealth(), "A removed monster should keep its stats");
+        assertThrows(IllegalArgumentException.class, () -> store.remove(monster),
+            "A monster cannot be removed twice");
+    }
+
+    @Test
+    void testFindDead() {
+        MonsterStore store = new MonsterStore();
+        store.add(1, 0, 0);
+        Monster monster = store.add(1, 1, 0);
+        assertEquals(MonsterStore.NO_SLOT, store.findDead(), "No monster should be dead yet");
+
+        monster.setCurrHealth(0);
+        assertEquals(monster, store.get(store.findDead()), "The dead monster should be found");
+    }
+}
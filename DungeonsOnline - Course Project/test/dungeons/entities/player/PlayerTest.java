@@ -8,8 +8,12 @@ import dungeons.treasure.Sword;
 import dungeons.treasure.Treasure;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PlayerTest {
@@ -72,7 +76,7 @@ public class PlayerTest {
     void testPlayerRespawn() {
         Player player = new Player();
         player.setCurrHealth(0);
-        player.respawn();
+        player.respawn(new Random(0));
         assertEquals(player.getCurrHealth(), player.getTotalHealth(),
             "respawn() should return the player to their total health");
     }
@@ -83,7 +87,7 @@ public class PlayerTest {
         Player player = new Player();
         player.putTreasure(treasure);
         player.setCurrHealth(0);
-        player.respawn();
+        player.respawn(new Random(0));
         assertTrue(player.getInventory().isEmpty(),
             "respawn() should remove a treasure from player's inventory");
     }
@@ -198,4 +202,19 @@ public class PlayerTest {
         assertEquals(levelBeforeLevelingUp + 1, player.getLevel(),
             "levelUp() should increase player's level by one");
     }
+
+    @Test
+    void testHudBytesAreRebuiltOnlyAfterAChange() {
+        Player player = new Player();
+        byte[] hud = player.getHudBytes();
+        assertSame(hud, player.getHudBytes(), "An unchanged player should reuse its encoded HUD");
+
+        player.setCurrHealth(player.getCurrHealth() - 1);
+        byte[] damagedHud = player.getHudBytes();
+        assertNotSame(hud, damagedHud, "Losing health should show on the HUD");
+
+        player.getInventory().putTreasure(new Sword(1, null));
+        assertEquals(player.toString(), new String(player.getHudBytes()),
+            "An inventory change should show on the HUD even when made on the inventory itself");
+    }
 }
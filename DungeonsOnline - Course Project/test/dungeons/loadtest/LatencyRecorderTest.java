@@ -0,0 +1,24 @@
+package dungeons.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyRecorderTest {
+    @Test
+    void testPercentilesOfRecordedSamples() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int sample = 100; sample >= 1; sample--) {
+            recorder.record(sample);
+        }
+
+        assertEquals(50, recorder.percentile(0.5), "The median of 1..100 should be 50");
+        assertEquals(99, recorder.percentile(0.99), "The 99th percentile of 1..100 should be 99");
+        assertEquals(100, recorder.percentile(1), "The 100th percentile should be the largest sample");
+    }
+
+    @Test
+    void testEmptyRecorderReportsZero() {
+        assertEquals(0, new LatencyRecorder().percentile(0.99), "Without samples every percentile should be 0");
+    }
+}
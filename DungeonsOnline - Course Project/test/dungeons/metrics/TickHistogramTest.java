@@ -0,0 +1,28 @@
+package dungeons.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TickHistogramTest {
+    private static final long NANOS_PER_MICRO = 1_000;
+
+    @Test
+    void testPercentilesReportTheUpperBoundOfTheirBucket() {
+        TickHistogram histogram = new TickHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100 * NANOS_PER_MICRO);
+        }
+        histogram.record(5_000 * NANOS_PER_MICRO);
+
+        assertEquals(100, histogram.getCount(), "Every recorded tick should be counted");
+        assertEquals(128, histogram.percentileMicros(0.5), "100us ticks fall into the bucket below 128us");
+        assertEquals(128, histogram.percentileMicros(0.99), "99 of the 100 ticks are below 128us");
+        assertEquals(8_192, histogram.percentileMicros(1), "The slowest tick falls into the bucket below 8192us");
+    }
+
+    @Test
+    void testEmptyHistogramReportsZero() {
+        assertEquals(0, new TickHistogram().percentileMicros(0.99), "Without ticks every percentile should be 0");
+    }
+}
@@ -0,0 +1,112 @@
+package dungeons.persistence;
+
+import dungeons.entities.player.Player;
+import dungeons.treasure.Staff;
+import dungeons.treasure.Sword;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProfileJournalTest {
+    private static final int PROFILE_ID = 7;
+    private static final long WAIT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private static void waitFor(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testProfileSurvivesRestart() throws IOException {
+        Player player = new Player();
+        player.setProfileId(PROFILE_ID);
+        player.putTreasure(new Sword(3, null));
+        player.putTreasure(new Staff(2, null));
+        player.equipTreasureAtIndex(1);
+        player.levelUp();
+
+        try (ProfileJournal journal = new ProfileJournal(directory)) {
+            journal.saveIfChanged(player);
+        }
+
+        try (ProfileJournal journal = new ProfileJournal(directory)) {
+            Player restored = new Player();
+            restored.loadProfile(journal.find(PROFILE_ID));
+            assertEquals(player.toString(), restored.toString(),
+                "A restored player should have the saved level, stats and inventory");
+            assertEquals(player.getProgressVersion(), restored.getProgressVersion(),
+                "A restored player should continue from the saved version");
+        }
+    }
+
+    @Test
+    void testLatestVersionWinsAfterCompaction() throws IOException {
+        Player player = new Player();
+        player.setProfileId(PROFILE_ID);
+
+        try (ProfileJournal journal = new ProfileJournal(directory, 2)) {
+            for (int level = 0; level < 5; level++) {
+                player.levelUp();
+                journal.saveIfChanged(player);
+            }
+        }
+
+        try (ProfileJournal journal = new ProfileJournal(directory, 2)) {
+            assertEquals(player.getLevel(), journal.find(PROFILE_ID).level(),
+                "The newest saved version of a profile should be loaded");
+            assertNull(journal.find(PROFILE_ID + 1), "Unknown profiles should not be found");
+        }
+    }
+
+    @Test
+    void testProfileCanOnlyBeUsedOnce() throws IOException {
+        try (ProfileJournal journal = new ProfileJournal(directory)) {
+            assertTrue(journal.login(PROFILE_ID), "A free profile should be usable");
+            assertFalse(journal.login(PROFILE_ID), "A profile in use should not be usable again");
+            journal.logout(PROFILE_ID);
+            assertTrue(journal.login(PROFILE_ID), "A profile should be usable again after logging out");
+        }
+    }
+
+    @Test
+    void testFailedWritesAreRetried() throws IOException, InterruptedException {
+        Player player = new Player();
+        player.setProfileId(PROFILE_ID);
+
+        try (ProfileJournal journal = new ProfileJournal(directory, 1)) {
+            // A directory in the way of the snapshot makes every snapshot fail.
+            Path blocker = Files.createDirectories(directory.resolve("profiles.snapshot").resolve("blocker"));
+            player.levelUp();
+            journal.saveIfChanged(player);
+            waitFor(() -> journal.getWriteFailures() > 0, "The snapshot should have failed");
+            assertNotNull(journal.getFailure(), "A failing journal should say why");
+
+            Files.delete(blocker);
+            Files.delete(blocker.getParent());
+            waitFor(() -> journal.getFailure() == null, "The journal should recover once writes succeed");
+            player.levelUp();
+            journal.saveIfChanged(player);
+        }
+
+        try (ProfileJournal journal = new ProfileJournal(directory)) {
+            assertEquals(player.getLevel(), journal.find(PROFILE_ID).level(),
+                "Profiles saved around a failure should be written");
+        }
+    }
+}
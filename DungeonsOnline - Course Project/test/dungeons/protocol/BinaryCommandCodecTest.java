@@ -0,0 +1,62 @@
+package dungeons.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryCommandCodecTest {
+    @Test
+    void testEncodeDecodeTrade() {
+        Command command = new Command();
+        command.set(Command.TRADE, 7, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCommandCodec.MAX_COMMAND_BYTES);
+        BinaryCommandCodec.encode(command, buffer);
+        buffer.flip();
+
+        Command decoded = new Command();
+        assertTrue(BinaryCommandCodec.decode(buffer, decoded), "A complete command should be decoded");
+        assertEquals(Command.TRADE, decoded.getOpcode());
+        assertEquals(7, decoded.getFirstOperand());
+        assertEquals(3, decoded.getSecondOperand());
+        assertFalse(buffer.hasRemaining(), "Decoding should consume exactly one command");
+    }
+
+    @Test
+    void testMoveKeepsItsSequenceNumber() {
+        Command command = new Command();
+        command.set(Command.MOVE, 'a', 70_000);
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCommandCodec.MAX_COMMAND_BYTES);
+        BinaryCommandCodec.encode(command, buffer);
+        buffer.flip();
+
+        Command decoded = new Command();
+        assertTrue(BinaryCommandCodec.decode(buffer, decoded));
+        assertEquals('a', decoded.getFirstOperand());
+        assertEquals(70_000, decoded.getSecondOperand());
+    }
+
+    @Test
+    void testDecodeIncompleteCommand() {
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        buffer.put(Command.ATTACK_MELEE).put((byte) 0);
+        buffer.flip();
+
+        assertFalse(BinaryCommandCodec.decode(buffer, new Command()),
+            "A command with missing operands should not be decoded");
+        assertEquals(0, buffer.position(), "An incomplete command should be left in the buffer");
+    }
+
+    @Test
+    void testTextCommandParsesToSameCommand() {
+        Command command = new Command();
+        assertTrue(TextCommandParser.parse("attack monster w", command));
+        assertEquals(Command.ATTACK_MONSTER, command.getOpcode());
+        assertEquals('w', command.getFirstOperand());
+        assertFalse(TextCommandParser.parse("equip first", command),
+            "Text commands with invalid numbers should be rejected");
+    }
+}
@@ -0,0 +1,91 @@
+package dungeons.protocol;
+
+import dungeons.world.CellGrid;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CellCompressorTest {
+    private static final String CELLS = ".#TM";
+
+    private static CellGrid dungeon(int rows, int cols, long seed) {
+        CellGrid cells = new CellGrid(rows, cols, '.');
+        Random random = new Random(seed);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (y % 8 == 0 || x % 8 == 0 || random.nextInt(20) == 0) {
+                    cells.set(x, y, CELLS.charAt(1 + random.nextInt(CELLS.length() - 1)));
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static char[][] decompress(ByteBuffer compressed, int rows, int cols) {
+        char[][] map = new char[rows][cols];
+        new CellDecompressor().decompress(compressed, map, rows, cols);
+        assertFalse(compressed.hasRemaining(), "Decompressing should consume every encoded byte");
+        return map;
+    }
+
+    private static char[][] area(CellGrid cells, int originX, int originY, int rows, int cols) {
+        char[][] area = new char[rows][cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                area[y][x] = cells.get(originX + x, originY + y);
+            }
+        }
+        return area;
+    }
+
+    @Test
+    void testRunsRestoreTheCells() {
+        CellGrid cells = new CellGrid(3, 40, '.');
+        cells.set(39, 1, '#');
+        ByteBuffer compressed = new CellCompressor().compress(cells, 0, 0, 3, 40);
+
+        assertEquals(CellCompressor.RLE, compressed.get(compressed.position()),
+            "Small areas should only be run-length encoded");
+        assertArrayEquals(cells.toArray(), decompress(compressed, 3, 40),
+            "Runs longer than a token holds should be restored");
+    }
+
+    @Test
+    void testLargeAreasAreDeflated() {
+        CellGrid cells = dungeon(128, 128, 7);
+        ByteBuffer compressed = new CellCompressor().compress(cells, 0, 0, 128, 128);
+
+        assertEquals(CellCompressor.DEFLATE, compressed.get(compressed.position()),
+            "Large areas should be deflated when that makes them smaller");
+        assertTrue(compressed.remaining() < 128 * 128 / 4, "A dungeon should compress well");
+        assertArrayEquals(cells.toArray(), decompress(compressed, 128, 128),
+            "Deflated cells should be restored");
+    }
+
+    @Test
+    void testAreaInsideTheGrid() {
+        CellGrid cells = dungeon(64, 64, 3);
+        ByteBuffer compressed = new CellCompressor(0).compress(cells, 10, 20, 15, 30);
+
+        assertArrayEquals(area(cells, 10, 20, 15, 30), decompress(compressed, 15, 30),
+            "Only the given area should be encoded");
+    }
+
+    @Test
+    void testTooManyDifferentCells() {
+        CellGrid cells = new CellGrid(1, CellCompressor.MAX_SYMBOLS + 1, '.');
+        for (int x = 0; x < cells.getCols(); x++) {
+            cells.set(x, 0, (char) ('a' + x));
+        }
+
+        assertNull(new CellCompressor().compress(cells, 0, 0, 1, cells.getCols()),
+            "Cells that do not fit the dictionary should not be compressed");
+    }
+}
@@ -0,0 +1,88 @@
+package dungeons.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandDecoderTest {
+    @Test
+    void testEveryTextCommandInOneReadIsDecoded() {
+        CommandDecoder decoder = new CommandDecoder(true);
+        ByteBuffer buffer = ByteBuffer.wrap("attack monster w\r\nequip 2\nwwd\n".getBytes(StandardCharsets.UTF_8));
+        Command command = new Command();
+
+        assertTrue(decoder.next(buffer, command));
+        assertEquals(Command.ATTACK_MONSTER, command.getOpcode());
+        assertEquals('w', command.getFirstOperand());
+        assertTrue(decoder.next(buffer, command));
+        assertEquals(Command.EQUIP, command.getOpcode());
+        assertEquals(2, command.getFirstOperand());
+        for (char direction : "wwd".toCharArray()) {
+            assertTrue(decoder.next(buffer, command), "Glued moves should be decoded one by one");
+            assertEquals(Command.MOVE, command.getOpcode());
+            assertEquals(direction, command.getFirstOperand());
+        }
+        assertFalse(decoder.next(buffer, command));
+        assertFalse(buffer.hasRemaining(), "Line ends should be consumed with their commands");
+    }
+
+    @Test
+    void testMalformedAttackIsSkipped() {
+        CommandDecoder decoder = new CommandDecoder(true);
+        ByteBuffer buffer = ByteBuffer.wrap("attack monster  w\n".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(decoder.next(buffer, new Command()), "An attack without a direction should not be decoded");
+        assertFalse(buffer.hasRemaining(), "The malformed line should be consumed");
+    }
+
+    @Test
+    void testUnterminatedLineWaitsForTheRest() {
+        CommandDecoder decoder = new CommandDecoder(true);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put("equip 1".getBytes(StandardCharsets.UTF_8));
+        buffer.flip();
+        Command command = new Command();
+
+        assertFalse(decoder.next(buffer, command), "A line without its end should not be decoded yet");
+        assertEquals(0, buffer.position(), "The partial line should stay in the buffer");
+
+        buffer.compact();
+        buffer.put("2\nw".getBytes(StandardCharsets.UTF_8));
+        buffer.flip();
+        assertTrue(decoder.next(buffer, command));
+        assertEquals(Command.EQUIP, command.getOpcode());
+        assertEquals(12, command.getFirstOperand(), "The command should be decoded from the whole line");
+        assertFalse(decoder.next(buffer, command), "A move key without its line end should wait too");
+        assertEquals(1, buffer.remaining());
+    }
+
+    @Test
+    void testLineFillingTheBufferIsDropped() {
+        CommandDecoder decoder = new CommandDecoder(true);
+        ByteBuffer buffer = ByteBuffer.wrap("equip 1234567".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(decoder.next(buffer, new Command()));
+        assertFalse(buffer.hasRemaining(), "A line that can never end in the buffer should not block the input");
+    }
+
+    @Test
+    void testInvalidTextIsSkippedAndBinaryFollows() {
+        CommandDecoder decoder = new CommandDecoder(true);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put("equip first\n".getBytes(StandardCharsets.UTF_8));
+        Command respawn = new Command();
+        respawn.set(Command.RESPAWN, 0, 0);
+        BinaryCommandCodec.encode(respawn, buffer);
+        buffer.flip();
+
+        Command command = new Command();
+        assertTrue(decoder.next(buffer, command));
+        assertEquals(Command.RESPAWN, command.getOpcode());
+        assertFalse(buffer.hasRemaining());
+    }
+}
@@ -0,0 +1,34 @@
+package dungeons.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class FramePoolTest {
+    @Test
+    void testReleasedFrameIsReusedForFramesOfTheSameSize() {
+        FramePool framePool = new FramePool();
+        ByteBuffer frame = framePool.acquireFrame(100);
+        assertEquals(100, frame.getInt(0), "The frame should start with its payload length");
+        assertEquals(FrameReader.LENGTH_PREFIX_BYTES + 100, frame.limit(), "The frame should fit its payload exactly");
+
+        framePool.release(frame);
+        ByteBuffer reused = framePool.acquireFrame(200);
+        assertSame(frame, reused, "A released frame should be handed out again");
+        assertEquals(200, reused.getInt(0), "A reused frame should get the new payload length");
+        assertEquals(FrameReader.LENGTH_PREFIX_BYTES, reused.position(), "A reused frame should be ready for its payload");
+        assertNotSame(reused, framePool.acquireFrame(200), "A frame in use should not be handed out twice");
+    }
+
+    @Test
+    void testOnlyPooledFramesAreKept() {
+        FramePool framePool = new FramePool();
+        framePool.release(FrameReader.allocateFrame(100));
+        framePool.release(framePool.acquireFrame(4 * 1_024 * 1_024));
+        assertEquals(0, framePool.getPooledCount(), "Heap frames and frames above the largest size should not be pooled");
+    }
+}
@@ -0,0 +1,226 @@
+package dungeons.protocol;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.server.ClientSession;
+import dungeons.world.CellGrid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotEncoderTest {
+    private static final char[][] TEST_MAP = {
+        {'.', '.', '.', '.', '.'},
+        {'#', '.', '.', '.', '.'},
+        {'#', '.', '.', '.', '.'},
+        {'#', '.', '.', '.', '.'},
+    };
+
+    private GameMap gameMap;
+    private SnapshotEncoder snapshotEncoder;
+    private SnapshotDecoder snapshotDecoder;
+
+    private static char[][] deepCopyCharArray(char[][] original) {
+        char[][] copy = new char[original.length][];
+        for (int i = 0; i < original.length; i++) {
+            copy[i] = original[i].clone();
+        }
+        return copy;
+    }
+
+    @BeforeEach
+    void init() {
+        gameMap = new GameMap(deepCopyCharArray(TEST_MAP));
+        snapshotEncoder = new SnapshotEncoder(gameMap.getCells());
+        snapshotDecoder = new SnapshotDecoder();
+    }
+
+    @Test
+    void testKeyframeRestoresWholeMap() {
+        snapshotEncoder.nextFrame(gameMap);
+        assertTrue(snapshotDecoder.decode(snapshotEncoder.getKeyframe()),
+            "A keyframe should always be applied");
+        assertArrayEquals(gameMap.getMap(), snapshotDecoder.getMap(),
+            "Decoding a keyframe should restore the whole map");
+    }
+
+    @Test
+    void testDeltaContainsOnlyChangedCells() throws PlayerCharAlreadyExistsException {
+        snapshotEncoder.nextFrame(gameMap);
+        snapshotDecoder.decode(snapshotEncoder.getKeyframe());
+
+        Player player = new Player();
+        gameMap.connectPlayer(player);
+        snapshotEncoder.nextFrame(gameMap);
+        ByteBuffer delta = snapshotEncoder.getDelta();
+
+        assertEquals(SnapshotEncoder.HEADER_BYTES + Integer.BYTES + SnapshotEncoder.CHANGED_CELL_BYTES,
+            delta.remaining(), "Connecting one player should change exactly one cell");
+        assertTrue(snapshotDecoder.decode(delta), "A delta following the last frame should be applied");
+        assertArrayEquals(gameMap.getMap(), snapshotDecoder.getMap(),
+            "Applying a delta should patch the local map to the server state");
+    }
+
+    @Test
+    void testDeltaForMissedFrameRequiresResync() {
+        snapshotEncoder.nextFrame(gameMap);
+        snapshotDecoder.decode(snapshotEncoder.getKeyframe());
+
+        gameMap.setPosition(new GamePosition(1, 1), '#');
+        snapshotEncoder.nextFrame(gameMap);
+        gameMap.setPosition(new GamePosition(2, 2), '#');
+        snapshotEncoder.nextFrame(gameMap);
+
+        assertFalse(snapshotDecoder.decode(snapshotEncoder.getDelta()),
+            "A delta that skips a frame should not be applied");
+    }
+
+    @Test
+    void testOlderFramesAreStale() {
+        snapshotEncoder.nextFrame(gameMap);
+        ByteBuffer olderKeyframe = snapshotEncoder.getKeyframe();
+        snapshotEncoder.nextFrame(gameMap);
+        ByteBuffer newerKeyframe = snapshotEncoder.getKeyframe();
+
+        assertFalse(snapshotDecoder.isStale(newerKeyframe), "A frame newer than any decoded should be applied");
+        snapshotDecoder.decode(newerKeyframe);
+        assertTrue(snapshotDecoder.isStale(olderKeyframe), "A frame arriving after a newer one should be dropped");
+        assertTrue(snapshotDecoder.isStale(snapshotEncoder.getKeyframe()), "A repeated frame should be dropped");
+        assertFalse(snapshotDecoder.isStale(SnapshotEncoder.encodeMessage("hello").position(
+            FrameReader.LENGTH_PREFIX_BYTES)), "Messages are never stale");
+    }
+
+    @Test
+    void testKeyframeOlderThanRejectedDeltaIsApplied() {
+        snapshotEncoder.nextFrame(gameMap);
+        snapshotDecoder.decode(snapshotEncoder.getKeyframe());
+
+        gameMap.setPosition(new GamePosition(1, 1), '#');
+        snapshotEncoder.nextFrame(gameMap);
+        ByteBuffer missedKeyframe = snapshotEncoder.getKeyframe();
+        gameMap.setPosition(new GamePosition(2, 2), '#');
+        snapshotEncoder.nextFrame(gameMap);
+        snapshotDecoder.decode(snapshotEncoder.getDelta());
+
+        assertFalse(snapshotDecoder.isStale(missedKeyframe),
+            "A keyframe arriving after a rejected delta should end the wait for a resync");
+        assertTrue(snapshotDecoder.decode(missedKeyframe.duplicate()), "A keyframe should always be applied");
+        assertTrue(snapshotDecoder.isStale(missedKeyframe), "The applied keyframe should not be applied again");
+    }
+
+    @Test
+    void testViewKeyframeContainsOnlyTheWindow() {
+        snapshotEncoder.nextFrame(gameMap);
+        ViewWindow viewWindow = new ViewWindow(TEST_MAP.length, TEST_MAP[0].length, 1);
+
+        assertTrue(snapshotDecoder.decode(snapshotEncoder.encodeView(viewWindow, new GamePosition(4, 0), true)),
+            "A view keyframe should always be applied");
+        assertEquals(2, snapshotDecoder.getOriginX(), "The window should be clamped to the right map edge");
+        assertEquals(0, snapshotDecoder.getOriginY(), "The window should be clamped to the top map edge");
+        assertWindowMatchesMap();
+    }
+
+    @Test
+    void testViewDeltaShiftsTheWindow() {
+        snapshotEncoder.nextFrame(gameMap);
+        ViewWindow viewWindow = new ViewWindow(TEST_MAP.length, TEST_MAP[0].length, 1);
+        snapshotDecoder.decode(snapshotEncoder.encodeView(viewWindow, new GamePosition(1, 1), true));
+
+        gameMap.setPosition(new GamePosition(3, 3), '#');
+        snapshotEncoder.nextFrame(gameMap);
+
+        assertTrue(snapshotDecoder.decode(snapshotEncoder.encodeView(viewWindow, new GamePosition(2, 2), false)),
+            "A view delta following the last frame should be applied");
+        assertEquals(1, snapshotDecoder.getOriginX(), "The client should follow the window origin");
+        assertEquals(1, snapshotDecoder.getOriginY(), "The client should follow the window origin");
+        assertWindowMatchesMap();
+    }
+
+    @Test
+    void testCompressedKeyframeRestoresWholeMap() {
+        useRoomWithWall();
+        snapshotEncoder.nextFrame(gameMap);
+        ByteBuffer keyframe = snapshotEncoder.getCompressedKeyframe();
+
+        assertEquals(SnapshotEncoder.COMPRESSED_KEYFRAME, keyframe.get(keyframe.position()),
+            "A map of long runs should be compressed");
+        assertTrue(keyframe.remaining() < snapshotEncoder.getKeyframe().remaining(),
+            "A compressed keyframe should be smaller than the plain one");
+        assertTrue(snapshotDecoder.decode(keyframe), "A compressed keyframe should always be applied");
+        assertFalse(keyframe.hasRemaining(), "Decoding should consume the whole compressed keyframe");
+        assertArrayEquals(gameMap.getMap(), snapshotDecoder.getMap(),
+            "Decoding a compressed keyframe should restore the whole map");
+    }
+
+    @Test
+    void testCompressedViewKeyframeContainsOnlyTheWindow() {
+        useRoomWithWall();
+        snapshotEncoder.nextFrame(gameMap);
+        ViewWindow viewWindow = new ViewWindow(gameMap.getRows(), gameMap.getCols(), 3);
+        ByteBuffer keyframe = snapshotEncoder.encodeView(viewWindow, new GamePosition(15, 12), true, true);
+
+        assertEquals(SnapshotEncoder.COMPRESSED_VIEW_KEYFRAME, keyframe.get(keyframe.position()),
+            "A window of long runs should be compressed");
+        assertTrue(snapshotDecoder.decode(keyframe), "A compressed view keyframe should always be applied");
+        assertEquals(9, snapshotDecoder.getOriginX(), "The window should be clamped to the right map edge");
+        assertEquals(9, snapshotDecoder.getOriginY(), "The window should be centered on the player");
+        assertWindowMatchesMap();
+    }
+
+    @Test
+    void testGameFrameListsPlayersWithTheirIds() throws PlayerCharAlreadyExistsException {
+        Player first = new Player();
+        Player second = new Player();
+        gameMap.connectPlayer(first);
+        gameMap.connectPlayer(second);
+        ClientSession session = new ClientSession(first);
+
+        ByteBuffer frame = gameMap.encodeFrame(session, gameMap.nextFrame());
+        frame.getInt();
+        assertTrue(snapshotDecoder.decode(frame), "The first frame of a client should be a keyframe");
+        snapshotDecoder.decodePlayers(frame);
+        snapshotDecoder.decodeInputAck(frame);
+
+        assertEquals(2, snapshotDecoder.getPlayerCount(), "Every player on the map should be listed");
+        assertEquals(first.getId(), snapshotDecoder.getOwnId(), "The frame should say which player it was sent to");
+        for (int i = 0; i < snapshotDecoder.getPlayerCount(); i++) {
+            Player player = gameMap.getPlayerById(snapshotDecoder.getPlayerId(i));
+            assertEquals(new GamePosition(snapshotDecoder.getPlayerX(i), snapshotDecoder.getPlayerY(i)),
+                player.getGamePosition(), "A listed player should be at its position on the map");
+        }
+        assertEquals(first.toString(), StandardCharsets.UTF_8.decode(frame).toString(),
+            "The player's stats should follow the list of players");
+    }
+
+    // The test map is too small for compression to pay off.
+    private void useRoomWithWall() {
+        char[][] cells = new char[16][16];
+        for (char[] row : cells) {
+            Arrays.fill(row, '.');
+        }
+        Arrays.fill(cells[12], '#');
+        gameMap = new GameMap(CellGrid.of(cells), 0);
+        snapshotEncoder = new SnapshotEncoder(gameMap.getCells());
+    }
+
+    private void assertWindowMatchesMap() {
+        char[][] map = gameMap.getMap();
+        char[][] window = snapshotDecoder.getMap();
+        for (int y = 0; y < snapshotDecoder.getRows(); y++) {
+            for (int x = 0; x < snapshotDecoder.getCols(); x++) {
+                assertEquals(map[snapshotDecoder.getOriginY() + y][snapshotDecoder.getOriginX() + x], window[y][x],
+                    "The received window should match the map at its origin");
+            }
+        }
+    }
+}
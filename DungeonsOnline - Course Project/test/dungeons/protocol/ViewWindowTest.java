@@ -0,0 +1,55 @@
+package dungeons.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ViewWindowTest {
+    private static final int ROWS = 5;
+    private static final int COLS = 4;
+    private static final char FILL = '?';
+
+    private static char[][] window() {
+        char[][] cells = new char[ROWS][COLS];
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                cells[y][x] = (char) ('a' + y * COLS + x);
+            }
+        }
+        return cells;
+    }
+
+    private static char[][] copiedShift(char[][] cells, int dx, int dy) {
+        char[][] shifted = new char[ROWS][COLS];
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                int fromX = x + dx;
+                int fromY = y + dy;
+                boolean inside = fromY >= 0 && fromY < ROWS && fromX >= 0 && fromX < COLS;
+                shifted[y][x] = inside ? cells[fromY][fromX] : FILL;
+            }
+        }
+        return shifted;
+    }
+
+    @Test
+    void testShiftKeepsCellsOnTheirMapPosition() {
+        for (int dy = -ROWS; dy <= ROWS; dy++) {
+            for (int dx = -COLS; dx <= COLS; dx++) {
+                char[][] cells = window();
+                char[][] expected = copiedShift(cells, dx, dy);
+                ViewWindow.shift(cells, dx, dy, FILL);
+                assertArrayEquals(expected, cells, "Shifting by (" + dx + ", " + dy + ") moved the wrong cells");
+            }
+        }
+    }
+
+    @Test
+    void testShiftReusesTheRows() {
+        char[][] cells = window();
+        char[] firstRow = cells[0];
+        ViewWindow.shift(cells, 1, 1, FILL);
+        assertSame(firstRow, cells[ROWS - 1], "The row that scrolled out of view should hold the new one");
+    }
+}
@@ -0,0 +1,89 @@
+package dungeons.replay;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.protocol.Command;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayTest {
+    private static final MatchSettings SETTINGS = new MatchSettings(42, 48, 48, 20, 20);
+    private static final String MOVES = "wasdddssaw";
+
+    @Test
+    void testReplayEndsInTheRecordedState() throws IOException, PlayerCharAlreadyExistsException {
+        GameMap gameMap = SETTINGS.createMap();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ActionLog actionLog = new ActionLog(bytes, SETTINGS);
+        Player[] players = new Player[3];
+        Command command = new Command();
+        int ticksUntilMonsterTurn = SETTINGS.getTicksPerMonsterTurn();
+        int tick = 0;
+        int actions = 0;
+        for (; tick < 200; tick++) {
+            if (tick < players.length) {
+                players[tick] = new Player();
+                gameMap.connectPlayer(players[tick]);
+                actionLog.playerJoined(tick, players[tick]);
+            }
+            for (Player player : players) {
+                if (player != null && player.getId() != Player.NO_ID) {
+                    command.set(Command.MOVE, MOVES.charAt((tick + player.getId()) % MOVES.length()), 0);
+                    actionLog.actionApplied(tick, player, command);
+                    gameMap.handleCommand(player, command.getOpcode(), command.getFirstOperand(), 0);
+                    actions++;
+                }
+            }
+            if (tick == 150) {
+                actionLog.playerLeft(tick, players[1]);
+                gameMap.disconnectPlayer(players[1]);
+            }
+            if (--ticksUntilMonsterTurn == 0) {
+                gameMap.moveMonsters();
+                ticksUntilMonsterTurn = SETTINGS.getTicksPerMonsterTurn();
+            }
+        }
+        actionLog.close(tick);
+
+        Replay replay = new Replay(SETTINGS);
+        replay.run(new ActionLogReader(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(tick, replay.getTick());
+        assertEquals(actions, replay.getActionCount());
+        assertEquals(Replay.checksum(gameMap), Replay.checksum(replay.getGameMap()),
+            "The same settings and actions should always end in the same state");
+    }
+
+    @Test
+    void testLogCutShortIsReadUpToItsLastRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ActionLog actionLog = new ActionLog(bytes, SETTINGS);
+        Player player = new Player();
+        player.setId(5);
+        Command command = new Command();
+        command.set(Command.TRADE, -3, 300);
+        actionLog.actionApplied(7, player, command);
+        actionLog.close(9);
+        byte[] log = bytes.toByteArray();
+
+        ActionLogReader reader = new ActionLogReader(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 1)));
+        assertEquals(SETTINGS, reader.getSettings());
+        Command read = new Command();
+        assertTrue(reader.next(read));
+        assertEquals(ActionLog.ACTION, reader.getKind());
+        assertEquals(7, reader.getTick());
+        assertEquals(5, reader.getPlayerId());
+        assertEquals(Command.TRADE, read.getOpcode());
+        assertEquals(-3, read.getFirstOperand());
+        assertEquals(300, read.getSecondOperand());
+        assertFalse(reader.next(read), "A record cut in half should end the log");
+    }
+}
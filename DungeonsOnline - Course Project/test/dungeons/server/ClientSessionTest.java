@@ -0,0 +1,75 @@
+package dungeons.server;
+
+import dungeons.protocol.FrameReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClientSessionTest {
+    private DatagramChannel server;
+    private DatagramChannel client;
+
+    @BeforeEach
+    void init() throws IOException {
+        server = DatagramChannel.open();
+        server.configureBlocking(false);
+        client = DatagramChannel.open();
+        client.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+        client.close();
+    }
+
+    private static ByteBuffer frame(int payloadLength) {
+        ByteBuffer frame = FrameReader.allocateFrame(payloadLength);
+        while (frame.hasRemaining()) {
+            frame.put((byte) frame.position());
+        }
+        frame.flip();
+        return frame;
+    }
+
+    @Test
+    void testFramesStayOnTheConnectionUnlessAsked() {
+        assertFalse(new ClientSession().sendDatagram(frame(16)),
+            "A client that did not ask for datagrams should get its frames over the connection");
+    }
+
+    @Test
+    void testFrameIsSentAsOneDatagram() throws IOException {
+        ClientSession session = new ClientSession();
+        session.setDatagramTarget(server, (InetSocketAddress) client.getLocalAddress());
+        ByteBuffer sent = frame(16);
+
+        assertTrue(session.sendDatagram(sent.duplicate()), "A small frame should be sent as a datagram");
+        ByteBuffer received = ByteBuffer.allocate(FrameReader.MAX_DATAGRAM_BYTES);
+        client.receive(received);
+        received.flip();
+        assertEquals(sent, received, "The datagram should hold the frame with its length prefix");
+        assertTrue(FrameReader.unwrapDatagram(received), "The length prefix should match the datagram");
+        assertEquals(16, received.remaining(), "Unwrapping should leave the payload");
+        assertEquals(sent.remaining(), session.getDatagramBytes(), "Sent datagrams should be counted");
+    }
+
+    @Test
+    void testLargeFramesStayOnTheConnection() throws IOException {
+        ClientSession session = new ClientSession();
+        session.setDatagramTarget(server, (InetSocketAddress) client.getLocalAddress());
+
+        assertFalse(session.sendDatagram(frame(FrameReader.MAX_DATAGRAM_BYTES)),
+            "A frame that does not fit one packet should go over the connection");
+    }
+}
@@ -0,0 +1,70 @@
+package dungeons.server;
+
+import dungeons.entities.player.Player;
+import dungeons.protocol.Command;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandQueueTest {
+    private static Player player(int id) {
+        Player player = new Player();
+        player.setId(id);
+        return player;
+    }
+
+    private static Command move(char direction) {
+        Command command = new Command();
+        command.set(Command.MOVE, direction, 0);
+        return command;
+    }
+
+    @Test
+    void testPlayersOverTheLimitWaitForTheNextTick() {
+        CommandQueue queue = new CommandQueue(2);
+        Player spammer = player(0);
+        Player other = player(1);
+        for (char direction : "wasd".toCharArray()) {
+            queue.add(spammer, move(direction));
+        }
+        queue.add(other, move('w'));
+
+        Command command = new Command();
+        queue.beginTick();
+        assertSame(spammer, queue.poll(command));
+        assertEquals('w', command.getFirstOperand());
+        assertSame(spammer, queue.poll(command));
+        assertEquals('a', command.getFirstOperand());
+        assertSame(other, queue.poll(command), "Other players should not wait behind a spammer");
+        assertNull(queue.poll(command));
+        assertEquals(2, queue.size());
+
+        queue.beginTick();
+        assertSame(spammer, queue.poll(command));
+        assertEquals('s', command.getFirstOperand());
+        assertSame(spammer, queue.poll(command));
+        assertEquals('d', command.getFirstOperand());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testBacklogIsBounded() {
+        CommandQueue queue = new CommandQueue(1);
+        Player spammer = player(0);
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (queue.add(spammer, move('w'))) {
+                accepted++;
+            }
+        }
+        assertTrue(accepted < 100, "A player should not be able to queue without bound");
+
+        queue.removePlayer(spammer);
+        assertTrue(queue.add(spammer, move('w')), "Leaving should clear the player's backlog");
+        assertFalse(queue.add(new Player(), move('w')), "Players outside the map cannot act");
+    }
+}
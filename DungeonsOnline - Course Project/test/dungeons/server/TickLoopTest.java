@@ -0,0 +1,59 @@
+package dungeons.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TickLoopTest {
+    private static final int TICKS_PER_SECOND = 10;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private long nowNanos;
+
+    // A tick whose work takes the given time on the fake clock.
+    private void runTick(TickLoop tickLoop, long workMillis) {
+        long start = tickLoop.beginTick();
+        nowNanos += workMillis * NANOS_PER_MILLI;
+        tickLoop.endTick(start);
+    }
+
+    @Test
+    void testTickDurationsAreAccounted() {
+        TickLoop tickLoop = new TickLoop(TICKS_PER_SECOND, () -> nowNanos);
+        assertEquals(0, tickLoop.getAverageTickDurationNanos(), "No tick has run yet");
+
+        runTick(tickLoop, 20);
+        assertFalse(tickLoop.isTickDue(), "The next tick should wait for its period");
+        assertEquals(80, tickLoop.millisUntilNextTick(), "The rest of the period should be waited");
+
+        nowNanos = 100 * NANOS_PER_MILLI;
+        assertTrue(tickLoop.isTickDue(), "A tick should be due once its period passed");
+        runTick(tickLoop, 40);
+
+        assertEquals(2, tickLoop.getTickCount(), "Every tick should be counted");
+        assertEquals(40 * NANOS_PER_MILLI, tickLoop.getLastTickDurationNanos(), "The last tick should be kept");
+        assertEquals(40 * NANOS_PER_MILLI, tickLoop.getMaxTickDurationNanos(), "The longest tick should be kept");
+        assertEquals(30 * NANOS_PER_MILLI, tickLoop.getAverageTickDurationNanos(),
+            "The average should cover every tick");
+        assertEquals(0, tickLoop.getOverrunCount(), "Ticks within their period are not overruns");
+    }
+
+    @Test
+    void testOverrunSkipsMissedTicks() {
+        TickLoop tickLoop = new TickLoop(TICKS_PER_SECOND, () -> nowNanos);
+        runTick(tickLoop, 250);
+
+        assertEquals(1, tickLoop.getOverrunCount(), "A tick longer than its period should be an overrun");
+        assertEquals(100, tickLoop.millisUntilNextTick(),
+            "The next tick should be a full period after the overrun instead of catching up");
+
+        nowNanos += 100 * NANOS_PER_MILLI;
+        runTick(tickLoop, 10);
+        assertEquals(1, tickLoop.getOverrunCount(), "A tick within its period should not be an overrun");
+        assertEquals(250 * NANOS_PER_MILLI, tickLoop.getMaxTickDurationNanos(), "The longest tick should be kept");
+        assertEquals(130 * NANOS_PER_MILLI, tickLoop.getAverageTickDurationNanos(),
+            "The average should cover every tick");
+    }
+}
@@ -0,0 +1,75 @@
+package dungeons.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DungeonGeneratorTest {
+    private static final int MAP_SIZE = 200;
+    private static final long SEED = 42;
+
+    @Test
+    void testSameSeedGeneratesSameDungeon() {
+        assertArrayEquals(DungeonGenerator.generate(MAP_SIZE, MAP_SIZE, SEED).toArray(),
+            DungeonGenerator.generate(MAP_SIZE, MAP_SIZE, SEED).toArray(),
+            "A dungeon should be reproducible from its seed");
+    }
+
+    @Test
+    void testAllFloorIsReachable() {
+        CellGrid cells = DungeonGenerator.generate(MAP_SIZE, MAP_SIZE, SEED);
+        int floorCells = 0;
+        int startX = -1;
+        int startY = -1;
+        for (int y = 0; y < MAP_SIZE; y++) {
+            for (int x = 0; x < MAP_SIZE; x++) {
+                if (cells.get(x, y) == '.') {
+                    floorCells++;
+                    startX = x;
+                    startY = y;
+                }
+            }
+        }
+        assertTrue(floorCells > 0, "The dungeon should have floor");
+        assertEquals(floorCells, countReachable(cells, startX, startY),
+            "Every floor cell should be reachable from every other one");
+    }
+
+    @Test
+    void testUntouchedChunksAreNotAllocated() {
+        CellGrid cells = new CellGrid(10_000, 10_000, '#');
+        cells.set(9_999, 9_999, '.');
+
+        assertEquals(1, cells.getAllocatedChunks(), "Only the chunk holding the changed cell should be allocated");
+        assertEquals('.', cells.get(9_999, 9_999), "The changed cell should be stored");
+        assertEquals('#', cells.get(0, 0), "Untouched cells should read as the fill");
+    }
+
+    private static int countReachable(CellGrid cells, int startX, int startY) {
+        boolean[][] visited = new boolean[cells.getRows()][cells.getCols()];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] {startX, startY});
+        visited[startY][startX] = true;
+        int reachable = 0;
+        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            reachable++;
+            for (int[] direction : directions) {
+                int x = cell[0] + direction[0];
+                int y = cell[1] + direction[1];
+                if (x >= 0 && y >= 0 && x < cells.getCols() && y < cells.getRows() &&
+                    !visited[y][x] && cells.get(x, y) == '.') {
+                    visited[y][x] = true;
+                    queue.add(new int[] {x, y});
+                }
+            }
+        }
+        return reachable;
+    }
+}
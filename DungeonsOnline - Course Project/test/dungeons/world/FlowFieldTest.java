@@ -0,0 +1,45 @@
+package dungeons.world;
+
+import dungeons.entities.position.GamePosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FlowFieldTest {
+    private static final char[][] MAP = {
+        {'.', '.', '.', '#', '.'},
+        {'.', '#', '.', '#', '.'},
+        {'.', '#', '.', '.', '.'},
+        {'.', '#', '#', '#', '#'},
+        {'.', '.', '.', '.', '.'},
+    };
+
+    @Test
+    void testDistancesGoAroundWalls() {
+        FlowField flowField = new FlowField(CellGrid.of(MAP));
+        flowField.compute(List.of(new GamePosition(0, 0)), FlowField.MAX_DISTANCE);
+
+        assertEquals(0, flowField.distance(0, 0), "A source should be at distance 0");
+        assertEquals(4, flowField.distance(2, 2), "The distance should follow the corridor");
+        assertEquals(8, flowField.distance(4, 0), "The distance should go around the wall in between");
+        assertEquals(8, flowField.distance(4, 4), "The distance should follow the corridor");
+        assertEquals(FlowField.UNREACHED, flowField.distance(1, 1), "Walls should never be reached");
+    }
+
+    @Test
+    void testNearestSourceWinsAndSearchStopsAtMaxDistance() {
+        FlowField flowField = new FlowField(CellGrid.of(MAP));
+        flowField.compute(List.of(new GamePosition(0, 0), new GamePosition(4, 4)), 3);
+
+        assertEquals(1, flowField.distance(3, 4), "The distance should be to the nearest source");
+        assertEquals(3, flowField.distance(0, 3), "The distance should be to the nearest source");
+        assertEquals(FlowField.UNREACHED, flowField.distance(2, 2),
+            "Cells further than the maximum distance should not be reached");
+
+        flowField.compute(List.of(new GamePosition(4, 4)), 1);
+        assertEquals(FlowField.UNREACHED, flowField.distance(0, 0),
+            "A new search should forget the previous one");
+    }
+}
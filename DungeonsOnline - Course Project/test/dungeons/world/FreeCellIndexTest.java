@@ -0,0 +1,63 @@
+package dungeons.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FreeCellIndexTest {
+    @Test
+    void testOnlyFloorIsIndexed() {
+        CellGrid cells = CellGrid.of(new char[][] {
+            {'.', '#', 'T'},
+            {'M', '.', '.'},
+        });
+        FreeCellIndex freeCells = new FreeCellIndex(cells);
+
+        assertEquals(3, freeCells.size(), "Every floor cell should be free");
+        assertTrue(freeCells.contains(0, 0), "A floor cell should be free");
+        assertFalse(freeCells.contains(1, 0), "A wall should not be free");
+        assertFalse(freeCells.contains(2, 0), "A treasure should not be free");
+    }
+
+    @Test
+    void testRemovedCellsAreNeverPicked() {
+        CellGrid cells = new CellGrid(100, 100, '.');
+        FreeCellIndex freeCells = new FreeCellIndex(cells);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                if (x != 70 || y % 10 != 0) {
+                    freeCells.remove(x, y);
+                }
+            }
+        }
+        freeCells.remove(70, 0);
+        freeCells.remove(70, 0);
+        freeCells.add(70, 90);
+
+        assertEquals(9, freeCells.size(), "Removing or adding a cell twice should change nothing");
+        Random random = new Random(1);
+        Set<Integer> picked = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            int cell = freeCells.pickRandom(random);
+            assertEquals(70, cell % 100, "Only cells still free should be picked");
+            assertTrue(freeCells.contains(cell % 100, cell / 100), "Only cells still free should be picked");
+            picked.add(cell);
+        }
+        assertEquals(9, picked.size(), "Every free cell should be picked");
+    }
+
+    @Test
+    void testFullGridHasNoCell() {
+        FreeCellIndex freeCells = new FreeCellIndex(new CellGrid(2, 2, '#'));
+        assertEquals(FreeCellIndex.NO_CELL, freeCells.pickRandom(new Random()), "A full grid has no free cell");
+
+        freeCells.add(1, 1);
+        assertEquals(3, freeCells.pickRandom(new Random()), "A freed cell should be picked");
+    }
+}
@@ -0,0 +1,32 @@
+package dungeons.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class IdAllocatorTest {
+    @Test
+    void testReleasedIdsAreReusedLowestFirst() {
+        IdAllocator idAllocator = new IdAllocator();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, idAllocator.allocate(), "Fresh ids should be handed out in order");
+        }
+        idAllocator.release(3);
+        idAllocator.release(1);
+
+        assertEquals(1, idAllocator.allocate(), "The lowest released id should be reused first");
+        assertEquals(3, idAllocator.allocate(), "Every released id should be reused before new ones");
+        assertEquals(5, idAllocator.allocate(), "A new id should follow the highest one in use");
+        assertEquals(6, idAllocator.getAllocatedCount(), "Every allocated id should be counted once");
+    }
+
+    @Test
+    void testReleasingAFreeIdFails() {
+        IdAllocator idAllocator = new IdAllocator();
+        idAllocator.allocate();
+        idAllocator.release(0);
+        assertThrows(IllegalArgumentException.class, () -> idAllocator.release(0),
+            "An id cannot be released twice");
+    }
+}
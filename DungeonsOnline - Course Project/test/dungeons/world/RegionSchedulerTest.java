@@ -0,0 +1,141 @@
+package dungeons.world;
+
+import dungeons.GameMap;
+import dungeons.entities.player.Player;
+import dungeons.entities.position.GamePosition;
+import dungeons.exception.PlayerCharAlreadyExistsException;
+import dungeons.protocol.Command;
+import dungeons.server.CommandQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionSchedulerTest {
+    private static final int MAP_SIZE = 12;
+    private static final int SPAWN_MAP_SIZE = 200;
+    private static final int SPAWN_MONSTERS = 5;
+    private static final long SEED = 7;
+    private static final int PLAYERS_PER_REGION = 200;
+    private static final int PLAYERS_PER_ROW = 10;
+    private static final int PLAYER_SPACING = 6;
+    private static final int TICKS = 8;
+    private static final int RUNS = 10;
+
+    private GameMap gameMap;
+    private RegionScheduler regionScheduler;
+    private CommandQueue commandQueue;
+
+    @BeforeEach
+    void init() {
+        char[][] map = new char[MAP_SIZE][MAP_SIZE];
+        for (char[] row : map) {
+            Arrays.fill(row, '.');
+        }
+        gameMap = new GameMap(map);
+        regionScheduler = new RegionScheduler(gameMap, 2, 2);
+        commandQueue = new CommandQueue();
+    }
+
+    @AfterEach
+    void close() {
+        regionScheduler.close();
+    }
+
+    private Player placePlayer(int x, int y) throws PlayerCharAlreadyExistsException {
+        Player player = new Player();
+        gameMap.connectPlayer(player);
+        gameMap.setPosition(player.getGamePosition(), '.');
+        GamePosition gamePosition = new GamePosition(x, y);
+        gameMap.setPosition(gamePosition, GameMap.PLAYER_CELL);
+        player.setPlayerPosition(gamePosition);
+        return player;
+    }
+
+    private void queue(Player player, byte opcode, int firstOperand) {
+        Command command = new Command();
+        command.set(opcode, firstOperand, 0);
+        commandQueue.add(player, command);
+    }
+
+    @Test
+    void testInteriorMovesAreApplied() throws PlayerCharAlreadyExistsException {
+        Player player = placePlayer(2, 2);
+        gameMap.setPosition(new GamePosition(3, 2), '.');
+        gameMap.setPosition(new GamePosition(3, 3), '.');
+
+        queue(player, Command.MOVE, 'd');
+        queue(player, Command.MOVE, 's');
+        regionScheduler.apply(commandQueue);
+
+        assertEquals(new GamePosition(3, 3), player.getGamePosition(),
+            "Every move of a player inside a region should be applied in order");
+    }
+
+    @Test
+    void testAttackAcrossRegionBorderIsApplied() throws PlayerCharAlreadyExistsException {
+        Player attacker = placePlayer(5, 3);
+        Player defender = placePlayer(6, 3);
+
+        queue(attacker, Command.ATTACK_MELEE, defender.getId());
+        regionScheduler.apply(commandQueue);
+
+        assertTrue(defender.getCurrHealth() < defender.getTotalHealth(),
+            "An attack on a player in the neighbouring region should still be resolved");
+        assertTrue(commandQueue.isEmpty(), "Every queued command should be consumed");
+    }
+
+    // Players walk deep inside every region while a new player joins each tick, so every join picks a
+    // free cell after the workers changed some.
+    private static List<GamePosition> joinPositionsAfterParallelMoves() throws PlayerCharAlreadyExistsException {
+        GameMap gameMap = new GameMap(new CellGrid(SPAWN_MAP_SIZE, SPAWN_MAP_SIZE, '.'), SPAWN_MONSTERS, SEED);
+        List<Player> walkers = new ArrayList<>();
+        for (int region = 0; region < 4; region++) {
+            int left = region % 2 * SPAWN_MAP_SIZE / 2 + 4;
+            int top = region / 2 * SPAWN_MAP_SIZE / 2 + 4;
+            for (int i = 0; i < PLAYERS_PER_REGION; i++) {
+                Player player = new Player();
+                gameMap.connectPlayer(player);
+                gameMap.setPosition(player.getGamePosition(), '.');
+                GamePosition gamePosition = new GamePosition(left + i % PLAYERS_PER_ROW * PLAYER_SPACING,
+                    top + i / PLAYERS_PER_ROW * 2);
+                gameMap.setPosition(gamePosition, GameMap.PLAYER_CELL);
+                player.setPlayerPosition(gamePosition);
+                walkers.add(player);
+            }
+        }
+
+        List<GamePosition> joinPositions = new ArrayList<>();
+        try (RegionScheduler scheduler = new RegionScheduler(gameMap, 2, 2)) {
+            CommandQueue commands = new CommandQueue();
+            Command command = new Command();
+            for (int tick = 0; tick < TICKS; tick++) {
+                command.set(Command.MOVE, tick < TICKS / 2 ? 'd' : 'a', Command.NO_SEQUENCE);
+                for (Player walker : walkers) {
+                    commands.add(walker, command);
+                }
+                scheduler.apply(commands);
+
+                Player joining = new Player();
+                gameMap.connectPlayer(joining);
+                joinPositions.add(joining.getGamePosition());
+            }
+        }
+        return joinPositions;
+    }
+
+    @Test
+    void testSpawnsDoNotDependOnScheduling() throws PlayerCharAlreadyExistsException {
+        List<GamePosition> expected = joinPositionsAfterParallelMoves();
+        for (int run = 1; run < RUNS; run++) {
+            assertEquals(expected, joinPositionsAfterParallelMoves(),
+                "The same seed and commands should place players on the same cells every run");
+        }
+    }
+}